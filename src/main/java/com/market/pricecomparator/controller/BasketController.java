@@ -1,37 +1,56 @@
 package com.market.pricecomparator.controller;
 
+import com.market.pricecomparator.dto.BasketBatchResultDTO;
+import com.market.pricecomparator.dto.BasketCacheStatsDTO;
 import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.QuantityShoppingItemDTO;
 import com.market.pricecomparator.dto.ShoppingItemDTO;
-import com.market.pricecomparator.model.Discount;
-import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.dto.StoreLimitedBasketRequestDTO;
+import com.market.pricecomparator.dto.UnitBasketResultDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.service.BasketBatchService;
+import com.market.pricecomparator.service.BasketCacheService;
 import com.market.pricecomparator.service.BasketOptimizerService;
 import com.market.pricecomparator.service.DiscountService;
 import com.market.pricecomparator.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/basket")
 public class BasketController {
     private final BasketOptimizerService basketOptimizerService;
+    private final BasketBatchService basketBatchService;
+    private final BasketCacheService basketCacheService;
     private final DiscountService discountService;
     private final ProductService productService;
 
-    // Base directory path for discounts CSV files
-    private final String discountsBaseDir = "src/main/resources/data";
-
     @Autowired
     public BasketController(BasketOptimizerService basketOptimizerService,
+                            BasketBatchService basketBatchService,
+                            BasketCacheService basketCacheService,
                             DiscountService discountService,
                             ProductService productService) {
         this.basketOptimizerService = basketOptimizerService;
+        this.basketBatchService = basketBatchService;
+        this.basketCacheService = basketCacheService;
         this.discountService = discountService;
         this.productService = productService;
     }
@@ -41,14 +60,94 @@ public class BasketController {
         // LocalDate currentDate = LocalDate.now(); --- currentDate normally
         LocalDate currentDate = LocalDate.of(2025, 5, 8);
 
-        // Load products grouped by store
-        Map<String, List<Product>> productsByStore = productService.loadProductsByStore(currentDate);
+        // Products grouped by store, with their name/brand index
+        CatalogSnapshot snapshot = productService.resolveSnapshot(currentDate);
+
+        // Call optimizer service; identical baskets are answered from the result cache
+        return basketCacheService.optimize(shoppingList, snapshot, loadDiscountIndex(snapshot, currentDate), currentDate);
+    }
+
+    /**
+     * Hit, miss and eviction counters of the optimize result cache.
+     */
+    @GetMapping("/cache/stats")
+    public BasketCacheStatsDTO getCacheStats() {
+        return basketCacheService.getStats();
+    }
+
+    /**
+     * Optimizes a shopping list for trips: at most maxStores stores and/or a cost per visited store.
+     */
+    @PostMapping("/optimize-trips")
+    public BasketOptimizationResultDTO optimizeBasketTrips(@RequestBody StoreLimitedBasketRequestDTO request) {
+        if (request.getItems() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "items is required");
+        }
+        if (request.getMaxStores() != null && request.getMaxStores() < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxStores must be at least 1");
+        }
+        if (request.getStoreVisitCost() != null && request.getStoreVisitCost() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "storeVisitCost must not be negative");
+        }
+
+        int maxStores = (request.getMaxStores() != null) ? request.getMaxStores() : Integer.MAX_VALUE;
+        double storeVisitCost = (request.getStoreVisitCost() != null) ? request.getStoreVisitCost() : 0;
+
+        LocalDate currentDate = LocalDate.of(2025, 5, 8);
+
+        CatalogSnapshot snapshot = productService.resolveSnapshot(currentDate);
+
+        return basketOptimizerService.optimizeBasketWithStoreLimit(request.getItems(), snapshot.getProductIndex(),
+                loadDiscountIndex(snapshot, currentDate), currentDate, maxStores, storeVisitCost);
+    }
+
+    /**
+     * Buys a quantity of every item (e.g. 3 l of milk) with the cheapest combination of package sizes.
+     */
+    @PostMapping("/optimize-units")
+    public UnitBasketResultDTO optimizeBasketUnits(@RequestBody List<QuantityShoppingItemDTO> shoppingList) {
+        LocalDate currentDate = LocalDate.of(2025, 5, 8);
+
+        CatalogSnapshot snapshot = productService.resolveSnapshot(currentDate);
+
+        return basketOptimizerService.optimizeBasketByUnitPrice(
+                shoppingList, snapshot.getUnitPriceIndex(), loadDiscountIndex(snapshot, currentDate), currentDate);
+    }
+
+    /**
+     * Optimizes many shopping lists in one call; every basket shares the same catalog snapshot and discounts.
+     */
+    @PostMapping("/optimize-batch")
+    public BasketBatchResultDTO optimizeBaskets(@RequestBody List<List<ShoppingItemDTO>> shoppingLists) {
+        LocalDate currentDate = LocalDate.of(2025, 5, 8);
+
+        CatalogSnapshot snapshot = productService.resolveSnapshot(currentDate);
 
-        // Load discounts for current and previous week
-        List<String> stores = List.copyOf(productsByStore.keySet());
-        List<Discount> allDiscounts = discountService.loadDiscountsForCurrentAndPreviousWeek(stores, currentDate, discountsBaseDir);
+        return basketBatchService.optimizeBatch(
+                shoppingLists, snapshot.getProductIndex(), loadDiscountIndex(snapshot, currentDate), currentDate);
+    }
+
+    /**
+     * Streaming variant of optimize-batch: one shopping list (JSON array) per request line in,
+     * one result per line out in the same order, followed by a summary line. Memory stays constant for any batch size.
+     */
+    @PostMapping(value = "/optimize-stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void optimizeBasketStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        LocalDate currentDate = LocalDate.of(2025, 5, 8);
+
+        CatalogSnapshot snapshot = productService.resolveSnapshot(currentDate);
+        DiscountIndex discountIndex = loadDiscountIndex(snapshot, currentDate);
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        basketBatchService.optimizeNdjson(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8),
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8),
+                snapshot.getProductIndex(), discountIndex, currentDate);
+    }
 
-        // Call optimizer service
-        return basketOptimizerService.optimizeBasketDetailed(shoppingList, productsByStore, allDiscounts, currentDate);
+    private DiscountIndex loadDiscountIndex(CatalogSnapshot snapshot, LocalDate currentDate) {
+        // Discounts of the current and previous week, indexed once per discount catalog version
+        return discountService.getDiscountIndex(snapshot, currentDate);
     }
 }
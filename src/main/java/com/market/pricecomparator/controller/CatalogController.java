@@ -0,0 +1,71 @@
+package com.market.pricecomparator.controller;
+
+import com.market.pricecomparator.dto.CatalogIngestionReportDTO;
+import com.market.pricecomparator.dto.CatalogSnapshotStatsDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.service.CatalogIngestionService;
+import com.market.pricecomparator.service.ProductService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/catalog")
+public class CatalogController {
+
+    private final ProductService productService;
+    private final CatalogIngestionService catalogIngestionService;
+
+    public CatalogController(ProductService productService, CatalogIngestionService catalogIngestionService) {
+        this.productService = productService;
+        this.catalogIngestionService = catalogIngestionService;
+    }
+
+    /**
+     * Load-time and memory footprint report for every in-memory catalog snapshot.
+     */
+    @GetMapping("/snapshots")
+    public List<CatalogSnapshotStatsDTO> getSnapshots() {
+        return productService.getSnapshots().stream()
+                .map(this::toStats)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parse time and rows/sec of every feed file read by the last full ingestion of the data directory.
+     */
+    @GetMapping("/ingestion")
+    public CatalogIngestionReportDTO getIngestionReport() {
+        CatalogIngestionReportDTO report = catalogIngestionService.getLastReport();
+        if (report == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "the data directory has not been ingested yet");
+        }
+        return report;
+    }
+
+    private CatalogSnapshotStatsDTO toStats(CatalogSnapshot snapshot) {
+        Map<String, Integer> productsPerStore = new LinkedHashMap<>();
+        snapshot.getProductsByStore().forEach((store, products) -> productsPerStore.put(store, products.size()));
+
+        return new CatalogSnapshotStatsDTO(
+                snapshot.getDate(),
+                snapshot.getVersion(),
+                productsPerStore,
+                snapshot.getProductCount(),
+                snapshot.getLoadMillis(),
+                snapshot.getEstimatedBytes(),
+                snapshot.getStorage().name(),
+                snapshot.getBytesPerRow(),
+                snapshot.getObjectModelBytes(),
+                snapshot.getProductCount() == 0 ? 0 : (double) snapshot.getObjectModelBytes() / snapshot.getProductCount(),
+                snapshot.getOffHeapBytes()
+        );
+    }
+}
@@ -1,15 +1,18 @@
 package com.market.pricecomparator.controller;
 
+import com.market.pricecomparator.dto.ActiveDiscountDTO;
 import com.market.pricecomparator.dto.BestDiscountsRequestDTO;
 import com.market.pricecomparator.dto.ProductDiscountDTO;
 import com.market.pricecomparator.model.TopNOption;
 import com.market.pricecomparator.service.DiscountService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/discounts")
@@ -77,4 +80,17 @@ public class DiscountController {
 
         return discountService.getNewDiscounts(date, filter);
     }
+
+    /**
+     * Every discount valid on a date, whichever discount file published it.
+     */
+    @GetMapping("/active")
+    public List<ActiveDiscountDTO> getActiveDiscounts(
+            @RequestParam(required = false) String store,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return discountService.getActiveDiscounts(store, date != null ? date : LocalDate.now()).stream()
+                .map(d -> new ActiveDiscountDTO(d.getProductId(), d.getProductName(), d.getBrand(), d.getQuantity(),
+                        d.getUnit(), d.getCurrency(), d.getPercentage(), d.getFromDate(), d.getToDate(), d.getStore()))
+                .collect(Collectors.toList());
+    }
 }
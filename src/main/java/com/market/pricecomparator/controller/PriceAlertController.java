@@ -1,12 +1,13 @@
 package com.market.pricecomparator.controller;
 
+import com.market.pricecomparator.dto.PriceAlertEventDTO;
 import com.market.pricecomparator.dto.PriceAlertMatchDTO;
+import com.market.pricecomparator.dto.PriceAlertSubscriptionDTO;
 import com.market.pricecomparator.service.PriceAlertService;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,6 +34,9 @@ public class PriceAlertController {
             @RequestParam double targetPrice,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
     ) {
+        if (productName.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "productName is required");
+        }
         LocalDate queryDate = (date != null) ? date : LocalDate.now();
 
         return priceAlertService.checkPriceAgainstTarget(
@@ -43,4 +47,42 @@ public class PriceAlertController {
                 queryDate
         );
     }
+
+    /**
+     * Register a standing alert; matches are reported as events now and whenever the catalog is updated.
+     */
+    @PostMapping("/subscriptions")
+    public PriceAlertSubscriptionDTO subscribe(@RequestBody PriceAlertSubscriptionDTO request) {
+        if (request.getProductName() == null || request.getProductName().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "productName is required");
+        }
+        if (request.getTargetPrice() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "targetPrice must be positive");
+        }
+
+        return priceAlertService.subscribe(request);
+    }
+
+    @GetMapping("/subscriptions")
+    public List<PriceAlertSubscriptionDTO> getSubscriptions() {
+        return priceAlertService.getSubscriptions();
+    }
+
+    @DeleteMapping("/subscriptions/{id}")
+    public void unsubscribe(@PathVariable long id) {
+        if (!priceAlertService.unsubscribe(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No subscription with id: " + id);
+        }
+    }
+
+    /**
+     * Match events after a sequence number, optionally for one subscription.
+     */
+    @GetMapping("/events")
+    public List<PriceAlertEventDTO> getEvents(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam Optional<Long> subscriptionId
+    ) {
+        return priceAlertService.getEvents(after, subscriptionId);
+    }
 }
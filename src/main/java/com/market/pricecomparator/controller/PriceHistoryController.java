@@ -1,6 +1,7 @@
 package com.market.pricecomparator.controller;
 
 import com.market.pricecomparator.dto.PricePointDTO;
+import com.market.pricecomparator.model.PriceHistoryGranularity;
 import com.market.pricecomparator.service.PriceHistoryService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -29,7 +30,8 @@ public class PriceHistoryController {
             @RequestParam Optional<String> store,
             @RequestParam Optional<String> category,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "DAY") PriceHistoryGranularity granularity
     ) {
         LocalDate effectiveEndDate = endDate != null ? endDate : startDate.plusWeeks(2);
 
@@ -39,7 +41,8 @@ public class PriceHistoryController {
                 store.map(String::toLowerCase),
                 category.map(String::toLowerCase),
                 startDate,
-                effectiveEndDate
+                effectiveEndDate,
+                granularity
         );
     }
 }
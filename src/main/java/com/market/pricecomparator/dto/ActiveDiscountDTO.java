@@ -0,0 +1,23 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActiveDiscountDTO {
+    private String productId;
+    private String productName;
+    private String brand;
+    private double quantity;
+    private String unit;
+    private String currency;
+    private int discountPercentage;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private String store;
+}
@@ -0,0 +1,21 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BasketBatchResultDTO {
+    private List<BasketOptimizationResultDTO> results; // same order as the submitted baskets
+    private int basketCount;
+    private int parallelism;
+    private long elapsedMillis;
+    private double basketsPerSecond;
+    // Per-basket optimization latency
+    private long p50Micros;
+    private long p95Micros;
+    private long p99Micros;
+    private long maxMicros;
+}
@@ -0,0 +1,23 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BasketCacheStatsDTO {
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long invalidations; // whole cache drops caused by a new catalog snapshot or discount files
+    private int size;
+    private long weightBytes; // estimated size of the cached results
+    private long maxEntries;
+    private long maxWeightBytes;
+    // Per-item cheapest offer memo of BasketOptimizerService, shared by all basket endpoints
+    private long offerMemoHits;
+    private long offerMemoMisses;
+    private int offerMemoSize;
+    private long offerMemoWeightBytes;
+}
@@ -0,0 +1,19 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BasketStreamSummaryDTO {
+    private long basketCount;
+    private long skippedLines; // blank lines are not counted, malformed ones are
+    private int parallelism;
+    private long elapsedMillis;
+    private double basketsPerSecond;
+    // Per-basket optimization latency, percentiles within ~3%
+    private long p50Micros;
+    private long p95Micros;
+    private long p99Micros;
+    private long maxMicros;
+}
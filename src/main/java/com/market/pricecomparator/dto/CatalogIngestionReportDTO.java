@@ -0,0 +1,21 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CatalogIngestionReportDTO {
+    private Instant completedAt;
+    private boolean fromCache; // rows decoded from the binary catalog cache instead of parsed from CSV
+    private int threads;
+    private int fileCount;
+    private long rowCount;
+    private long wallMillis; // listing the directory to the last snapshot published
+    private double parseMillis; // sum over files; parseMillis / wallMillis is the achieved parallelism
+    private double rowsPerSecond; // rows over wall time
+    private List<FeedFileLoadStatsDTO> files; // slowest first
+}
@@ -0,0 +1,23 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class CatalogSnapshotStatsDTO {
+    private LocalDate date;
+    private long version;
+    private Map<String, Integer> productsPerStore;
+    private int productCount;
+    private long loadMillis;
+    private long estimatedBytes; // approximate retained heap size of the snapshot
+    private String storage; // OBJECTS, COLUMNAR or OFF_HEAP
+    private double bytesPerRow;
+    private long objectModelBytes; // the same rows held as one Product object each
+    private double objectModelBytesPerRow;
+    private long offHeapBytes; // columns and index postings held outside the heap
+}
@@ -0,0 +1,18 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class FeedFileLoadStatsDTO {
+    private String fileName;
+    private String store;
+    private LocalDate date;
+    private boolean discounts;
+    private int rows;
+    private double parseMillis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,14 @@
+package com.market.pricecomparator.dto;
+
+import com.market.pricecomparator.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PackageSelectionDTO {
+    private Product product;
+    private int count; // number of packages to buy
+    private double effectivePrice; // price of one package with discounts applied
+    private double pricePerUnit; // effective price per base unit (e.g. RON/kg, RON/l)
+}
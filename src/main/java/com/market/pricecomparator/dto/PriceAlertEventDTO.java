@@ -0,0 +1,18 @@
+package com.market.pricecomparator.dto;
+
+import com.market.pricecomparator.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class PriceAlertEventDTO {
+    private long sequence; // increasing, clients poll for events after the last one they saw
+    private long subscriptionId;
+    private LocalDate date; // catalog date that triggered the match
+    private Product product;
+    private double effectivePrice;
+    private double targetPrice;
+}
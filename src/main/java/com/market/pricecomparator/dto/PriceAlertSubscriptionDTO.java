@@ -0,0 +1,16 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceAlertSubscriptionDTO {
+    private Long id; // assigned on subscribe
+    private String productName;
+    private String brand; // optional, can be null or empty
+    private String store; // optional, can be null or empty
+    private double targetPrice;
+}
@@ -11,10 +11,14 @@ public class PricePointDTO {
     private LocalDate date;
     private double price;
     private int productCount;
+    private double minPrice;
+    private double maxPrice;
 
-    public PricePointDTO(LocalDate date, double price, int productCount) {
+    public PricePointDTO(LocalDate date, double price, int productCount, double minPrice, double maxPrice) {
         this.date = date;
         this.price = price;
         this.productCount = productCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
     }
-}
\ No newline at end of file
+}
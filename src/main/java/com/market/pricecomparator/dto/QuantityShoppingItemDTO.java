@@ -0,0 +1,23 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuantityShoppingItemDTO extends ShoppingItemDTO {
+    private Double quantity; // desired amount, e.g. 3 (l); optional, defaults to one package
+    private String unit; // unit of quantity (g, kg, ml, l, buc); optional, defaults to the product's base unit
+
+    public QuantityShoppingItemDTO(String productName, String brand, Double quantity, String unit) {
+        super(productName, brand);
+        this.quantity = quantity;
+        this.unit = unit;
+    }
+}
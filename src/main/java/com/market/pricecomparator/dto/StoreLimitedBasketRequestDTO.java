@@ -0,0 +1,16 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreLimitedBasketRequestDTO {
+    private List<ShoppingItemDTO> items;
+    private Integer maxStores; // optional, at least 1; defaults to no limit
+    private Double storeVisitCost; // optional, cost of each visited store; defaults to 0
+}
@@ -0,0 +1,18 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UnitBasketItemDTO {
+    private String productName;
+    private String brand;
+    private String unit; // base unit of the quantities below (kg, l, buc)
+    private double requestedQuantity;
+    private double purchasedQuantity; // at least requestedQuantity, packages rarely add up exactly
+    private double cost;
+    private List<PackageSelectionDTO> packages;
+}
@@ -0,0 +1,17 @@
+package com.market.pricecomparator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UnitBasketResultDTO {
+    private List<UnitBasketItemDTO> items;
+    private double totalCost;
+    private List<ShoppingItemDTO> unmatchedItems;
+    private double totalSavings;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,277 @@
+package com.market.pricecomparator.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable, versioned view of all store price files published for one date.
+ * A snapshot is built once by ProductService and shared by every service; a newer
+ * version replaces it atomically, so readers never see a partially loaded catalog.
+ */
+@Getter
+public class CatalogSnapshot {
+    // Rough HotSpot sizes (64-bit, compressed oops) used for the footprint report
+    private static final long OBJECT_HEADER_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;
+    private static final long STRING_BYTES = 24 + 16; // String object + byte[] header
+    private static final long LOCAL_DATE_BYTES = 24;
+
+    /**
+     * OBJECTS: one Product object per row, as loaded.
+     * COLUMNAR: dictionary-encoded primitive columns ({@link ProductColumns}); Products are materialized on access.
+     * OFF_HEAP: the same columns and the index postings in direct or memory-mapped buffers ({@link ColumnMemory}),
+     * so only dictionaries and offsets stay on the heap; meant for historical dates.
+     */
+    public enum Storage {
+        OBJECTS,
+        COLUMNAR,
+        OFF_HEAP
+    }
+
+    private final long version;
+    private final LocalDate date;
+    private final Storage storage;
+    private final Map<String, List<Product>> productsByStore;
+    private final ProductIndex productIndex;
+    private final int productCount;
+    private final long loadMillis;
+    // Approximate retained heap size of the rows in this snapshot's storage
+    private final long estimatedBytes;
+    // Bytes of the columns and index postings held outside the heap
+    private final long offHeapBytes;
+    // The same for one Product object per row, for comparison
+    private final long objectModelBytes;
+    // Every row in store order, shared by the indexes
+    @Getter(AccessLevel.NONE)
+    private final List<Product> rows;
+    // Built on first quantity based basket request, most snapshots never need it
+    @Getter(AccessLevel.NONE)
+    private volatile UnitPriceIndex unitPriceIndex;
+
+    public CatalogSnapshot(long version, LocalDate date, Map<String, List<Product>> productsByStore, long loadMillis) {
+        this(version, date, productsByStore, loadMillis, Storage.OBJECTS);
+    }
+
+    public CatalogSnapshot(long version, LocalDate date, Map<String, List<Product>> productsByStore, long loadMillis,
+                           Storage storage) {
+        this(version, date, productsByStore, loadMillis, storage, ColumnMemory.direct());
+    }
+
+    /**
+     * @param offHeapMemory where OFF_HEAP storage allocates its buffers; ignored by the other storages
+     */
+    public CatalogSnapshot(long version, LocalDate date, Map<String, List<Product>> productsByStore, long loadMillis,
+                           Storage storage, ColumnMemory offHeapMemory) {
+        this.version = version;
+        this.date = date;
+        this.storage = storage;
+        this.loadMillis = loadMillis;
+        this.objectModelBytes = estimateFootprint(productsByStore);
+
+        ColumnMemory memory = storage == Storage.OFF_HEAP ? offHeapMemory : ColumnMemory.heap();
+        if (storage != Storage.OBJECTS) {
+            ProductColumns columns = ProductColumns.of(productsByStore, memory);
+            this.productsByStore = columns.getProductsByStore();
+            this.rows = columns.allRows();
+            this.productIndex = ProductIndex.of(rows, memory);
+            this.estimatedBytes = columns.estimateBytes();
+            this.offHeapBytes = columns.offHeapBytes() + productIndex.offHeapBytes();
+        } else {
+            Map<String, List<Product>> copy = new LinkedHashMap<>();
+            List<Product> all = new ArrayList<>();
+            productsByStore.forEach((store, products) -> {
+                List<Product> storeProducts = List.copyOf(products);
+                copy.put(store, storeProducts);
+                all.addAll(storeProducts);
+            });
+            this.productsByStore = Collections.unmodifiableMap(copy);
+            this.rows = Collections.unmodifiableList(all);
+            this.productIndex = ProductIndex.of(rows);
+            this.estimatedBytes = objectModelBytes;
+            this.offHeapBytes = 0;
+        }
+        this.productCount = rows.size();
+    }
+
+    private CatalogSnapshot(CatalogSnapshot source, long version) {
+        this.version = version;
+        this.date = source.date;
+        this.storage = source.storage;
+        this.productsByStore = source.productsByStore;
+        this.productIndex = source.productIndex;
+        this.productCount = source.productCount;
+        this.loadMillis = 0; // nothing was loaded
+        this.estimatedBytes = source.estimatedBytes;
+        this.offHeapBytes = source.offHeapBytes;
+        this.objectModelBytes = source.objectModelBytes;
+        this.rows = source.rows;
+        this.unitPriceIndex = source.unitPriceIndex;
+    }
+
+    private CatalogSnapshot(long version, LocalDate date, Storage storage, Map<String, List<Product>> productsByStore,
+                            ProductIndex productIndex, long loadMillis) {
+        this.version = version;
+        this.date = date;
+        this.storage = storage;
+        this.productsByStore = Collections.unmodifiableMap(productsByStore);
+        this.productIndex = productIndex;
+        this.loadMillis = loadMillis;
+        // The rows stay accounted to the snapshots they come from
+        this.estimatedBytes = 0;
+        this.offHeapBytes = 0;
+        this.objectModelBytes = 0;
+        this.rows = new ConcatenatedRows(List.copyOf(productsByStore.values()));
+        this.productCount = rows.size();
+    }
+
+    /**
+     * Builds a view over stores taken from several snapshots, e.g. each store's latest price file. The stores' row
+     * lists and indexes are shared with their sources, nothing is copied or re-encoded.
+     *
+     * @param sourcesByStore store -> snapshot holding its rows, null for a store without rows; in catalog order
+     */
+    public static CatalogSnapshot compose(long version, LocalDate date, Storage storage,
+                                          Map<String, CatalogSnapshot> sourcesByStore, long loadMillis) {
+        Map<String, List<Product>> productsByStore = new LinkedHashMap<>();
+        Map<String, ProductIndex> indexesByStore = new LinkedHashMap<>();
+        int size = 0;
+        for (Map.Entry<String, CatalogSnapshot> entry : sourcesByStore.entrySet()) {
+            CatalogSnapshot source = entry.getValue();
+            List<Product> products = source != null ? source.getProducts(entry.getKey()) : List.of();
+            productsByStore.put(entry.getKey(), products);
+            if (source != null && !products.isEmpty()) {
+                indexesByStore.put(entry.getKey(), source.productIndex);
+                size += products.size();
+            }
+        }
+        return new CatalogSnapshot(version, date, storage, productsByStore,
+                ProductIndex.compose(indexesByStore, size), loadMillis);
+    }
+
+    /**
+     * @return the same products and indexes published under another version, without copying or re-indexing
+     */
+    public CatalogSnapshot withVersion(long version) {
+        return new CatalogSnapshot(this, version);
+    }
+
+    /**
+     * @return the same products under the same version in another storage, e.g. to move a date off the heap
+     * once it is no longer the current one
+     */
+    public CatalogSnapshot withStorage(Storage storage, ColumnMemory offHeapMemory) {
+        return new CatalogSnapshot(version, date, productsByStore, loadMillis, storage, offHeapMemory);
+    }
+
+    public List<Product> getProducts(String store) {
+        return productsByStore.getOrDefault(store, List.of());
+    }
+
+    /**
+     * @return estimated heap bytes per product row in this snapshot's storage
+     */
+    public double getBytesPerRow() {
+        return productCount == 0 ? 0 : (double) estimatedBytes / productCount;
+    }
+
+    /**
+     * @return per-unit price index of the snapshot, built on first use
+     */
+    public UnitPriceIndex getUnitPriceIndex() {
+        UnitPriceIndex index = unitPriceIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = unitPriceIndex;
+                if (index == null) {
+                    index = UnitPriceIndex.of(rows);
+                    unitPriceIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Estimates the retained heap size of the loaded products.
+     * Shared String/LocalDate instances are counted only once.
+     */
+    private static long estimateFootprint(Map<String, List<Product>> productsByStore) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+
+        for (List<Product> products : productsByStore.values()) {
+            bytes += OBJECT_HEADER_BYTES + (long) products.size() * REFERENCE_BYTES;
+            for (Product p : products) {
+                // 8 references + 2 doubles
+                bytes += OBJECT_HEADER_BYTES + 8 * REFERENCE_BYTES + 2 * Double.BYTES;
+                bytes += sizeOf(p.getProductId(), seen) + sizeOf(p.getProductName(), seen)
+                        + sizeOf(p.getBrand(), seen) + sizeOf(p.getCategory(), seen)
+                        + sizeOf(p.getUnit(), seen) + sizeOf(p.getStore(), seen)
+                        + sizeOf(p.getCurrency(), seen);
+                if (p.getDate() != null && seen.add(p.getDate())) {
+                    bytes += LOCAL_DATE_BYTES;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Rows of several stores read through in order, without copying them.
+     */
+    private static final class ConcatenatedRows extends AbstractList<Product> implements RandomAccess {
+        private final List<List<Product>> lists;
+        // Index of the first row of each list; lists + 1 entries
+        private final int[] starts;
+
+        ConcatenatedRows(List<List<Product>> lists) {
+            this.lists = lists;
+            this.starts = new int[lists.size() + 1];
+            for (int i = 0; i < lists.size(); i++) {
+                starts[i + 1] = starts[i] + lists.get(i).size();
+            }
+        }
+
+        @Override
+        public Product get(int index) {
+            Objects.checkIndex(index, size());
+            int list = Arrays.binarySearch(starts, index);
+            // An exact hit may be the start of an empty list; take the last list starting there
+            if (list >= 0) {
+                while (starts[list + 1] == index) list++;
+            } else {
+                list = -list - 2;
+            }
+            return lists.get(list).get(index - starts[list]);
+        }
+
+        @Override
+        public int size() {
+            return starts[starts.length - 1];
+        }
+    }
+
+    private static long sizeOf(String value, Set<Object> seen) {
+        if (value == null || !seen.add(value)) return 0;
+        return sizeOfString(value);
+    }
+
+    static long sizeOfString(String value) {
+        // Non-latin characters force UTF-16 storage
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return STRING_BYTES + (long) value.length() * (latin1 ? 1 : 2);
+    }
+}
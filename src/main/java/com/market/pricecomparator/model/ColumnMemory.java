@@ -0,0 +1,106 @@
+package com.market.pricecomparator.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where the primitive columns and index postings of a snapshot are allocated.
+ * <ul>
+ *     <li>heap: a byte array on the Java heap</li>
+ *     <li>direct: native memory outside the heap, limited by -XX:MaxDirectMemorySize (defaults to the max heap size)</li>
+ *     <li>mapped: a memory-mapped temporary file, paged in and out by the OS and not limited by the JVM</li>
+ * </ul>
+ * Off-heap buffers are invisible to the garbage collector apart from their small ByteBuffer object, and are released
+ * when that object is collected. Mapped files are deleted right after mapping, so the disk space is also returned
+ * with the mapping.
+ */
+public final class ColumnMemory {
+    private static final ColumnMemory HEAP = new ColumnMemory(Kind.HEAP, null);
+    private static final ColumnMemory DIRECT = new ColumnMemory(Kind.DIRECT, null);
+
+    private enum Kind {
+        HEAP,
+        DIRECT,
+        MAPPED
+    }
+
+    private final Kind kind;
+    private final Path dir;
+
+    private ColumnMemory(Kind kind, Path dir) {
+        this.kind = kind;
+        this.dir = dir;
+    }
+
+    public static ColumnMemory heap() {
+        return HEAP;
+    }
+
+    public static ColumnMemory direct() {
+        return DIRECT;
+    }
+
+    /**
+     * @param dir directory of the temporary files, created when missing
+     */
+    public static ColumnMemory mapped(Path dir) {
+        return new ColumnMemory(Kind.MAPPED, dir);
+    }
+
+    public boolean isOffHeap() {
+        return kind != Kind.HEAP;
+    }
+
+    /**
+     * @return a zeroed buffer of the given size in native byte order
+     */
+    public ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Column buffer too large: " + bytes + " bytes");
+        }
+        int size = (int) bytes;
+        switch (kind) {
+            case DIRECT:
+                return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            case MAPPED:
+                return map(size);
+            default:
+                return ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private ByteBuffer map(int size) {
+        try {
+            Files.createDirectories(dir);
+            Path file = Files.createTempFile(dir, "snapshot-", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed and the file is unlinked
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.nativeOrder());
+            } finally {
+                unlink(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error at mapping a column buffer in " + dir, e);
+        }
+    }
+
+    private static void unlink(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Platforms that refuse to delete a mapped file
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.MAPPED ? "mapped(" + dir + ")" : kind.name().toLowerCase();
+    }
+}
@@ -0,0 +1,132 @@
+package com.market.pricecomparator.model;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable lookup of discounts by (store, productId) with date-interval search.
+ * Discounts of one product are sorted by fromDate, so the best discount active on a date is found
+ * with a binary search instead of scanning every loaded discount.
+ */
+public class DiscountIndex {
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+    private static final DiscountIndex EMPTY = new DiscountIndex(Map.of());
+
+    private final long id = ID_SEQUENCE.incrementAndGet();
+    // store -> productId -> validity windows of that product
+    private final Map<String, Map<String, Windows>> byStoreAndProduct;
+
+    private DiscountIndex(Map<String, Map<String, Windows>> byStoreAndProduct) {
+        this.byStoreAndProduct = byStoreAndProduct;
+    }
+
+    public static DiscountIndex empty() {
+        return EMPTY;
+    }
+
+    public static DiscountIndex of(Collection<Discount> discounts) {
+        Map<String, Map<String, List<Discount>>> grouped = new HashMap<>();
+        for (Discount d : discounts) {
+            if (d.getStore() == null || d.getProductId() == null || d.getFromDate() == null || d.getToDate() == null) {
+                continue;
+            }
+            grouped.computeIfAbsent(d.getStore(), s -> new HashMap<>())
+                    .computeIfAbsent(d.getProductId(), id -> new ArrayList<>())
+                    .add(d);
+        }
+
+        Map<String, Map<String, Windows>> index = new HashMap<>();
+        grouped.forEach((store, byProduct) -> {
+            Map<String, Windows> windows = new HashMap<>();
+            byProduct.forEach((productId, list) -> windows.put(productId, new Windows(list)));
+            index.put(store, windows);
+        });
+        return new DiscountIndex(index);
+    }
+
+    /**
+     * Unique per index instance, so results derived from this index can be cached under its id.
+     * DiscountService hands out one index per date and discount catalog version, so the id changes exactly when
+     * the discounts do.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the discount with the highest percentage for the product in its store on the given date
+     */
+    public Optional<Discount> findBestDiscount(String store, String productId, LocalDate date) {
+        Map<String, Windows> byProduct = byStoreAndProduct.get(store);
+        if (byProduct == null) return Optional.empty();
+
+        Windows windows = byProduct.get(productId);
+        return windows == null ? Optional.empty() : Optional.ofNullable(windows.best(date.toEpochDay()));
+    }
+
+    /**
+     * @return product price after the best discount applicable on the given date, or the base price
+     */
+    public double getEffectivePrice(Product product, LocalDate date) {
+        double basePrice = product.getPrice();
+        return findBestDiscount(product.getStore(), product.getProductId(), date)
+                .map(d -> basePrice * (1 - d.getPercentage() / 100.0))
+                .orElse(basePrice);
+    }
+
+    /**
+     * Validity windows of one product, sorted by fromDate.
+     * maxToDay[i] is the latest toDate among windows 0..i, which bounds the backwards scan.
+     */
+    private static final class Windows {
+        private final Discount[] discounts;
+        private final long[] fromDay;
+        private final long[] toDay;
+        private final long[] maxToDay;
+
+        Windows(List<Discount> list) {
+            discounts = list.stream()
+                    .sorted(Comparator.comparing(Discount::getFromDate))
+                    .toArray(Discount[]::new);
+            fromDay = new long[discounts.length];
+            toDay = new long[discounts.length];
+            maxToDay = new long[discounts.length];
+
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < discounts.length; i++) {
+                fromDay[i] = discounts[i].getFromDate().toEpochDay();
+                toDay[i] = discounts[i].getToDate().toEpochDay();
+                max = Math.max(max, toDay[i]);
+                maxToDay[i] = max;
+            }
+        }
+
+        Discount best(long day) {
+            Discount best = null;
+            // Last window starting on or before the day; earlier windows are only visited while they can still cover it
+            for (int i = lastStartingOnOrBefore(day); i >= 0 && maxToDay[i] >= day; i--) {
+                if (toDay[i] >= day && (best == null || discounts[i].getPercentage() > best.getPercentage())) {
+                    best = discounts[i];
+                }
+            }
+            return best;
+        }
+
+        private int lastStartingOnOrBefore(long day) {
+            int low = 0;
+            int high = fromDay.length - 1;
+            int result = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (fromDay[mid] <= day) {
+                    result = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.market.pricecomparator.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable interval index over the validity windows [fromDate, toDate] of a set of discounts, e.g. one store's file.
+ * Windows are sorted by fromDate and form an implicit balanced tree (the middle of every range is its root); each node
+ * keeps the latest toDate of its subtree, so whole subtrees that end before or start after a query window are skipped.
+ * A window query costs O(log n + k) for k results, a fromDate range query is two binary searches.
+ * <p>
+ * Results keep the order of the discounts given to {@link #of(List)}; discounts without a fromDate or toDate are not
+ * indexed.
+ */
+public final class DiscountIntervals {
+    private static final DiscountIntervals EMPTY = of(List.of());
+
+    private final Discount[] discounts;
+    // Sorted by fromDay, then input order
+    private final int[] ordinals;
+    private final long[] fromDay;
+    private final long[] toDay;
+    // Latest toDay of the subtree rooted at each position
+    private final long[] maxToDay;
+
+    private DiscountIntervals(List<Discount> list) {
+        discounts = list.toArray(new Discount[0]);
+        ordinals = IntStream.range(0, discounts.length)
+                .filter(i -> discounts[i].getFromDate() != null && discounts[i].getToDate() != null)
+                .boxed()
+                .sorted(Comparator.comparing((Integer i) -> discounts[i].getFromDate()).thenComparing(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        fromDay = new long[ordinals.length];
+        toDay = new long[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            fromDay[i] = discounts[ordinals[i]].getFromDate().toEpochDay();
+            toDay[i] = discounts[ordinals[i]].getToDate().toEpochDay();
+        }
+        maxToDay = new long[ordinals.length];
+        buildMaxToDay(0, ordinals.length - 1);
+    }
+
+    public static DiscountIntervals empty() {
+        return EMPTY;
+    }
+
+    public static DiscountIntervals of(List<Discount> discounts) {
+        return new DiscountIntervals(discounts);
+    }
+
+    /**
+     * @return every discount, indexed or not, in input order
+     */
+    public List<Discount> getDiscounts() {
+        return Arrays.asList(discounts);
+    }
+
+    public int size() {
+        return discounts.length;
+    }
+
+    /**
+     * @return discounts valid on the date
+     */
+    public List<Discount> activeOn(LocalDate date) {
+        return overlapping(date, date);
+    }
+
+    /**
+     * @return discounts whose validity overlaps [from, to], both inclusive
+     */
+    public List<Discount> overlapping(LocalDate from, LocalDate to) {
+        List<Integer> found = new ArrayList<>();
+        collectOverlapping(0, ordinals.length - 1, from.toEpochDay(), to.toEpochDay(), found);
+        return inInputOrder(found);
+    }
+
+    /**
+     * @return discounts whose fromDate lies in [from, to], both inclusive
+     */
+    public List<Discount> startingBetween(LocalDate from, LocalDate to) {
+        int start = firstStartingOnOrAfter(from.toEpochDay());
+        int end = firstStartingOnOrAfter(to.toEpochDay() + 1);
+        List<Integer> found = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            found.add(ordinals[i]);
+        }
+        return inInputOrder(found);
+    }
+
+    private long buildMaxToDay(int low, int high) {
+        if (low > high) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (low + high) >>> 1;
+        long max = Math.max(toDay[mid], Math.max(buildMaxToDay(low, mid - 1), buildMaxToDay(mid + 1, high)));
+        maxToDay[mid] = max;
+        return max;
+    }
+
+    private void collectOverlapping(int low, int high, long from, long to, List<Integer> found) {
+        if (low > high) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        if (maxToDay[mid] < from) {
+            // Every window of the subtree ended before the query window
+            return;
+        }
+        collectOverlapping(low, mid - 1, from, to, found);
+        if (fromDay[mid] > to) {
+            // This window and the right subtree start after the query window
+            return;
+        }
+        if (toDay[mid] >= from) {
+            found.add(ordinals[mid]);
+        }
+        collectOverlapping(mid + 1, high, from, to, found);
+    }
+
+    private int firstStartingOnOrAfter(long day) {
+        int low = 0;
+        int high = fromDay.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fromDay[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<Discount> inInputOrder(List<Integer> found) {
+        found.sort(null);
+        List<Discount> result = new ArrayList<>(found.size());
+        for (int ordinal : found) {
+            result.add(discounts[ordinal]);
+        }
+        return result;
+    }
+}
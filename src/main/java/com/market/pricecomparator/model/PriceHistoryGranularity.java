@@ -0,0 +1,9 @@
+package com.market.pricecomparator.model;
+
+/**
+ * Bucket size of price history points. WEEK points are keyed by the Monday of the ISO week.
+ */
+public enum PriceHistoryGranularity {
+    DAY,
+    WEEK
+}
@@ -0,0 +1,500 @@
+package com.market.pricecomparator.model;
+
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Columnar price history: one (name, brand, store, category, price) row per product per snapshot date.
+ * Text keys are normalized the same way as {@link ProductIndex} and dictionary-encoded to int codes,
+ * so a row costs four ints and a double. The rows of one date form an immutable segment; publishing a
+ * snapshot appends its segment (or replaces it when the date is reloaded), and a range query walks
+ * the segments in the range once, without touching dates that have no data. Within a segment each column
+ * keeps its rows grouped by code, so a query only visits the rows of its most selective filter.
+ * <p>
+ * Queries without a product name are answered from rollups instead of rows: every segment holds
+ * count/sum/min/max per (brand, store, category) combination, with "any" as a possible value for each,
+ * and the same rollups are kept per ISO week (Monday to Sunday). Both are updated when a snapshot is appended.
+ * <p>
+ * The rows, row groups and rollups of a date are written into one buffer each, allocated from a {@link ColumnMemory}:
+ * off heap, a segment keeps a few hundred bytes on the heap whatever its row count. Only the code dictionary, one
+ * entry per distinct name, brand, store and category ever seen, grows on the heap.
+ */
+public class PriceTimeSeries {
+    private static final int ANY = -1;
+    private static final int UNKNOWN = -2;
+    // Code columns of a segment
+    private static final int NAME = 0;
+    private static final int BRAND = 1;
+    private static final int STORE = 2;
+    private static final int CATEGORY = 3;
+    private static final int COLUMNS = 4;
+
+    private final ColumnMemory memory;
+
+    // Normalized key -> code, shared by every column
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // Raw product value -> code, so repeated values are normalized once
+    private final ConcurrentMap<String, Integer> rawCodes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCode = new AtomicInteger();
+
+    private final ConcurrentSkipListMap<LocalDate, Segment> segments = new ConcurrentSkipListMap<>();
+    // Week start (Monday) -> rollups of the segments of that week
+    private final ConcurrentSkipListMap<LocalDate, Rollups> weeklyRollups = new ConcurrentSkipListMap<>();
+
+    public PriceTimeSeries() {
+        this(ColumnMemory.heap());
+    }
+
+    /**
+     * @param memory where the rows and rollups of every date are allocated
+     */
+    public PriceTimeSeries(ColumnMemory memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Adds the rows of a snapshot. A snapshot older than the one already stored for its date is ignored,
+     * so listeners racing on the same date keep the newest version.
+     */
+    public void append(CatalogSnapshot snapshot) {
+        int capacity = snapshot.getProductCount();
+        int[][] columns = new int[COLUMNS][capacity];
+        double[] prices = new double[capacity];
+        int size = 0;
+        for (List<Product> products : snapshot.getProductsByStore().values()) {
+            for (Product p : products) {
+                columns[NAME][size] = codeOf(p.getProductName());
+                columns[BRAND][size] = codeOf(p.getBrand());
+                columns[STORE][size] = codeOf(p.getStore());
+                columns[CATEGORY][size] = codeOf(p.getCategory());
+                prices[size++] = p.getPrice();
+            }
+        }
+        Segment segment = new Segment(snapshot.getVersion(), columns, prices, size, memory);
+
+        // Serialized so concurrent appends within one week cannot publish a stale weekly rollup
+        synchronized (weeklyRollups) {
+            Segment published = segments.merge(snapshot.getDate(), segment,
+                    (existing, candidate) -> candidate.version >= existing.version ? candidate : existing);
+            if (published == segment) {
+                rebuildWeek(weekStart(snapshot.getDate()));
+            }
+        }
+    }
+
+    /**
+     * Aggregates the prices of the rows matching every given filter, per date, for dates in [from, to].
+     * Filters must be normalized; null or empty means "any". Dates without matching rows are left out.
+     *
+     * @return count, sum, min, max and average per date, ordered by date
+     */
+    public NavigableMap<LocalDate, DoubleSummaryStatistics> aggregate(String name, String brand, String store,
+                                                                      String category, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, DoubleSummaryStatistics> result = new TreeMap<>();
+        int nameCode = filterCode(name);
+        int brandCode = filterCode(brand);
+        int storeCode = filterCode(store);
+        int categoryCode = filterCode(category);
+        if (nameCode == UNKNOWN || brandCode == UNKNOWN || storeCode == UNKNOWN || categoryCode == UNKNOWN
+                || from.isAfter(to)) {
+            return result;
+        }
+
+        RollupKey rollupKey = new RollupKey(brandCode, storeCode, categoryCode);
+        for (Map.Entry<LocalDate, Segment> entry : segments.subMap(from, true, to, true).entrySet()) {
+            Segment segment = entry.getValue();
+            DoubleSummaryStatistics stats = nameCode == ANY
+                    ? segment.rollups.get(rollupKey)
+                    : segment.aggregate(nameCode, brandCode, storeCode, categoryCode);
+            if (stats != null && stats.getCount() > 0) {
+                result.put(entry.getKey(), stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #aggregate} but per ISO week, keyed by the Monday of the week. Weeks only partly inside
+     * [from, to] aggregate the days in range; whole weeks queried without a product name come from the weekly rollup.
+     *
+     * @return count, sum, min, max and average per week, ordered by week start
+     */
+    public NavigableMap<LocalDate, DoubleSummaryStatistics> aggregateWeekly(String name, String brand, String store,
+                                                                            String category, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, DoubleSummaryStatistics> result = new TreeMap<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+
+        if (filterCode(name) == ANY) {
+            int brandCode = filterCode(brand);
+            int storeCode = filterCode(store);
+            int categoryCode = filterCode(category);
+            if (brandCode == UNKNOWN || storeCode == UNKNOWN || categoryCode == UNKNOWN) {
+                return result;
+            }
+
+            RollupKey rollupKey = new RollupKey(brandCode, storeCode, categoryCode);
+            LocalDate firstWholeWeek = weekStart(from.plusDays(6));
+            LocalDate lastWholeWeek = weekStart(to.plusDays(1)).minusDays(7);
+            if (!firstWholeWeek.isAfter(lastWholeWeek)) {
+                for (Map.Entry<LocalDate, Rollups> entry
+                        : weeklyRollups.subMap(firstWholeWeek, true, lastWholeWeek, true).entrySet()) {
+                    DoubleSummaryStatistics stats = entry.getValue().get(rollupKey);
+                    if (stats != null) {
+                        result.put(entry.getKey(), stats);
+                    }
+                }
+                // Partial weeks at both ends of the range
+                mergeWeekly(result, aggregate(name, brand, store, category, from, firstWholeWeek.minusDays(1)));
+                mergeWeekly(result, aggregate(name, brand, store, category, lastWholeWeek.plusDays(7), to));
+                return result;
+            }
+        }
+
+        mergeWeekly(result, aggregate(name, brand, store, category, from, to));
+        return result;
+    }
+
+    /**
+     * @return number of dates held
+     */
+    public int dateCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return number of rows across all dates
+     */
+    public long rowCount() {
+        return segments.values().stream().mapToLong(s -> s.size).sum();
+    }
+
+    /**
+     * @return bytes of the row and rollup buffers of every date and week, off heap unless allocated on the heap
+     */
+    public long getBufferBytes() {
+        return segments.values().stream().mapToLong(Segment::bytes).sum()
+                + weeklyRollups.values().stream().mapToLong(Rollups::bytes).sum();
+    }
+
+    private void rebuildWeek(LocalDate weekStart) {
+        Map<RollupKey, DoubleSummaryStatistics> week = new HashMap<>();
+        for (Segment segment : segments.subMap(weekStart, true, weekStart.plusDays(6), true).values()) {
+            segment.rollups.addTo(week);
+        }
+        weeklyRollups.put(weekStart, Rollups.of(week, memory));
+    }
+
+    private static void mergeWeekly(NavigableMap<LocalDate, DoubleSummaryStatistics> weeks,
+                                    NavigableMap<LocalDate, DoubleSummaryStatistics> days) {
+        days.forEach((date, stats) -> weeks.merge(weekStart(date), stats, (a, b) -> {
+            a.combine(b);
+            return a;
+        }));
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(DayOfWeek.MONDAY);
+    }
+
+    private int codeOf(String raw) {
+        if (raw == null) raw = "";
+        return rawCodes.computeIfAbsent(raw,
+                r -> codes.computeIfAbsent(ProductIndex.normalize(r), k -> nextCode.getAndIncrement()));
+    }
+
+    private int filterCode(String key) {
+        if (key == null || key.isEmpty()) return ANY;
+        Integer code = codes.get(key);
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Rows of one snapshot date, stored column by column in one buffer. Per column the buffer holds the code of every
+     * row, the rows grouped by ascending code, the distinct codes and where the rows of each one start; the prices
+     * follow as doubles.
+     */
+    private static final class Segment {
+        private final long version;
+        private final int size;
+        private final ByteBuffer buffer;
+        // Int offsets of the sections of each column, and its number of distinct codes
+        private final int[] groupedAt = new int[COLUMNS];
+        private final int[] codesAt = new int[COLUMNS];
+        private final int[] startsAt = new int[COLUMNS];
+        private final int[] distinct = new int[COLUMNS];
+        // Byte offset of the prices
+        private final int pricesAt;
+        private final Rollups rollups;
+
+        Segment(long version, int[][] columns, double[] prices, int size, ColumnMemory memory) {
+            this.version = version;
+            this.size = size;
+
+            int[][] grouped = new int[COLUMNS][];
+            int[][] codes = new int[COLUMNS][];
+            int[][] starts = new int[COLUMNS][];
+            int ints = 0;
+            for (int c = 0; c < COLUMNS; c++) {
+                group(columns[c], size, c, grouped, codes, starts);
+                distinct[c] = codes[c].length;
+                groupedAt[c] = ints + size;
+                codesAt[c] = groupedAt[c] + size;
+                startsAt[c] = codesAt[c] + distinct[c];
+                ints = startsAt[c] + distinct[c] + 1;
+            }
+            this.pricesAt = ints * Integer.BYTES;
+            this.buffer = memory.allocate((long) pricesAt + (long) size * Double.BYTES);
+
+            for (int c = 0; c < COLUMNS; c++) {
+                int columnAt = groupedAt[c] - size;
+                for (int i = 0; i < size; i++) {
+                    buffer.putInt((columnAt + i) * Integer.BYTES, columns[c][i]);
+                    buffer.putInt((groupedAt[c] + i) * Integer.BYTES, grouped[c][i]);
+                }
+                for (int k = 0; k < distinct[c]; k++) {
+                    buffer.putInt((codesAt[c] + k) * Integer.BYTES, codes[c][k]);
+                }
+                for (int k = 0; k <= distinct[c]; k++) {
+                    buffer.putInt((startsAt[c] + k) * Integer.BYTES, starts[c][k]);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(pricesAt + i * Double.BYTES, prices[i]);
+            }
+
+            // Rows are accumulated in catalog order, so a rollup equals aggregating the matching rows
+            Map<RollupKey, DoubleSummaryStatistics> stats = new HashMap<>();
+            RollupKey probe = new RollupKey(ANY, ANY, ANY);
+            for (int i = 0; i < size; i++) {
+                for (int mask = 0; mask < 8; mask++) {
+                    probe.brand = (mask & 1) != 0 ? columns[BRAND][i] : ANY;
+                    probe.store = (mask & 2) != 0 ? columns[STORE][i] : ANY;
+                    probe.category = (mask & 4) != 0 ? columns[CATEGORY][i] : ANY;
+                    DoubleSummaryStatistics rollup = stats.get(probe);
+                    if (rollup == null) {
+                        rollup = new DoubleSummaryStatistics();
+                        stats.put(new RollupKey(probe.brand, probe.store, probe.category), rollup);
+                    }
+                    rollup.accept(prices[i]);
+                }
+            }
+            this.rollups = Rollups.of(stats, memory);
+        }
+
+        /**
+         * Counting sort of the rows of one column by code.
+         */
+        private static void group(int[] column, int size, int c, int[][] grouped, int[][] codes, int[][] starts) {
+            Map<Integer, int[]> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                counts.computeIfAbsent(column[i], k -> new int[1])[0]++;
+            }
+            int[] sorted = counts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] from = new int[sorted.length + 1];
+            for (int k = 0; k < sorted.length; k++) {
+                int[] count = counts.get(sorted[k]);
+                from[k + 1] = from[k] + count[0];
+                // Counts are reused as fill positions
+                count[0] = from[k];
+            }
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                rows[counts.get(column[i])[0]++] = i;
+            }
+            grouped[c] = rows;
+            codes[c] = sorted;
+            starts[c] = from;
+        }
+
+        DoubleSummaryStatistics aggregate(int name, int brand, int store, int category) {
+            int[] filters = {name, brand, store, category};
+            DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+
+            // Start from the most selective filter; rows stay in catalog order
+            int groupedFrom = -1;
+            int groupedTo = -1;
+            for (int c = 0; c < COLUMNS; c++) {
+                if (filters[c] == ANY) continue;
+                int k = find(c, filters[c]);
+                if (k < 0) return stats;
+                int from = intAt(startsAt[c] + k);
+                int to = intAt(startsAt[c] + k + 1);
+                if (groupedFrom < 0 || to - from < groupedTo - groupedFrom) {
+                    groupedFrom = groupedAt[c] + from;
+                    groupedTo = groupedAt[c] + to;
+                }
+            }
+
+            int count = groupedFrom >= 0 ? groupedTo - groupedFrom : size;
+            for (int r = 0; r < count; r++) {
+                int i = groupedFrom >= 0 ? intAt(groupedFrom + r) : r;
+                if (matches(i, filters)) {
+                    stats.accept(buffer.getDouble(pricesAt + i * Double.BYTES));
+                }
+            }
+            return stats;
+        }
+
+        long bytes() {
+            return buffer.capacity() + rollups.bytes();
+        }
+
+        private boolean matches(int row, int[] filters) {
+            for (int c = 0; c < COLUMNS; c++) {
+                if (filters[c] != ANY && intAt(groupedAt[c] - size + row) != filters[c]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return position of the code among the distinct codes of the column, -1 if no row has it
+         */
+        private int find(int c, int code) {
+            int low = 0;
+            int high = distinct[c] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = intAt(codesAt[c] + mid);
+                if (value < code) {
+                    low = mid + 1;
+                } else if (value > code) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private int intAt(int index) {
+            return buffer.getInt(index * Integer.BYTES);
+        }
+    }
+
+    /**
+     * count/sum/min/max per (brand, store, category), sorted by key in one buffer so a lookup is a binary search.
+     * Every lookup returns a new statistics object, so callers may combine it freely.
+     */
+    private static final class Rollups {
+        // brand, store, category, count, sum, min, max
+        private static final int ENTRY_BYTES = 3 * Integer.BYTES + Long.BYTES + 3 * Double.BYTES;
+
+        private final ByteBuffer buffer;
+        private final int size;
+
+        private Rollups(ByteBuffer buffer, int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        static Rollups of(Map<RollupKey, DoubleSummaryStatistics> stats, ColumnMemory memory) {
+            List<RollupKey> keys = new ArrayList<>(stats.keySet());
+            keys.sort(RollupKey::compareTo);
+            ByteBuffer buffer = memory.allocate((long) keys.size() * ENTRY_BYTES);
+            for (int i = 0; i < keys.size(); i++) {
+                RollupKey key = keys.get(i);
+                DoubleSummaryStatistics entry = stats.get(key);
+                int at = i * ENTRY_BYTES;
+                buffer.putInt(at, key.brand);
+                buffer.putInt(at + 4, key.store);
+                buffer.putInt(at + 8, key.category);
+                buffer.putLong(at + 12, entry.getCount());
+                buffer.putDouble(at + 20, entry.getSum());
+                buffer.putDouble(at + 28, entry.getMin());
+                buffer.putDouble(at + 36, entry.getMax());
+            }
+            return new Rollups(buffer, keys.size());
+        }
+
+        /**
+         * @return the statistics of the key, null if no row has it
+         */
+        DoubleSummaryStatistics get(RollupKey key) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = keyAt(mid).compareTo(key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return statsAt(mid);
+                }
+            }
+            return null;
+        }
+
+        void addTo(Map<RollupKey, DoubleSummaryStatistics> target) {
+            for (int i = 0; i < size; i++) {
+                target.computeIfAbsent(keyAt(i), k -> new DoubleSummaryStatistics()).combine(statsAt(i));
+            }
+        }
+
+        long bytes() {
+            return buffer.capacity();
+        }
+
+        private RollupKey keyAt(int i) {
+            int at = i * ENTRY_BYTES;
+            return new RollupKey(buffer.getInt(at), buffer.getInt(at + 4), buffer.getInt(at + 8));
+        }
+
+        private DoubleSummaryStatistics statsAt(int i) {
+            int at = i * ENTRY_BYTES;
+            return new DoubleSummaryStatistics(buffer.getLong(at + 12), buffer.getDouble(at + 28),
+                    buffer.getDouble(at + 36), buffer.getDouble(at + 20));
+        }
+    }
+
+    /**
+     * (brand, store, category) codes of a rollup, ANY where the dimension is not filtered.
+     * Mutable only for the probe used while building a segment.
+     */
+    private static final class RollupKey implements Comparable<RollupKey> {
+        private int brand;
+        private int store;
+        private int category;
+
+        RollupKey(int brand, int store, int category) {
+            this.brand = brand;
+            this.store = store;
+            this.category = category;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RollupKey)) return false;
+            RollupKey other = (RollupKey) o;
+            return brand == other.brand && store == other.store && category == other.category;
+        }
+
+        @Override
+        public int hashCode() {
+            return (brand * 31 + store) * 31 + category;
+        }
+
+        @Override
+        public int compareTo(RollupKey other) {
+            int cmp = Integer.compare(brand, other.brand);
+            if (cmp == 0) cmp = Integer.compare(store, other.store);
+            return cmp != 0 ? cmp : Integer.compare(category, other.category);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.market.pricecomparator.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented storage of the products of one catalog snapshot. Text fields are dictionary-encoded to int codes,
+ * quantity and price are double columns and the date is an epoch day, so a row costs 8 ints and 2 doubles
+ * instead of a Product object. The rows of a store are contiguous.
+ * <p>
+ * Products are exposed as read-only list views; {@link #get(int)} materializes a new Product for a row on every call,
+ * so only the products a request actually returns live beyond the request.
+ * <p>
+ * All columns are slices of one buffer allocated from a {@link ColumnMemory}, on the heap or off it; the dictionary
+ * and the per-store views always stay on the heap.
+ */
+public final class ProductColumns {
+    // Rough HotSpot sizes (64-bit, compressed oops), see CatalogSnapshot
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final int NULL_CODE = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private static final int ROW_BYTES = 8 * Integer.BYTES + 2 * Double.BYTES;
+
+    private final String[] dictionary;
+    private final int size;
+    private final ByteBuffer buffer;
+    private final boolean offHeap;
+    private final IntBuffer productIds;
+    private final IntBuffer names;
+    private final IntBuffer categories;
+    private final IntBuffer brands;
+    private final IntBuffer units;
+    private final IntBuffer currencies;
+    private final IntBuffer rowStores;
+    private final DoubleBuffer quantities;
+    private final DoubleBuffer prices;
+    private final IntBuffer epochDays;
+    private final Map<String, List<Product>> productsByStore;
+
+    private ProductColumns(Map<String, List<Product>> source, int rows, ColumnMemory memory) {
+        Dictionary dict = new Dictionary();
+        size = rows;
+        buffer = memory.allocate((long) rows * ROW_BYTES);
+        offHeap = memory.isOffHeap();
+        // Double columns first, so every column is aligned to its element size
+        quantities = slice(0, rows, Double.BYTES).asDoubleBuffer();
+        prices = slice(1, rows, Double.BYTES).asDoubleBuffer();
+        int intStart = 2 * Double.BYTES / Integer.BYTES;
+        productIds = slice(intStart, rows, Integer.BYTES).asIntBuffer();
+        names = slice(intStart + 1, rows, Integer.BYTES).asIntBuffer();
+        categories = slice(intStart + 2, rows, Integer.BYTES).asIntBuffer();
+        brands = slice(intStart + 3, rows, Integer.BYTES).asIntBuffer();
+        units = slice(intStart + 4, rows, Integer.BYTES).asIntBuffer();
+        currencies = slice(intStart + 5, rows, Integer.BYTES).asIntBuffer();
+        rowStores = slice(intStart + 6, rows, Integer.BYTES).asIntBuffer();
+        epochDays = slice(intStart + 7, rows, Integer.BYTES).asIntBuffer();
+
+        Map<String, List<Product>> views = new LinkedHashMap<>();
+        int row = 0;
+        for (Map.Entry<String, List<Product>> entry : source.entrySet()) {
+            int storeStart = row;
+            for (Product p : entry.getValue()) {
+                productIds.put(row, dict.code(p.getProductId()));
+                names.put(row, dict.code(p.getProductName()));
+                categories.put(row, dict.code(p.getCategory()));
+                brands.put(row, dict.code(p.getBrand()));
+                units.put(row, dict.code(p.getUnit()));
+                currencies.put(row, dict.code(p.getCurrency()));
+                rowStores.put(row, dict.code(p.getStore()));
+                quantities.put(row, p.getQuantity());
+                prices.put(row, p.getPrice());
+                epochDays.put(row, p.getDate() != null ? (int) p.getDate().toEpochDay() : NULL_DATE);
+                row++;
+            }
+            views.put(entry.getKey(), new Rows(storeStart, row));
+        }
+        dictionary = dict.values();
+        productsByStore = Collections.unmodifiableMap(views);
+    }
+
+    /**
+     * Encodes the products, keeping the store order of the map and the row order within a store.
+     */
+    public static ProductColumns of(Map<String, List<Product>> productsByStore) {
+        return of(productsByStore, ColumnMemory.heap());
+    }
+
+    /**
+     * Encodes the products into columns allocated from the given memory.
+     */
+    public static ProductColumns of(Map<String, List<Product>> productsByStore, ColumnMemory memory) {
+        int rows = productsByStore.values().stream().mapToInt(List::size).sum();
+        return new ProductColumns(productsByStore, rows, memory);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a new Product holding the values of a row
+     */
+    public Product get(int row) {
+        return materialize(row);
+    }
+
+    /**
+     * @return read-only views of the rows of every store, in store order
+     */
+    public Map<String, List<Product>> getProductsByStore() {
+        return productsByStore;
+    }
+
+    /**
+     * @return read-only view of every row, in store order
+     */
+    public List<Product> allRows() {
+        return new Rows(0, size());
+    }
+
+    /**
+     * Estimates the retained heap size of the columns and the dictionary; off-heap columns count only their views.
+     * Strings are counted once, as the dictionary holds each distinct value once; store names are dictionary values.
+     */
+    public long estimateBytes() {
+        // Dictionary array, 11 buffer objects, plus one list view per store
+        long bytes = ARRAY_HEADER_BYTES + 4L * dictionary.length + 48L * 11 + 24L * productsByStore.size();
+        if (!offHeap) {
+            bytes += ARRAY_HEADER_BYTES + buffer.capacity();
+        }
+        for (String value : dictionary) {
+            bytes += CatalogSnapshot.sizeOfString(value);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return bytes of the columns held outside the heap, 0 for heap columns
+     */
+    public long offHeapBytes() {
+        return offHeap ? buffer.capacity() : 0;
+    }
+
+    private ByteBuffer slice(int column, int rows, int elementBytes) {
+        // Slices start in big-endian order whatever the parent's order is
+        return buffer.slice(column * rows * elementBytes, rows * elementBytes).order(ByteOrder.nativeOrder());
+    }
+
+    private Product materialize(int row) {
+        int epochDay = epochDays.get(row);
+        return new Product(text(productIds.get(row)), text(names.get(row)), text(categories.get(row)),
+                text(brands.get(row)), quantities.get(row), text(units.get(row)), prices.get(row),
+                text(currencies.get(row)), text(rowStores.get(row)),
+                epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null);
+    }
+
+    private String text(int code) {
+        return code == NULL_CODE ? null : dictionary[code];
+    }
+
+    /**
+     * Rows [from, to) as products.
+     */
+    private final class Rows extends AbstractList<Product> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        private Rows(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Product get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (to - from));
+            }
+            return materialize(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[256];
+
+        int code(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                codes.put(value, code);
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[code] = value;
+            }
+            return code;
+        }
+
+        String[] values() {
+            return Arrays.copyOf(values, codes.size());
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.market.pricecomparator.model;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable inverted index over the products of one catalog snapshot.
+ * Keys are normalized once at build time (trimmed, lower case) and encoded to int codes, so lookups by name, brand,
+ * store or category are hash lookups and never lower-case product fields per request.
+ * Postings are int row numbers into the snapshot rows, which may be Product objects or a columnar view;
+ * only the rows a lookup returns are read.
+ * The per-row key codes and all postings are stored back to back in one int buffer allocated from a
+ * {@link ColumnMemory}, so an index over off-heap rows keeps only its key dictionary and offsets on the heap.
+ * Callers normalize their filter values once with {@link #normalize(String)}.
+ * A composed index ({@link #compose}) holds no postings of its own: it looks each store up in the index of the
+ * snapshot its rows come from.
+ */
+public class ProductIndex {
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+    private static final ProductIndex EMPTY = new ProductIndex(List.of(), ColumnMemory.heap());
+    private static final int UNKNOWN = -1;
+    private static final int ANY = -2;
+    // Int sections of the buffer, each one int per row
+    private static final int BRAND_KEYS = 0;
+    private static final int STORE_KEYS = 1;
+    private static final int CATEGORY_KEYS = 2;
+    private static final int BY_NAME = 3;
+    private static final int BY_BRAND = 4;
+    private static final int BY_STORE = 5;
+    private static final int BY_CATEGORY = 6;
+    private static final int BY_NAME_BRAND = 7;
+    private static final int SECTIONS = 8;
+
+    private final long id = ID_SEQUENCE.incrementAndGet();
+    private final List<Product> rows;
+    private final int size;
+    // Normalized key -> code, shared by every field
+    private final Map<String, Integer> keyCodes = new HashMap<>();
+    private final ByteBuffer buffer;
+    private final boolean offHeap;
+    private final IntBuffer ints;
+    // Start of the postings of each key code within its section; keyCount + 1 entries
+    private final int[] byNameOffsets;
+    private final int[] byBrandOffsets;
+    private final int[] byStoreOffsets;
+    private final int[] byCategoryOffsets;
+    // Sorted (name code, brand code) pairs and the start of their postings; pairs + 1 offsets
+    private final long[] nameBrandPairs;
+    private final int[] nameBrandOffsets;
+    // Indexes this one is composed of, null for an index with its own postings
+    private final List<Part> parts;
+    // Normalized store -> position in catalog order, for a composed index
+    private final Map<String, Integer> storeRanks;
+
+    private ProductIndex(List<Product> rows, ColumnMemory memory) {
+        this.rows = rows;
+        this.size = rows.size();
+        this.buffer = memory.allocate((long) SECTIONS * size * Integer.BYTES);
+        this.offHeap = memory.isOffHeap();
+        this.ints = buffer.asIntBuffer();
+        int[] nameKeys = new int[size];
+
+        // Raw value -> code, so repeated values are normalized once
+        Map<String, Integer> rawCodes = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            Product p = rows.get(row);
+            nameKeys[row] = code(p.getProductName(), rawCodes);
+            ints.put(BRAND_KEYS * size + row, code(p.getBrand(), rawCodes));
+            ints.put(STORE_KEYS * size + row, code(p.getStore(), rawCodes));
+            ints.put(CATEGORY_KEYS * size + row, code(p.getCategory(), rawCodes));
+        }
+
+        int keys = keyCodes.size();
+        byNameOffsets = postings(nameKeys, keys, BY_NAME);
+        byBrandOffsets = postings(keysOf(BRAND_KEYS), keys, BY_BRAND);
+        byStoreOffsets = postings(keysOf(STORE_KEYS), keys, BY_STORE);
+        byCategoryOffsets = postings(keysOf(CATEGORY_KEYS), keys, BY_CATEGORY);
+
+        // Rank the distinct pairs, then reuse the key postings builder over pair ranks
+        long[] pairs = new long[size];
+        for (int row = 0; row < size; row++) {
+            pairs[row] = pair(nameKeys[row], brandKey(row));
+        }
+        nameBrandPairs = Arrays.stream(pairs).sorted().distinct().toArray();
+        int[] pairRanks = new int[size];
+        for (int row = 0; row < size; row++) {
+            pairRanks[row] = Arrays.binarySearch(nameBrandPairs, pairs[row]);
+        }
+        nameBrandOffsets = postings(pairRanks, nameBrandPairs.length, BY_NAME_BRAND);
+        this.parts = null;
+        this.storeRanks = Map.of();
+    }
+
+    private ProductIndex(List<Part> parts, Map<String, Integer> storeRanks, int size) {
+        this.rows = List.of();
+        this.size = size;
+        this.buffer = ByteBuffer.allocate(0);
+        this.offHeap = false;
+        this.ints = buffer.asIntBuffer();
+        this.byNameOffsets = new int[1];
+        this.byBrandOffsets = new int[1];
+        this.byStoreOffsets = new int[1];
+        this.byCategoryOffsets = new int[1];
+        this.nameBrandPairs = new long[0];
+        this.nameBrandOffsets = new int[1];
+        this.parts = parts;
+        this.storeRanks = storeRanks;
+    }
+
+    public static ProductIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the index keeping the store iteration order of the given map and the file order within a store.
+     */
+    public static ProductIndex of(Map<String, List<Product>> productsByStore) {
+        List<Product> rows = new ArrayList<>();
+        productsByStore.values().forEach(rows::addAll);
+        return new ProductIndex(rows, ColumnMemory.heap());
+    }
+
+    /**
+     * Builds the index over rows in catalog order; the list must support fast random access and is retained.
+     */
+    public static ProductIndex of(List<Product> rows) {
+        return new ProductIndex(rows, ColumnMemory.heap());
+    }
+
+    /**
+     * The same, with the key codes and postings allocated from the given memory.
+     */
+    public static ProductIndex of(List<Product> rows, ColumnMemory memory) {
+        return new ProductIndex(rows, memory);
+    }
+
+    /**
+     * Combines existing indexes without copying them, e.g. to serve each store from its latest snapshot.
+     * Only the rows of its own stores are returned from each index, and results keep the catalog order.
+     *
+     * @param indexesByStore store -> index holding its rows, in catalog order; stores may share an index
+     * @param size           number of rows of the given stores
+     */
+    public static ProductIndex compose(Map<String, ProductIndex> indexesByStore, int size) {
+        List<Part> parts = new ArrayList<>();
+        Map<String, Integer> storeRanks = new HashMap<>();
+        indexesByStore.forEach((store, index) -> {
+            String storeKey = normalize(store);
+            storeRanks.putIfAbsent(storeKey, storeRanks.size());
+            Part part = parts.stream().filter(p -> p.index == index).findFirst().orElse(null);
+            if (part == null) {
+                part = new Part(index);
+                parts.add(part);
+            }
+            part.storeKeys.add(storeKey);
+        });
+        return new ProductIndex(parts, storeRanks, size);
+    }
+
+    /**
+     * Normalizes a key the same way the index does. Returns the same instance when it is already normalized.
+     */
+    public static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Unique per index instance, so results derived from this index can be cached under its id
+     * without keeping the index itself reachable.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes of the key codes and postings held outside the heap, 0 for a heap or composed index
+     */
+    public long offHeapBytes() {
+        return offHeap ? buffer.capacity() : 0;
+    }
+
+    /**
+     * Finds products matching every given filter. Filters must be normalized; null means "any", and so does an empty
+     * brand, store or category. An empty name matches nothing: a blank item or query name must not select the whole
+     * catalog, callers that want every name pass null.
+     *
+     * @param name     product name
+     * @param brand    brand
+     * @param store    store
+     * @param category category
+     * @return matching products, in catalog order
+     */
+    public List<Product> find(String name, String brand, String store, String category) {
+        if (name != null && name.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (parts != null) {
+            return findInParts(name, brand, store, category);
+        }
+        int nameCode = filterCode(name);
+        int brandCode = filterCode(brand);
+        int storeCode = filterCode(store);
+        int categoryCode = filterCode(category);
+        if (nameCode == UNKNOWN || brandCode == UNKNOWN || storeCode == UNKNOWN || categoryCode == UNKNOWN) {
+            return new ArrayList<>();
+        }
+        boolean hasName = nameCode >= 0;
+        boolean hasBrand = brandCode >= 0;
+        boolean hasStore = storeCode >= 0;
+        boolean hasCategory = categoryCode >= 0;
+
+        // Candidates are ints [from, to) of the buffer; null means every row
+        int[] candidates;
+        if (hasName && hasBrand) {
+            int rank = Arrays.binarySearch(nameBrandPairs, pair(nameCode, brandCode));
+            candidates = rank >= 0 ? range(BY_NAME_BRAND, nameBrandOffsets, rank) : new int[2];
+            hasBrand = false;
+        } else if (hasName) {
+            candidates = range(BY_NAME, byNameOffsets, nameCode);
+        } else {
+            // Start from the most selective secondary index
+            candidates = null;
+            if (hasBrand) candidates = smaller(candidates, range(BY_BRAND, byBrandOffsets, brandCode));
+            if (hasStore) candidates = smaller(candidates, range(BY_STORE, byStoreOffsets, storeCode));
+            if (hasCategory) candidates = smaller(candidates, range(BY_CATEGORY, byCategoryOffsets, categoryCode));
+        }
+
+        int count = candidates != null ? candidates[1] - candidates[0] : size;
+        List<Product> result = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            int row = candidates != null ? ints.get(candidates[0] + i) : i;
+            if (hasBrand && brandKey(row) != brandCode) continue;
+            if (hasStore && ints.get(STORE_KEYS * size + row) != storeCode) continue;
+            if (hasCategory && ints.get(CATEGORY_KEYS * size + row) != categoryCode) continue;
+            result.add(rows.get(row));
+        }
+        return result;
+    }
+
+    public List<Product> findByName(String name) {
+        return find(name, null, null, null);
+    }
+
+    public List<Product> findByNameAndBrand(String name, String brand) {
+        return find(name, brand, null, null);
+    }
+
+    private List<Product> findInParts(String name, String brand, String store, String category) {
+        boolean hasStore = store != null && !store.isEmpty();
+        List<Product> result = new ArrayList<>();
+        int partsFound = 0;
+        for (Part part : parts) {
+            if (hasStore && !part.storeKeys.contains(store)) continue;
+            List<Product> found = part.index.find(name, brand, store, category);
+            if (found.isEmpty()) continue;
+            partsFound++;
+            for (Product p : found) {
+                // The index may also hold stores whose rows now come from another one
+                if (hasStore || part.storeKeys.contains(normalize(p.getStore()))) {
+                    result.add(p);
+                }
+            }
+        }
+        if (partsFound > 1) {
+            // Stable, so rows keep their file order within a store
+            result.sort(Comparator.comparingInt(p -> storeRanks.getOrDefault(normalize(p.getStore()), Integer.MAX_VALUE)));
+        }
+        return result;
+    }
+
+    private int code(String raw, Map<String, Integer> rawCodes) {
+        String key = raw == null ? "" : raw;
+        Integer code = rawCodes.get(key);
+        if (code == null) {
+            code = keyCodes.computeIfAbsent(normalize(key), k -> keyCodes.size());
+            rawCodes.put(key, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return the key code of a filter, ANY when it is not set, UNKNOWN when no row has the key
+     */
+    private int filterCode(String key) {
+        if (key == null || key.isEmpty()) {
+            return ANY;
+        }
+        return keyCodes.getOrDefault(key, UNKNOWN);
+    }
+
+    private int brandKey(int row) {
+        return ints.get(BRAND_KEYS * size + row);
+    }
+
+    private int[] keysOf(int section) {
+        int[] keys = new int[size];
+        ints.get(section * size, keys);
+        return keys;
+    }
+
+    /**
+     * Writes the rows of every key, ascending and grouped by key, into a section of the buffer.
+     *
+     * @return start of each key's rows within the section, keyCount + 1 entries
+     */
+    private int[] postings(int[] keysByRow, int keyCount, int section) {
+        int[] offsets = new int[keyCount + 1];
+        for (int key : keysByRow) offsets[key + 1]++;
+        for (int key = 0; key < keyCount; key++) offsets[key + 1] += offsets[key];
+
+        int[] filled = Arrays.copyOf(offsets, keyCount);
+        int base = section * size;
+        for (int row = 0; row < keysByRow.length; row++) {
+            ints.put(base + filled[keysByRow[row]]++, row);
+        }
+        return offsets;
+    }
+
+    private int[] range(int section, int[] offsets, int code) {
+        int base = section * size;
+        return new int[]{base + offsets[code], base + offsets[code + 1]};
+    }
+
+    private static int[] smaller(int[] a, int[] b) {
+        return a == null || b[1] - b[0] < a[1] - a[0] ? b : a;
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    private static final class Part {
+        private final ProductIndex index;
+        private final Set<String> storeKeys = new HashSet<>();
+
+        Part(ProductIndex index) {
+            this.index = index;
+        }
+    }
+}
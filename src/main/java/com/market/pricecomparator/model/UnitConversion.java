@@ -0,0 +1,46 @@
+package com.market.pricecomparator.model;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Converts package quantities to the standard base units (kg, l, buc), so packages of different sizes
+ * and units can be compared by price per unit. Unknown units are their own base unit.
+ */
+public final class UnitConversion {
+    // Maps common units to standard base units (kg, l, buc)
+    private static final Map<String, Double> UNIT_CONVERSION_TO_STANDARD = Map.of(
+            "g", 0.001,
+            "kg", 1.0,
+            "ml", 0.001,
+            "l", 1.0,
+            "buc", 1.0
+    );
+    private static final Map<String, String> BASE_UNIT = Map.of(
+            "g", "kg",
+            "kg", "kg",
+            "ml", "l",
+            "l", "l",
+            "buc", "buc"
+    );
+
+    private UnitConversion() {
+    }
+
+    // Normalize quantity to base unit (e.g., grams -> kg)
+    public static double normalizeQuantity(double quantity, String unit) {
+        return quantity * UNIT_CONVERSION_TO_STANDARD.getOrDefault(key(unit), 1.0);
+    }
+
+    /**
+     * @return base unit the quantity is normalized to, e.g. "kg" for "g"
+     */
+    public static String baseUnit(String unit) {
+        String key = key(unit);
+        return BASE_UNIT.getOrDefault(key, key);
+    }
+
+    private static String key(String unit) {
+        return unit == null ? "" : unit.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,127 @@
+package com.market.pricecomparator.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-unit view of one catalog snapshot: every product with its package quantity converted to the base unit
+ * (kg, l, buc) and its price per base unit, grouped by normalized name and (name, brand) and sorted by price per unit.
+ * Built once per snapshot, so quantity based basket optimization never converts units per request.
+ */
+public class UnitPriceIndex {
+    // Package quantities are compared in thousandths of the base unit (g, ml, 1/1000 buc)
+    public static final long GRAINS_PER_UNIT = 1000;
+
+    private final Map<String, List<PackageOption>> byName = new HashMap<>();
+    private final Map<String, Map<String, List<PackageOption>>> byNameBrand = new HashMap<>();
+
+    private UnitPriceIndex() {
+    }
+
+    public static UnitPriceIndex of(Map<String, List<Product>> productsByStore) {
+        List<Product> rows = new ArrayList<>();
+        productsByStore.values().forEach(rows::addAll);
+        return of(rows);
+    }
+
+    /**
+     * Builds the index over rows in catalog order; the list must support fast random access and is retained,
+     * packages read their product from it.
+     */
+    public static UnitPriceIndex of(List<Product> rows) {
+        UnitPriceIndex index = new UnitPriceIndex();
+        for (int row = 0; row < rows.size(); row++) {
+            Product p = rows.get(row);
+            PackageOption option = PackageOption.of(rows, row, p);
+            if (option == null) continue;
+
+            String name = ProductIndex.normalize(p.getProductName());
+            String brand = ProductIndex.normalize(p.getBrand());
+            index.byName.computeIfAbsent(name, k -> new ArrayList<>()).add(option);
+            index.byNameBrand.computeIfAbsent(name, k -> new HashMap<>())
+                    .computeIfAbsent(brand, k -> new ArrayList<>()).add(option);
+        }
+
+        // Stable sort keeps catalog order between packages with the same price per unit
+        Comparator<PackageOption> byPricePerUnit = Comparator.comparingDouble(PackageOption::getPricePerUnit);
+        index.byName.values().forEach(options -> options.sort(byPricePerUnit));
+        index.byNameBrand.values().forEach(brands -> brands.values().forEach(options -> options.sort(byPricePerUnit)));
+        return index;
+    }
+
+    /**
+     * @param name  normalized product name; a blank name matches nothing
+     * @param brand normalized brand, empty for any brand
+     * @return packages of the product, cheapest base price per unit first
+     */
+    public List<PackageOption> find(String name, String brand) {
+        if (name == null || name.isEmpty()) {
+            return List.of();
+        }
+        if (brand == null || brand.isEmpty()) {
+            return byName.getOrDefault(name, List.of());
+        }
+        return byNameBrand.getOrDefault(name, Map.of()).getOrDefault(brand, List.of());
+    }
+
+    /**
+     * A product package with its quantity in base units.
+     */
+    public static final class PackageOption {
+        private final List<Product> rows;
+        private final int row;
+        private final String baseUnit;
+        private final double baseQuantity;
+        private final long grains;
+        private final double pricePerUnit;
+
+        private PackageOption(List<Product> rows, int row, Product product, String baseUnit, double baseQuantity, long grains) {
+            this.rows = rows;
+            this.row = row;
+            this.baseUnit = baseUnit;
+            this.baseQuantity = baseQuantity;
+            this.grains = grains;
+            this.pricePerUnit = product.getPrice() / baseQuantity;
+        }
+
+        // Packages without a usable quantity cannot be priced per unit
+        static PackageOption of(List<Product> rows, int row, Product product) {
+            double baseQuantity = UnitConversion.normalizeQuantity(product.getQuantity(), product.getUnit());
+            long grains = Math.round(baseQuantity * GRAINS_PER_UNIT);
+            if (grains <= 0) return null;
+            return new PackageOption(rows, row, product, UnitConversion.baseUnit(product.getUnit()), baseQuantity, grains);
+        }
+
+        /**
+         * @return the product of the package, read from the snapshot rows (a new instance for columnar rows)
+         */
+        public Product getProduct() {
+            return rows.get(row);
+        }
+
+        public String getBaseUnit() {
+            return baseUnit;
+        }
+
+        public double getBaseQuantity() {
+            return baseQuantity;
+        }
+
+        /**
+         * @return package quantity in thousandths of the base unit
+         */
+        public long getGrains() {
+            return grains;
+        }
+
+        /**
+         * @return base price (before discounts) per base unit
+         */
+        public double getPricePerUnit() {
+            return pricePerUnit;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.BasketBatchResultDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.BasketStreamSummaryDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.ProductIndex;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Optimizes many shopping lists against one shared product and discount index.
+ * Baskets are split into chunks that run on a fixed pool of worker threads, so the number of cores used by batch
+ * jobs is bounded no matter how many batches are submitted at once.
+ * <p>
+ * The streaming mode reads shopping lists as newline-delimited JSON and writes one result line per basket,
+ * in input order. Only a small window of baskets is in flight, so memory does not grow with the batch size.
+ */
+@Service
+public class BasketBatchService {
+    private static final Logger logger = Logger.getLogger(BasketBatchService.class.getName());
+    // Chunks per worker, so a slow chunk does not leave the other workers idle at the end
+    private static final int CHUNKS_PER_WORKER = 4;
+    // Streamed baskets in flight per worker
+    private static final int WINDOW_PER_WORKER = 8;
+    private static final int FLUSH_EVERY = 64;
+    private static final TypeReference<List<ShoppingItemDTO>> SHOPPING_LIST = new TypeReference<>() {};
+
+    private final BasketOptimizerService basketOptimizerService;
+    private final ObjectMapper objectMapper;
+    private final int parallelism;
+    private final ExecutorService workers;
+
+    public BasketBatchService(BasketOptimizerService basketOptimizerService, int parallelism) {
+        this(basketOptimizerService,
+                JsonMapper.builder().findAndAddModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build(),
+                parallelism);
+    }
+
+    @Autowired
+    public BasketBatchService(BasketOptimizerService basketOptimizerService,
+                              ObjectMapper objectMapper,
+                              @Value("${pricecomparator.basket.batch-parallelism:0}") int parallelism) {
+        this.basketOptimizerService = basketOptimizerService;
+        this.objectMapper = objectMapper;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, new WorkerThreadFactory());
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param baskets       shopping lists to optimize
+     * @param productIndex  product index of the catalog snapshot shared by every basket
+     * @param discountIndex discounts shared by every basket
+     * @param date          date for discount application
+     * @return one result per basket in submission order, with throughput and latency percentiles
+     */
+    public BasketBatchResultDTO optimizeBatch(List<List<ShoppingItemDTO>> baskets,
+                                              ProductIndex productIndex,
+                                              DiscountIndex discountIndex,
+                                              LocalDate date) {
+        int count = baskets.size();
+        BasketOptimizationResultDTO[] results = new BasketOptimizationResultDTO[count];
+        long[] latencyNanos = new long[count];
+
+        long start = System.nanoTime();
+        int chunkSize = Math.max(1, (count + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < count; from += chunkSize) {
+            int chunkStart = from;
+            int chunkEnd = Math.min(count, from + chunkSize);
+            chunks.add(() -> {
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    long basketStart = System.nanoTime();
+                    results[i] = basketOptimizerService.optimizeBasketDetailed(baskets.get(i), productIndex, discountIndex, date);
+                    latencyNanos[i] = System.nanoTime() - basketStart;
+                }
+                return null;
+            });
+        }
+        runAll(chunks);
+        long elapsedNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencyNanos);
+        double basketsPerSecond = elapsedNanos > 0 ? count * 1_000_000_000.0 / elapsedNanos : 0;
+        logger.info(String.format("Optimized %d baskets in %d ms on %d workers (%.0f baskets/s)",
+                count, elapsedNanos / 1_000_000, parallelism, basketsPerSecond));
+
+        return new BasketBatchResultDTO(
+                Arrays.asList(results),
+                count,
+                parallelism,
+                elapsedNanos / 1_000_000,
+                basketsPerSecond,
+                percentileMicros(latencyNanos, 50),
+                percentileMicros(latencyNanos, 95),
+                percentileMicros(latencyNanos, 99),
+                count > 0 ? latencyNanos[count - 1] / 1_000 : 0
+        );
+    }
+
+    /**
+     * Streams baskets from NDJSON input (one JSON array of ShoppingItemDTO per line) to NDJSON output
+     * (one BasketOptimizationResultDTO per line, same order). Malformed lines are logged and skipped.
+     * The last output line is the {@link BasketStreamSummaryDTO} of the run.
+     */
+    public BasketStreamSummaryDTO optimizeNdjson(Reader input, Writer output,
+                                                 ProductIndex productIndex,
+                                                 DiscountIndex discountIndex,
+                                                 LocalDate date) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        BufferedWriter writer = new BufferedWriter(output);
+        long start = System.nanoTime();
+        LatencyHistogram latencies = new LatencyHistogram();
+        Deque<Future<TimedResult>> inFlight = new ArrayDeque<>();
+        int window = parallelism * WINDOW_PER_WORKER;
+        long lineNumber = 0;
+        long skipped = 0;
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+
+                List<ShoppingItemDTO> shoppingList;
+                try {
+                    shoppingList = objectMapper.readValue(line, SHOPPING_LIST);
+                } catch (JsonProcessingException e) {
+                    logger.warning(String.format("Skipping basket line %d: %s", lineNumber, e.getOriginalMessage()));
+                    skipped++;
+                    continue;
+                }
+
+                inFlight.addLast(workers.submit(() -> {
+                    long basketStart = System.nanoTime();
+                    BasketOptimizationResultDTO result =
+                            basketOptimizerService.optimizeBasketDetailed(shoppingList, productIndex, discountIndex, date);
+                    return new TimedResult(result, System.nanoTime() - basketStart);
+                }));
+                // Write the oldest result before reading further once the window is full
+                if (inFlight.size() >= window) {
+                    writeResult(inFlight.removeFirst(), writer, latencies);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeResult(inFlight.removeFirst(), writer, latencies);
+            }
+        } finally {
+            inFlight.forEach(pending -> pending.cancel(true));
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long count = latencies.getCount();
+        BasketStreamSummaryDTO summary = new BasketStreamSummaryDTO(
+                count,
+                skipped,
+                parallelism,
+                elapsedNanos / 1_000_000,
+                elapsedNanos > 0 ? count * 1_000_000_000.0 / elapsedNanos : 0,
+                latencies.percentileMicros(50),
+                latencies.percentileMicros(95),
+                latencies.percentileMicros(99),
+                latencies.getMaxMicros()
+        );
+        writer.write(objectMapper.writeValueAsString(summary));
+        writer.newLine();
+        writer.flush();
+
+        logger.info(String.format("Streamed %d baskets (%d skipped lines) in %d ms on %d workers (%.0f baskets/s)",
+                count, skipped, summary.getElapsedMillis(), parallelism, summary.getBasketsPerSecond()));
+        return summary;
+    }
+
+    /**
+     * File variant of {@link #optimizeNdjson(Reader, Writer, ProductIndex, DiscountIndex, LocalDate)}
+     * for offline jobs.
+     */
+    public BasketStreamSummaryDTO optimizeNdjsonFile(Path input, Path output,
+                                                     ProductIndex productIndex,
+                                                     DiscountIndex discountIndex,
+                                                     LocalDate date) throws IOException {
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return optimizeNdjson(reader, writer, productIndex, discountIndex, date);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void runAll(List<Callable<Void>> chunks) {
+        List<Future<Void>> done;
+        try {
+            done = workers.invokeAll(chunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Basket batch interrupted", e);
+        }
+        done.forEach(BasketBatchService::await);
+    }
+
+    private void writeResult(Future<TimedResult> pending, BufferedWriter writer, LatencyHistogram latencies)
+            throws IOException {
+        TimedResult timed = await(pending);
+        writer.write(objectMapper.writeValueAsString(timed.result));
+        writer.newLine();
+        latencies.recordNanos(timed.nanos);
+        if (latencies.getCount() % FLUSH_EVERY == 0) {
+            writer.flush();
+        }
+    }
+
+    private static <T> T await(Future<T> pending) {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Basket optimization interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("Basket optimization failed", cause);
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of sorted latencies, in microseconds.
+     */
+    private static long percentileMicros(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+        return sortedNanos[Math.max(0, rank - 1)] / 1_000;
+    }
+
+    private static final class TimedResult {
+        private final BasketOptimizationResultDTO result;
+        private final long nanos;
+
+        TimedResult(BasketOptimizationResultDTO result, long nanos) {
+            this.result = result;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "basket-batch-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
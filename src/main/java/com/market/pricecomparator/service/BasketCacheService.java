@@ -0,0 +1,194 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.BasketCacheStatsDTO;
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.dto.StoreProductsDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.DiscountIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Serves repeated shopping lists from a bounded W-TinyLFU cache in front of BasketOptimizerService.
+ * The key is the list's deduplicated name|brand keys in sorted order plus the date, the catalog snapshot version and
+ * the discount index id, so a repeated or reordered basket hits while any catalog or discount change misses.
+ * The whole cache is dropped when a snapshot is published; entries of an older discount index are never hit again
+ * and age out of the cache.
+ */
+@Service
+public class BasketCacheService {
+    private static final Logger logger = Logger.getLogger(BasketCacheService.class.getName());
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final BasketOptimizerService basketOptimizerService;
+    // Null when caching is disabled (max-entries = 0)
+    private final BoundedCache<Key, CachedResult> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BasketCacheService(BasketOptimizerService basketOptimizerService,
+                              ProductService productService,
+                              @Value("${pricecomparator.basket.cache.max-entries:10000}") int maxEntries,
+                              @Value("${pricecomparator.basket.cache.max-weight-mb:64}") int maxWeightMb) {
+        this.basketOptimizerService = basketOptimizerService;
+        this.cache = maxEntries > 0
+                ? new BoundedCache<>(maxEntries, maxWeightMb * BYTES_PER_MB, CachedResult::getEstimatedBytes)
+                : null;
+        productService.addSnapshotListener(snapshot -> invalidate("catalog snapshot " + snapshot.getDate() + " v" + snapshot.getVersion()));
+    }
+
+    /**
+     * Same result as {@link BasketOptimizerService#optimizeBasketDetailed(List, com.market.pricecomparator.model.ProductIndex, DiscountIndex, LocalDate)}
+     * for the snapshot's product index. Cached results are shared between requests and must be treated as read-only.
+     */
+    public BasketOptimizationResultDTO optimize(List<ShoppingItemDTO> shoppingList,
+                                                CatalogSnapshot snapshot,
+                                                DiscountIndex discountIndex,
+                                                LocalDate currentDate) {
+        if (cache == null) {
+            return basketOptimizerService.optimizeBasketDetailed(shoppingList, snapshot.getProductIndex(), discountIndex, currentDate);
+        }
+
+        // First item of every distinct key, in request order, like the optimizer's own deduplication
+        Map<String, ShoppingItemDTO> itemsByKey = new LinkedHashMap<>();
+        for (ShoppingItemDTO item : shoppingList) {
+            itemsByKey.putIfAbsent(BasketOptimizerService.itemKey(item), item);
+        }
+        Key key = new Key(String.join("\n", new TreeSet<>(itemsByKey.keySet())),
+                currentDate, snapshot.getVersion(), discountIndex.getId());
+
+        CachedResult cached = cache.get(key);
+        if (cached != null) {
+            // Unmatched items are echoed back as the caller wrote them
+            List<ShoppingItemDTO> unmatchedItems = new ArrayList<>();
+            itemsByKey.forEach((itemKey, item) -> {
+                if (cached.unmatchedKeys.contains(itemKey)) unmatchedItems.add(item);
+            });
+            return new BasketOptimizationResultDTO(cached.stores, cached.totalCost, unmatchedItems,
+                    cached.totalSavings, LocalDateTime.now());
+        }
+
+        BasketOptimizationResultDTO result = basketOptimizerService.optimizeBasketDetailed(
+                shoppingList, snapshot.getProductIndex(), discountIndex, currentDate);
+        cache.put(key, CachedResult.of(key, result));
+        return result;
+    }
+
+    public BasketCacheStatsDTO getStats() {
+        CheapestOfferMemo memo = basketOptimizerService.getOfferMemo();
+        long memoHits = memo == null ? 0 : memo.getHits();
+        long memoMisses = memo == null ? 0 : memo.getMisses();
+        int memoSize = memo == null ? 0 : memo.size();
+        long memoWeight = memo == null ? 0 : memo.getWeight();
+        if (cache == null) {
+            return new BasketCacheStatsDTO(0, 0, 0, 0, invalidations.get(), 0, 0, 0, 0,
+                    memoHits, memoMisses, memoSize, memoWeight);
+        }
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        double hitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        return new BasketCacheStatsDTO(hits, misses, hitRate, cache.getEvictions(), invalidations.get(),
+                cache.size(), cache.getWeight(), cache.getMaxEntries(), cache.getMaxWeight(),
+                memoHits, memoMisses, memoSize, memoWeight);
+    }
+
+    public void invalidateAll() {
+        invalidate("request");
+    }
+
+    private void invalidate(String reason) {
+        if (cache == null) return;
+        cache.invalidateAll();
+        invalidations.incrementAndGet();
+        logger.fine("Basket cache cleared: " + reason);
+    }
+
+    private static final class Key {
+        private final String basket;
+        private final LocalDate date;
+        private final long snapshotVersion;
+        private final long discountIndexId;
+        private final int hash;
+
+        Key(String basket, LocalDate date, long snapshotVersion, long discountIndexId) {
+            this.basket = basket;
+            this.date = date;
+            this.snapshotVersion = snapshotVersion;
+            this.discountIndexId = discountIndexId;
+            this.hash = Objects.hash(basket, date, snapshotVersion, discountIndexId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && snapshotVersion == other.snapshotVersion
+                    && discountIndexId == other.discountIndexId
+                    && date.equals(other.date) && basket.equals(other.basket);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The parts of a result that do not depend on how the request spelled its items.
+     */
+    private static final class CachedResult {
+        // Rough HotSpot sizes; products themselves belong to the catalog snapshot and are not counted
+        private static final long ENTRY_BYTES = 160;
+        private static final long STORE_BYTES = 64;
+        private static final long REFERENCE_BYTES = 8;
+
+        private final List<StoreProductsDTO> stores;
+        private final double totalCost;
+        private final double totalSavings;
+        private final Set<String> unmatchedKeys;
+        private final long estimatedBytes;
+
+        private CachedResult(List<StoreProductsDTO> stores, double totalCost, double totalSavings,
+                             Set<String> unmatchedKeys, long estimatedBytes) {
+            this.stores = stores;
+            this.totalCost = totalCost;
+            this.totalSavings = totalSavings;
+            this.unmatchedKeys = unmatchedKeys;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        static CachedResult of(Key key, BasketOptimizationResultDTO result) {
+            long bytes = ENTRY_BYTES + 2L * key.basket.length();
+            List<StoreProductsDTO> stores = new ArrayList<>(result.getStores().size());
+            for (StoreProductsDTO store : result.getStores()) {
+                stores.add(new StoreProductsDTO(store.getStore(), List.copyOf(store.getProducts())));
+                bytes += STORE_BYTES + REFERENCE_BYTES * store.getProducts().size();
+            }
+            Set<String> unmatchedKeys = new LinkedHashSet<>();
+            for (ShoppingItemDTO item : result.getUnmatchedItems()) {
+                unmatchedKeys.add(BasketOptimizerService.itemKey(item));
+                bytes += STORE_BYTES;
+            }
+            return new CachedResult(List.copyOf(stores), result.getTotalCost(), result.getTotalSavings(),
+                    unmatchedKeys, bytes);
+        }
+
+        long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.market.pricecomparator.service;
 
 import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.PackageSelectionDTO;
+import com.market.pricecomparator.dto.QuantityShoppingItemDTO;
 import com.market.pricecomparator.dto.ShoppingItemDTO;
 import com.market.pricecomparator.dto.StoreProductsDTO;
+import com.market.pricecomparator.dto.UnitBasketItemDTO;
+import com.market.pricecomparator.dto.UnitBasketResultDTO;
 import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
 import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import com.market.pricecomparator.model.UnitConversion;
+import com.market.pricecomparator.model.UnitPriceIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -16,6 +26,24 @@ import java.util.stream.Collectors;
 
 @Service
 public class BasketOptimizerService {
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private static final int DEFAULT_OFFER_MEMO_MB = 32;
+
+    // Cheapest offer per item of a snapshot's product index; null when disabled
+    private final CheapestOfferMemo offerMemo;
+
+    public BasketOptimizerService() {
+        this(DEFAULT_OFFER_MEMO_MB);
+    }
+
+    /**
+     * @param offerMemoMb memory budget of the per-item cheapest offer memo, 0 disables it
+     */
+    @Autowired
+    public BasketOptimizerService(@Value("${pricecomparator.basket.offer-memo.max-mb:32}") int offerMemoMb) {
+        this.offerMemo = offerMemoMb > 0 ? new CheapestOfferMemo(offerMemoMb * BYTES_PER_MB) : null;
+    }
+
     /**
      * Optimize the shopping basket with discounts applied and return detailed result DTO.
      *
@@ -30,59 +58,296 @@ public class BasketOptimizerService {
             Map<String, List<Product>> productsByStore,
             List<Discount> allDiscounts,
             LocalDate currentDate
+    ) {
+        return optimizeBasketDetailed(shoppingList, productsByStore, DiscountIndex.of(allDiscounts), currentDate);
+    }
+
+    /**
+     * Same as {@link #optimizeBasketDetailed(List, Map, List, LocalDate)} but with discounts already indexed
+     * by (store, productId), so each candidate product costs one lookup instead of a scan over all discounts.
+     */
+    public BasketOptimizationResultDTO optimizeBasketDetailed(
+            List<ShoppingItemDTO> shoppingList,
+            Map<String, List<Product>> productsByStore,
+            DiscountIndex discountIndex,
+            LocalDate currentDate
+    ) {
+        // Throwaway index: nothing to memoize
+        return optimizeBasketDetailed(shoppingList, ProductIndex.of(productsByStore), discountIndex, currentDate, null);
+    }
+
+    /**
+     * Same as above but matching items through a prebuilt product index (usually the one of the catalog snapshot),
+     * so each item only visits the products with its name (and brand) instead of every product of every store.
+     * The cheapest offer of every item is memoized per (index, discounts, date), so an item already seen in another
+     * basket costs one lookup.
+     */
+    public BasketOptimizationResultDTO optimizeBasketDetailed(
+            List<ShoppingItemDTO> shoppingList,
+            ProductIndex productIndex,
+            DiscountIndex discountIndex,
+            LocalDate currentDate
+    ) {
+        return optimizeBasketDetailed(shoppingList, productIndex, discountIndex, currentDate, offerMemo);
+    }
+
+    private BasketOptimizationResultDTO optimizeBasketDetailed(
+            List<ShoppingItemDTO> shoppingList,
+            ProductIndex productIndex,
+            DiscountIndex discountIndex,
+            LocalDate currentDate,
+            CheapestOfferMemo memo
     ) {
         Map<String, Product> cheapestProductByKey = new HashMap<>();
         List<ShoppingItemDTO> unmatchedItems = new ArrayList<>();
         Map<Product, Double> productEffectivePriceMap = new HashMap<>();
-        Map<Product, Double> productBasePriceMap = new HashMap<>();
 
-        // Deduplicate shopping list based on productName and optional brand
-        Set<String> seenKeys = new HashSet<>();
-        List<ShoppingItemDTO> deduplicatedShoppingList = new ArrayList<>();
+        for (ShoppingItemDTO item : deduplicate(shoppingList)) {
+            String desiredName = ProductIndex.normalize(item.getProductName());
+            String desiredBrand = ProductIndex.normalize(item.getBrand());
+
+            CheapestOfferMemo.Offer offer;
+            if (memo == null) {
+                offer = findCheapestOffer(desiredName, desiredBrand, productIndex, discountIndex, currentDate);
+            } else {
+                CheapestOfferMemo.Key key = new CheapestOfferMemo.Key(desiredName, desiredBrand, currentDate,
+                        productIndex.getId(), discountIndex.getId());
+                offer = memo.get(key);
+                if (offer == null) {
+                    offer = findCheapestOffer(desiredName, desiredBrand, productIndex, discountIndex, currentDate);
+                    memo.put(key, offer);
+                }
+            }
 
-        for (ShoppingItemDTO item : shoppingList) {
-            String nameKey = item.getProductName().toLowerCase().trim();
-            String brandKey = (item.getBrand() != null && !item.getBrand().isBlank())
-                    ? item.getBrand().toLowerCase().trim()
-                    : "";
+            if (offer != CheapestOfferMemo.NO_OFFER) {
+                cheapestProductByKey.put(resultKey(desiredName, desiredBrand), offer.getProduct());
+                productEffectivePriceMap.put(offer.getProduct(), offer.getEffectivePrice());
+            } else {
+                unmatchedItems.add(item);
+            }
+        }
 
-            String key = nameKey + "|" + brandKey;
+        return buildResult(cheapestProductByKey, productEffectivePriceMap, unmatchedItems);
+    }
 
-            if (seenKeys.add(key)) {
-                deduplicatedShoppingList.add(item);
+    private static CheapestOfferMemo.Offer findCheapestOffer(String name, String brand, ProductIndex productIndex,
+                                                             DiscountIndex discountIndex, LocalDate currentDate) {
+        Product cheapestProduct = null;
+        double cheapestPrice = Double.MAX_VALUE;
+
+        // Empty brand matches all brands with that product name
+        for (Product product : productIndex.findByNameAndBrand(name, brand)) {
+            double effectivePrice = discountIndex.getEffectivePrice(product, currentDate);
+            if (effectivePrice < cheapestPrice) {
+                cheapestPrice = effectivePrice;
+                cheapestProduct = product;
+            }
+        }
+        return cheapestProduct == null ? CheapestOfferMemo.NO_OFFER : new CheapestOfferMemo.Offer(cheapestProduct, cheapestPrice);
+    }
+
+    /**
+     * @return the per-item offer memo, null when disabled
+     */
+    CheapestOfferMemo getOfferMemo() {
+        return offerMemo;
+    }
+
+    /**
+     * Optimizes the basket for trips instead of per item prices: the products are bought in at most maxStores stores,
+     * and every visited store adds storeVisitCost, so a store is only visited when it saves more than that.
+     * The store set minimizing products cost + visit costs is searched exactly for small store counts and with a
+     * greedy + local search heuristic for large ones. Items that none of the chosen stores sells are unmatched;
+     * totalCost and totalSavings cover the products only.
+     *
+     * @param maxStores      most stores to visit, at least 1 (Integer.MAX_VALUE for no limit)
+     * @param storeVisitCost cost of visiting one store, 0 or more
+     */
+    public BasketOptimizationResultDTO optimizeBasketWithStoreLimit(
+            List<ShoppingItemDTO> shoppingList,
+            ProductIndex productIndex,
+            DiscountIndex discountIndex,
+            LocalDate currentDate,
+            int maxStores,
+            double storeVisitCost
+    ) {
+        List<ShoppingItemDTO> items = deduplicate(shoppingList);
+        List<List<Product>> candidates = new ArrayList<>(items.size());
+        List<double[]> effectivePrices = new ArrayList<>(items.size());
+        Map<String, Integer> storeIds = new HashMap<>();
+
+        for (ShoppingItemDTO item : items) {
+            List<Product> products = productIndex.findByNameAndBrand(
+                    ProductIndex.normalize(item.getProductName()), ProductIndex.normalize(item.getBrand()));
+            double[] prices = new double[products.size()];
+            for (int i = 0; i < prices.length; i++) {
+                prices[i] = discountIndex.getEffectivePrice(products.get(i), currentDate);
+                storeIds.putIfAbsent(products.get(i).getStore(), storeIds.size());
             }
+            candidates.add(products);
+            effectivePrices.add(prices);
         }
 
-        for (ShoppingItemDTO item : deduplicatedShoppingList) {
-            String desiredName = item.getProductName().toLowerCase().trim();
-            String desiredBrand = item.getBrand() != null ? item.getBrand().toLowerCase().trim() : "";
-
-            Product cheapestProduct = null;
-            double cheapestPrice = Double.MAX_VALUE;
-
-            for (List<Product> storeProducts : productsByStore.values()) {
-                for (Product product : storeProducts) {
-                    if (isMatch(product, desiredName, desiredBrand)) {
-                        double effectivePrice = getEffectivePrice(product, allDiscounts, currentDate);
-                        if (effectivePrice < cheapestPrice) {
-                            cheapestPrice = effectivePrice;
-                            cheapestProduct = product;
-                        }
-                    }
+        // Cheapest effective price (and product) of every item in every store
+        int storeCount = storeIds.size();
+        StoreSubsetSelector selector = new StoreSubsetSelector(items.size(), storeCount);
+        Product[] cheapestInStore = new Product[items.size() * storeCount];
+        for (int item = 0; item < items.size(); item++) {
+            List<Product> products = candidates.get(item);
+            double[] prices = effectivePrices.get(item);
+            for (int i = 0; i < prices.length; i++) {
+                int store = storeIds.get(products.get(i).getStore());
+                if (prices[i] < selector.cost(item, store)) {
+                    selector.offer(item, store, prices[i]);
+                    cheapestInStore[store * items.size() + item] = products.get(i);
                 }
             }
+        }
 
-            if (cheapestProduct != null) {
-                String key = desiredName + (desiredBrand.isEmpty() ? "" : "_" + desiredBrand);
-                cheapestProductByKey.put(key, cheapestProduct);
-                productEffectivePriceMap.put(cheapestProduct, cheapestPrice);
-                productBasePriceMap.put(cheapestProduct, cheapestProduct.getPrice());
-            } else {
+        StoreSubsetSelector.Selection selection = selector.select(maxStores, storeVisitCost);
+
+        Map<String, Product> chosenProductByKey = new HashMap<>();
+        Map<Product, Double> productEffectivePriceMap = new HashMap<>();
+        List<ShoppingItemDTO> unmatchedItems = new ArrayList<>();
+        for (int item = 0; item < items.size(); item++) {
+            int store = selection.storeOf(item);
+            if (store < 0) {
+                unmatchedItems.add(items.get(item));
+                continue;
+            }
+            ShoppingItemDTO shoppingItem = items.get(item);
+            Product product = cheapestInStore[store * items.size() + item];
+            chosenProductByKey.put(resultKey(ProductIndex.normalize(shoppingItem.getProductName()),
+                    ProductIndex.normalize(shoppingItem.getBrand())), product);
+            productEffectivePriceMap.put(product, selector.cost(item, store));
+        }
+
+        return buildResult(chosenProductByKey, productEffectivePriceMap, unmatchedItems);
+    }
+
+    /**
+     * Quantity based optimization: every item asks for an amount (e.g. 3 l of milk) and gets the cheapest combination
+     * of package sizes by effective price, possibly from different stores. Packages come from the snapshot's
+     * {@link UnitPriceIndex} with quantities already in base units; only the cheapest package of each size is kept
+     * before the combination is searched. Without a quantity the item gets the single cheapest package; without a unit
+     * the quantity is read in the base unit of the best priced package. Items no package of the unit matches are unmatched.
+     */
+    public UnitBasketResultDTO optimizeBasketByUnitPrice(
+            List<QuantityShoppingItemDTO> shoppingList,
+            UnitPriceIndex unitPriceIndex,
+            DiscountIndex discountIndex,
+            LocalDate currentDate
+    ) {
+        List<UnitBasketItemDTO> items = new ArrayList<>();
+        List<ShoppingItemDTO> unmatchedItems = new ArrayList<>();
+        double totalCost = 0;
+        double totalSavings = 0;
+
+        for (QuantityShoppingItemDTO item : deduplicate(shoppingList)) {
+            List<UnitPriceIndex.PackageOption> options = unitPriceIndex.find(
+                    ProductIndex.normalize(item.getProductName()), ProductIndex.normalize(item.getBrand()));
+            if (options.isEmpty()) {
                 unmatchedItems.add(item);
+                continue;
+            }
+            boolean hasUnit = item.getUnit() != null && !item.getUnit().isBlank();
+            String unit = hasUnit ? UnitConversion.baseUnit(item.getUnit()) : options.get(0).getBaseUnit();
+
+            // Cheapest package (effective price) of every size, in catalog order of first appearance
+            Map<Long, Integer> slotBySize = new HashMap<>();
+            List<UnitPriceIndex.PackageOption> packages = new ArrayList<>();
+            List<Double> prices = new ArrayList<>();
+            for (UnitPriceIndex.PackageOption option : options) {
+                if (!option.getBaseUnit().equals(unit)) continue;
+                double effectivePrice = discountIndex.getEffectivePrice(option.getProduct(), currentDate);
+                Integer slot = slotBySize.putIfAbsent(option.getGrains(), packages.size());
+                if (slot == null) {
+                    packages.add(option);
+                    prices.add(effectivePrice);
+                } else if (effectivePrice < prices.get(slot)) {
+                    packages.set(slot, option);
+                    prices.set(slot, effectivePrice);
+                }
+            }
+            if (packages.isEmpty()) {
+                unmatchedItems.add(item);
+                continue;
+            }
+
+            long[] sizes = packages.stream().mapToLong(UnitPriceIndex.PackageOption::getGrains).toArray();
+            double[] costs = prices.stream().mapToDouble(Double::doubleValue).toArray();
+            int[] counts;
+            double requested;
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                counts = new int[sizes.length];
+                int cheapest = 0;
+                for (int i = 1; i < costs.length; i++) {
+                    if (costs[i] < costs[cheapest]) cheapest = i;
+                }
+                counts[cheapest] = 1;
+                requested = packages.get(cheapest).getBaseQuantity();
+            } else {
+                requested = hasUnit ? UnitConversion.normalizeQuantity(item.getQuantity(), item.getUnit()) : item.getQuantity();
+                long target = (long) Math.ceil(requested * UnitPriceIndex.GRAINS_PER_UNIT - 1e-6);
+                counts = PackageCombinationSolver.solve(sizes, costs, Math.max(target, 1));
+            }
+
+            List<PackageSelectionDTO> selections = new ArrayList<>();
+            double cost = 0;
+            double purchased = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) continue;
+                UnitPriceIndex.PackageOption option = packages.get(i);
+                selections.add(new PackageSelectionDTO(option.getProduct(), counts[i], round(costs[i], 2),
+                        round(costs[i] / option.getBaseQuantity(), 2)));
+                cost += counts[i] * costs[i];
+                purchased += counts[i] * option.getBaseQuantity();
+                totalSavings += counts[i] * (option.getProduct().getPrice() - costs[i]);
+            }
+            selections.sort(Comparator.comparingDouble(PackageSelectionDTO::getPricePerUnit));
+            totalCost += cost;
+
+            items.add(new UnitBasketItemDTO(item.getProductName(), item.getBrand(), unit,
+                    round(requested, 3), round(purchased, 3), round(cost, 2), selections));
+        }
+
+        return new UnitBasketResultDTO(items, round(totalCost, 2), unmatchedItems, round(totalSavings, 2), LocalDateTime.now());
+    }
+
+    // Deduplicate shopping list based on productName and optional brand
+    private <T extends ShoppingItemDTO> List<T> deduplicate(List<T> shoppingList) {
+        Set<String> seenKeys = new HashSet<>();
+        List<T> deduplicatedShoppingList = new ArrayList<>();
+
+        for (T item : shoppingList) {
+            if (seenKeys.add(itemKey(item))) {
+                deduplicatedShoppingList.add(item);
             }
         }
+        return deduplicatedShoppingList;
+    }
 
-        Map<String, List<Product>> groupedByStore = cheapestProductByKey.values().stream()
+    /**
+     * @return the normalized name|brand key shopping list items are deduplicated by
+     */
+    static String itemKey(ShoppingItemDTO item) {
+        return ProductIndex.normalize(item.getProductName()) + "|" + ProductIndex.normalize(item.getBrand());
+    }
+
+    private static double round(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static String resultKey(String desiredName, String desiredBrand) {
+        return desiredName + (desiredBrand.isEmpty() ? "" : "_" + desiredBrand);
+    }
+
+    private BasketOptimizationResultDTO buildResult(
+            Map<String, Product> chosenProductByKey,
+            Map<Product, Double> productEffectivePriceMap,
+            List<ShoppingItemDTO> unmatchedItems
+    ) {
+        Map<String, List<Product>> groupedByStore = chosenProductByKey.values().stream()
                 .collect(Collectors.groupingBy(Product::getStore));
 
         List<StoreProductsDTO> stores = groupedByStore.entrySet().stream()
@@ -95,7 +360,7 @@ public class BasketOptimizerService {
 
         // Calculate total savings (basePrice - effectivePrice)
         double totalSavings = productEffectivePriceMap.entrySet().stream()
-                .mapToDouble(e -> productBasePriceMap.get(e.getKey()) - e.getValue())
+                .mapToDouble(e -> e.getKey().getPrice() - e.getValue())
                 .sum();
 
         // Round to 2 decimal places
@@ -115,27 +380,4 @@ public class BasketOptimizerService {
                 LocalDateTime.now()
         );
     }
-
-    private boolean isMatch(Product product, String desiredName, String desiredBrand) {
-        String productName = product.getProductName().toLowerCase().trim();
-        String productBrand = product.getBrand() != null ? product.getBrand().toLowerCase().trim() : "";
-
-        if (!desiredBrand.isEmpty()) {
-            return productName.equals(desiredName) && productBrand.equals(desiredBrand);
-        } else {
-            return productName.equals(desiredName);
-        }
-    }
-
-    private double getEffectivePrice(Product product, List<Discount> allDiscounts, LocalDate currentDate) {
-        double basePrice = product.getPrice();
-
-        return allDiscounts.stream()
-                .filter(d -> d.getProductId().equals(product.getProductId()))
-                .filter(d -> d.getStore().equals(product.getStore()))
-                .filter(d -> d.isApplicable(currentDate))
-                .map(d -> basePrice * (1 - d.getPercentage() / 100.0))
-                .min(Double::compare)
-                .orElse(basePrice);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package com.market.pricecomparator.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size- and weight-bounded cache with W-TinyLFU eviction: new entries enter a small LRU window; an entry leaving
+ * the window is admitted to the main segmented LRU (probation + protected) only if it has been requested more often
+ * than the main victim it would replace, according to a count-min frequency sketch.
+ * A burst of one-off keys therefore cannot flush the frequently requested ones, while a new key that becomes
+ * popular still gets in. One lock guards the structure; every operation is a few hash map moves.
+ */
+final class BoundedCache<K, V> {
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final long maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final long windowMaxEntries;
+    private final long protectedMaxEntries;
+
+    // Access ordered: the first entry is the least recently used
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries most entries kept, at least 1
+     * @param maxWeight  most total weight kept; a single value heavier than this is never cached
+     * @param weigher    weight of a value, e.g. its estimated size in bytes
+     */
+    BoundedCache(long maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.windowMaxEntries = Math.max(1, (long) (this.maxEntries * WINDOW_SHARE));
+        this.protectedMaxEntries = (long) ((this.maxEntries - windowMaxEntries) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch(this.maxEntries);
+    }
+
+    /**
+     * Looks up a value and records the request in the frequency sketch, also on a miss.
+     */
+    synchronized V get(K key) {
+        sketch.increment(key.hashCode());
+
+        Node<V> node = window.get(key);
+        if (node == null) {
+            node = probation.remove(key);
+            if (node != null) {
+                // Second hit in main: promote, demoting the least recently used protected entries if needed
+                protectedSegment.put(key, node);
+                while (protectedSegment.size() > protectedMaxEntries) {
+                    Map.Entry<K, Node<V>> demoted = first(protectedSegment);
+                    protectedSegment.remove(demoted.getKey());
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            } else {
+                node = protectedSegment.get(key);
+            }
+        }
+
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return node.value;
+    }
+
+    synchronized void put(K key, V value) {
+        put(key, value, weigher.applyAsLong(value));
+    }
+
+    /**
+     * Stores a value with a weight computed by the caller, e.g. one that also counts the key.
+     */
+    synchronized void put(K key, V value, long valueWeight) {
+        if (valueWeight > maxWeight) return;
+
+        remove(key);
+        window.put(key, new Node<>(value, valueWeight));
+        weight += valueWeight;
+
+        while (window.size() > windowMaxEntries) {
+            Map.Entry<K, Node<V>> candidate = first(window);
+            window.remove(candidate.getKey());
+            admit(candidate.getKey(), candidate.getValue());
+        }
+        while (size() > maxEntries || weight > maxWeight) {
+            evictOne();
+        }
+    }
+
+    synchronized void invalidateAll() {
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        weight = 0;
+    }
+
+    synchronized int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    synchronized long getWeight() {
+        return weight;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    long getMaxEntries() {
+        return maxEntries;
+    }
+
+    long getMaxWeight() {
+        return maxWeight;
+    }
+
+    // TinyLFU admission: the window candidate replaces the main victim only if it is requested more often
+    private void admit(K key, Node<V> node) {
+        if (probation.size() + protectedSegment.size() < maxEntries - windowMaxEntries) {
+            probation.put(key, node);
+            return;
+        }
+
+        LinkedHashMap<K, Node<V>> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+        Map.Entry<K, Node<V>> victim = first(victimSegment);
+        evictions++;
+        if (sketch.frequency(key.hashCode()) > sketch.frequency(victim.getKey().hashCode())) {
+            victimSegment.remove(victim.getKey());
+            weight -= victim.getValue().weight;
+            probation.put(key, node);
+        } else {
+            weight -= node.weight;
+        }
+    }
+
+    // Weight overflow: main segment victims go first, the window keeps the newest entries
+    private void evictOne() {
+        LinkedHashMap<K, Node<V>> segment = !probation.isEmpty() ? probation
+                : !protectedSegment.isEmpty() ? protectedSegment : window;
+        Map.Entry<K, Node<V>> victim = first(segment);
+        segment.remove(victim.getKey());
+        weight -= victim.getValue().weight;
+        evictions++;
+    }
+
+    private void remove(K key) {
+        Node<V> old = window.remove(key);
+        if (old == null) old = probation.remove(key);
+        if (old == null) old = protectedSegment.remove(key);
+        if (old != null) weight -= old.weight;
+    }
+
+    private static <K, N> Map.Entry<K, N> first(LinkedHashMap<K, N> map) {
+        Iterator<Map.Entry<K, N>> iterator = map.entrySet().iterator();
+        return iterator.next();
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private final long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Count-min sketch with 4 rows of counters saturating at 15. All counters are halved after
+     * 10 * maxEntries increments, so frequencies reflect recent popularity rather than all time totals.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAX_COUNT = 15;
+
+        private final int[] counters;
+        private final int mask;
+        private final int width;
+        private final long sampleSize;
+        private long additions;
+
+        FrequencySketch(long maxEntries) {
+            int size = Integer.highestOneBit((int) Math.min(Math.max(maxEntries, 16), 1 << 24) - 1) << 1;
+            this.width = size;
+            this.mask = size - 1;
+            this.counters = new int[SEEDS.length * size];
+            this.sampleSize = 10 * Math.max(maxEntries, 16);
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = row * width + slot(hash, row);
+                if (counters[index] < MAX_COUNT) counters[index]++;
+            }
+            if (++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                min = Math.min(min, counters[row * width + slot(hash, row)]);
+            }
+            return min;
+        }
+
+        private int slot(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 32;
+            return (int) h & mask;
+        }
+    }
+}
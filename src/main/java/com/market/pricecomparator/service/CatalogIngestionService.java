@@ -0,0 +1,346 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.CatalogIngestionReportDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.util.CatalogBinaryFile;
+import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the in-memory catalog in step with the data directory. At startup every discount and product file is parsed
+ * in one parallel stage; afterwards a WatchService reports new, changed and deleted {store}_{date}.csv and
+ * {store}_discounts_{date}.csv files, which are parsed on a background thread once they have stopped changing
+ * for the settle delay. A product file rebuilds the snapshot of its date, a discount file republishes the
+ * snapshots whose week window overlaps its old or new discounts, and both are published atomically, so requests
+ * never parse a file.
+ */
+@Service
+public class CatalogIngestionService {
+    private static final Logger logger = Logger.getLogger(CatalogIngestionService.class.getName());
+
+    private final CsvLoader csvLoader;
+    private final ProductService productService;
+    private final DiscountService discountService;
+    private final boolean watch;
+    private final long settleMillis;
+    // Binary image of the parsed feeds, null when disabled
+    private final Path catalogCachePath;
+
+    // One worker: files are parsed and snapshots published in the order they settle
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-ingestion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Pending ingestion per file name; a new event for the file restarts its settle delay
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+    private volatile CatalogIngestionReportDTO lastReport;
+
+    public CatalogIngestionService(CsvLoader csvLoader,
+                                   ProductService productService,
+                                   DiscountService discountService,
+                                   boolean watch,
+                                   long settleMillis) {
+        this(csvLoader, productService, discountService, watch, settleMillis, "");
+    }
+
+    /**
+     * @param catalogCachePath binary image written after a CSV ingestion and read on the next start; empty disables it
+     */
+    @Autowired
+    public CatalogIngestionService(CsvLoader csvLoader,
+                                   ProductService productService,
+                                   DiscountService discountService,
+                                   @Value("${pricecomparator.ingest.watch:true}") boolean watch,
+                                   @Value("${pricecomparator.ingest.settle-millis:500}") long settleMillis,
+                                   @Value("${pricecomparator.catalog-cache.path:}") String catalogCachePath) {
+        this.csvLoader = csvLoader;
+        this.productService = productService;
+        this.discountService = discountService;
+        this.watch = watch;
+        this.settleMillis = settleMillis;
+        this.catalogCachePath = catalogCachePath.isBlank() ? null : Paths.get(catalogCachePath);
+    }
+
+    /**
+     * Starts watching the data directory, then ingests everything already in it. Watching first means a file
+     * dropped during the initial load is reported instead of missed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Path dataDir = Paths.get(productService.getDataDir());
+        if (watch && Files.isDirectory(dataDir)) {
+            try {
+                watchService = dataDir.getFileSystem().newWatchService();
+                dataDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                Thread watcher = new Thread(this::watchLoop, "catalog-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error at watching data directory " + dataDir + ": ", e);
+            }
+        }
+
+        ingestAll(dataDir);
+    }
+
+    @PreDestroy
+    public void stop() {
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error at closing the data directory watcher: ", e);
+            }
+        }
+        worker.shutdownNow();
+    }
+
+    /**
+     * @return per-file parse times and throughput of the last full ingestion, null before the first one
+     */
+    public CatalogIngestionReportDTO getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Parses every feed of the data directory in one parallel stage: all discount and product files are submitted
+     * together to the loader pool. Discounts are stored before any snapshot is published, so snapshot listeners
+     * already read them from memory. With a catalog cache configured, the rows are decoded from its mapped image
+     * when it matches the directory, otherwise the CSV files are parsed and a new image is written.
+     */
+    void ingestAll(Path dataDir) {
+        if (!Files.isDirectory(dataDir)) {
+            return;
+        }
+        List<FeedFileName> feeds;
+        try {
+            feeds = FeedFileName.list(dataDir);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error at listing the data directory: ", e);
+            return;
+        }
+
+        // The binary image replaces CSV parsing when it was written from exactly these files
+        String manifest = catalogCachePath != null ? CatalogBinaryFile.manifest(dataDir, feeds) : null;
+        CatalogBinaryFile cached = manifest != null ? CatalogBinaryFile.open(catalogCachePath, manifest) : null;
+        Function<FeedFileName, List<Discount>> discountLoader = cached != null
+                ? feed -> cached.discounts(feed.toString())
+                : feed -> csvLoader.loadDiscounts(discountFilePath(feed.toString()));
+        Function<FeedFileName, List<Product>> productLoader = cached != null
+                ? feed -> cached.products(feed.toString())
+                : feed -> csvLoader.loadProducts(productService.getDataDir() + "/" + feed);
+
+        FeedLoadStage stage = productService.newLoadStage();
+        Map<FeedFileName, CompletableFuture<List<Discount>>> discountLoads = new LinkedHashMap<>();
+        for (FeedFileName feed : feeds) {
+            if (feed.isDiscounts()) {
+                discountLoads.put(feed, stage.submit(feed, () -> discountLoader.apply(feed)));
+            }
+        }
+        Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> productLoads =
+                productService.submitProductFiles(stage, feeds, productLoader);
+
+        discountLoads.forEach((feed, load) -> discountService.putDiscountFile(discountFilePath(feed.toString()), load.join()));
+        discountService.markDataDirIngested();
+        productService.publishLoadedSnapshots(stage, productLoads);
+
+        CatalogIngestionReportDTO report = stage.report(cached != null);
+        lastReport = report;
+        logger.info(String.format("Ingested %d feed files (%d rows) from %s in %d ms on %d threads: %.0f rows/s, %.0f ms parsing",
+                report.getFileCount(), report.getRowCount(), cached != null ? "the catalog cache" : "CSV",
+                report.getWallMillis(), report.getThreads(), report.getRowsPerSecond(), report.getParseMillis()));
+
+        if (manifest != null && cached == null) {
+            // Off the startup path; requests are already served from the published snapshots
+            worker.execute(() -> writeCatalogCache(manifest, discountLoads, productLoads));
+        }
+    }
+
+    /**
+     * Brings the catalog back in line with the data directory after watch events were lost: files that are in
+     * memory but no longer listed are ingested as deleted, then every listed file is ingested again.
+     */
+    void reconcile(Path dataDir) {
+        if (!Files.isDirectory(dataDir)) {
+            return;
+        }
+        Set<String> listed = new HashSet<>();
+        try {
+            FeedFileName.list(dataDir).forEach(feed -> listed.add(feed.toString()));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error at listing the data directory: ", e);
+            return;
+        }
+
+        for (String fileName : productService.getProductFileNames()) {
+            if (!listed.contains(fileName)) {
+                ingest(fileName);
+            }
+        }
+        for (String filePath : discountService.getDiscountFilePaths()) {
+            String fileName = Paths.get(filePath).getFileName().toString();
+            if (!listed.contains(fileName)) {
+                ingest(fileName);
+            }
+        }
+        ingestAll(dataDir);
+    }
+
+    private void writeCatalogCache(String manifest,
+                                   Map<FeedFileName, CompletableFuture<List<Discount>>> discountLoads,
+                                   Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> productLoads) {
+        long start = System.nanoTime();
+        Map<String, List<Product>> products = new LinkedHashMap<>();
+        productLoads.forEach((date, loadsByStore) -> loadsByStore.forEach((store, load) ->
+                products.put(FeedFileName.productFileName(store, date), load.join())));
+        Map<String, List<Discount>> discounts = new LinkedHashMap<>();
+        discountLoads.forEach((feed, load) -> discounts.put(feed.toString(), load.join()));
+        try {
+            CatalogBinaryFile.write(catalogCachePath, manifest, products, discounts);
+            logger.info(String.format("Wrote catalog cache %s (%d KB) in %d ms", catalogCachePath,
+                    Files.size(catalogCachePath) / 1024, (System.nanoTime() - start) / 1_000_000));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error at writing catalog cache " + catalogCachePath + ": ", e);
+        }
+    }
+
+    private void watchLoop() {
+        WatchService service = watchService;
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.warning("Data directory events were lost; re-ingesting every file");
+                    worker.execute(() -> reconcile(Paths.get(productService.getDataDir())));
+                    continue;
+                }
+                schedule(((Path) event.context()).getFileName().toString());
+            }
+            if (!key.reset()) {
+                logger.warning("Data directory is no longer accessible; stopped watching it");
+                return;
+            }
+        }
+    }
+
+    /**
+     * (Re)starts the settle delay of a file; it is ingested once no event arrived for it during the delay,
+     * so a file that is still being written is parsed only after the last write.
+     */
+    void schedule(String fileName) {
+        if (FeedFileName.parse(fileName) == null) {
+            return;
+        }
+        pending.compute(fileName, (name, previous) -> {
+            if (previous != null) previous.cancel(false);
+            return worker.schedule(() -> {
+                pending.remove(name);
+                ingest(name);
+            }, settleMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void ingest(String fileName) {
+        try {
+            FeedFileName feed = FeedFileName.parse(fileName);
+            if (feed.isDiscounts()) {
+                ingestDiscountFile(fileName);
+            } else {
+                ingestProductFile(fileName, feed.getStore(), feed.getDate());
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Error at ingesting " + fileName + ": ", e);
+        }
+    }
+
+    private void ingestProductFile(String fileName, String store, LocalDate date) {
+        boolean present = Files.exists(Paths.get(productService.getDataDir(), fileName));
+        if (!productService.recordProductFile(store, date, present)) {
+            logger.warning("Ignoring " + fileName + ": store " + store + " is not configured");
+            return;
+        }
+        CatalogSnapshot snapshot = productService.reloadSnapshot(date);
+        logger.info(String.format("Ingested %s: snapshot %s v%d with %d products",
+                fileName, date, snapshot.getVersion(), snapshot.getProductCount()));
+    }
+
+    private void ingestDiscountFile(String fileName) {
+        String filePath = discountFilePath(fileName);
+        List<Discount> changed = new ArrayList<>(discountService.getDiscountFile(filePath));
+        if (Files.exists(Paths.get(filePath))) {
+            List<Discount> discounts = csvLoader.loadDiscounts(filePath);
+            discountService.putDiscountFile(filePath, discounts);
+            changed.addAll(discounts);
+        } else {
+            discountService.removeDiscountFile(filePath);
+        }
+
+        // A date reads every discount overlapping [date - 7, date + 6], from any file
+        LocalDate first = changed.stream().map(Discount::getFromDate).filter(Objects::nonNull)
+                .min(Comparator.naturalOrder()).orElse(null);
+        LocalDate last = changed.stream().map(Discount::getToDate).filter(Objects::nonNull)
+                .max(Comparator.naturalOrder()).orElse(null);
+        if (first == null || last == null) {
+            return;
+        }
+        for (CatalogSnapshot snapshot : productService.getSnapshots()) {
+            LocalDate date = snapshot.getDate();
+            if (date.isBefore(first.minusDays(6)) || date.isAfter(last.plusDays(7))) {
+                continue;
+            }
+            productService.republishSnapshot(date).ifPresent(republished -> logger.info(String.format(
+                    "Ingested %s: snapshot %s republished as v%d", fileName, date, republished.getVersion())));
+        }
+    }
+
+    private String discountFilePath(String fileName) {
+        // Same form as the paths DiscountService builds, so lookups by path match
+        return discountService.getDataDir() + "/" + fileName;
+    }
+}
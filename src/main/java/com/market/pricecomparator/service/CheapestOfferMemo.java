@@ -0,0 +1,127 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.model.Product;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Memo of the cheapest offer (product and effective price) of one shopping item, keyed by normalized name and brand,
+ * date, product index id and discount index id. Items repeat across otherwise different baskets, so each distinct
+ * item is resolved once per snapshot and discount set instead of once per request.
+ * The memory budget is split over independently locked W-TinyLFU stripes, so concurrent requests rarely contend.
+ */
+final class CheapestOfferMemo {
+    static final Offer NO_OFFER = new Offer(null, Double.MAX_VALUE);
+
+    private static final int STRIPES = 16;
+    // Key and entry objects, the two key strings are added per entry
+    private static final long ENTRY_BYTES = 200;
+
+    private final BoundedCache<Key, Offer>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    CheapestOfferMemo(long maxBytes) {
+        stripes = new BoundedCache[STRIPES];
+        long stripeBytes = maxBytes / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            // Entries are weighed with their key in put; the entry bound is the most that fit the byte budget
+            stripes[i] = new BoundedCache<>(Math.max(1, stripeBytes / ENTRY_BYTES), stripeBytes, offer -> ENTRY_BYTES);
+        }
+    }
+
+    /**
+     * @return the memoized offer, {@link #NO_OFFER} when the item is known to match nothing, null when not memoized
+     */
+    Offer get(Key key) {
+        return stripe(key).get(key);
+    }
+
+    void put(Key key, Offer offer) {
+        stripe(key).put(key, offer, key.estimatedBytes());
+    }
+
+    long getHits() {
+        long hits = 0;
+        for (BoundedCache<Key, Offer> stripe : stripes) hits += stripe.getHits();
+        return hits;
+    }
+
+    long getMisses() {
+        long misses = 0;
+        for (BoundedCache<Key, Offer> stripe : stripes) misses += stripe.getMisses();
+        return misses;
+    }
+
+    int size() {
+        int size = 0;
+        for (BoundedCache<Key, Offer> stripe : stripes) size += stripe.size();
+        return size;
+    }
+
+    long getWeight() {
+        long weight = 0;
+        for (BoundedCache<Key, Offer> stripe : stripes) weight += stripe.getWeight();
+        return weight;
+    }
+
+    private BoundedCache<Key, Offer> stripe(Key key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    static final class Key {
+        private final String name;
+        private final String brand;
+        private final LocalDate date;
+        private final long productIndexId;
+        private final long discountIndexId;
+        private final int hash;
+
+        Key(String name, String brand, LocalDate date, long productIndexId, long discountIndexId) {
+            this.name = name;
+            this.brand = brand;
+            this.date = date;
+            this.productIndexId = productIndexId;
+            this.discountIndexId = discountIndexId;
+            this.hash = Objects.hash(name, brand, date, productIndexId, discountIndexId);
+        }
+
+        long estimatedBytes() {
+            return ENTRY_BYTES + 2L * (name.length() + brand.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && productIndexId == other.productIndexId
+                    && discountIndexId == other.discountIndexId
+                    && date.equals(other.date) && name.equals(other.name) && brand.equals(other.brand);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class Offer {
+        private final Product product;
+        private final double effectivePrice;
+
+        Offer(Product product, double effectivePrice) {
+            this.product = product;
+            this.effectivePrice = effectivePrice;
+        }
+
+        Product getProduct() {
+            return product;
+        }
+
+        double getEffectivePrice() {
+            return effectivePrice;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.ProductDiscountDTO;
+import com.market.pricecomparator.model.TopNOption;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranked discounts for one date, per store and across all stores, materialized when the catalog snapshot
+ * for that date is published. Lists are kept as deep as the largest TopNOption, so a top N query is a slice.
+ */
+final class DiscountLeaderboard {
+    static final int DEPTH = Arrays.stream(TopNOption.values()).mapToInt(TopNOption::getValue).max().orElse(0);
+
+    private final LocalDate date;
+    private final Set<String> storesWithProducts;
+    private final Map<String, List<ProductDiscountDTO>> byStore;
+    private final List<ProductDiscountDTO> acrossStores;
+
+    DiscountLeaderboard(LocalDate date, Set<String> storesWithProducts,
+                        Map<String, List<ProductDiscountDTO>> byStore, List<ProductDiscountDTO> acrossStores) {
+        this.date = date;
+        this.storesWithProducts = Set.copyOf(storesWithProducts);
+        this.byStore = Map.copyOf(byStore);
+        this.acrossStores = List.copyOf(acrossStores);
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    boolean hasProducts(String store) {
+        return storesWithProducts.contains(store);
+    }
+
+    List<ProductDiscountDTO> topForStore(String store, int topN) {
+        return slice(byStore.getOrDefault(store, List.of()), topN);
+    }
+
+    List<ProductDiscountDTO> topAcrossStores(int topN) {
+        return slice(acrossStores, topN);
+    }
+
+    private static List<ProductDiscountDTO> slice(List<ProductDiscountDTO> ranked, int topN) {
+        return ranked.subList(0, Math.min(Math.max(topN, 0), ranked.size()));
+    }
+}
@@ -2,35 +2,154 @@ package com.market.pricecomparator.service;
 
 import com.market.pricecomparator.dto.BestDiscountsRequestDTO;
 import com.market.pricecomparator.dto.ProductDiscountDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
 import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.DiscountIntervals;
 import com.market.pricecomparator.model.Product;
 import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Should add pagination or caching [For very large lists, the sorting cost grows.].
+ * Top N results are selected with a bounded heap (TopDiscountSelector), so a query costs O(D log N)
+ * for D candidate discounts instead of sorting all of them. Store and across-store rankings are
+ * materialized per date (DiscountLeaderboard) when a catalog snapshot is published; other dates asked for are ranked
+ * on request into a bounded cache. A ranking is reused while the prices in effect and the discount catalog version
+ * it was built from are unchanged.
+ * Every discount file is held as an interval index over its validity windows (DiscountIntervals), so week window
+ * and "new since" filters are range queries instead of scans. Once the data directory is ingested, all files of a store
+ * form one catalog indexed by validity period: a date finds the discounts of every file that cover it, whatever the
+ * files' publication dates, and no file name is guessed or probed.
+ * Every change of an ingested file bumps the catalog version; the basket discount index of a date is built once per
+ * version and shared by every request until the next change.
  */
 
 @Service
 public class DiscountService {
+    private static final int DISCOUNT_INDEX_DATES = 16;
+    private static final int REQUESTED_LEADERBOARD_DATES = 16;
+
     private final CsvLoader csvLoader;
     private final ProductService productService;
-    private final String discountsBaseDir = "src/main/resources/data";
+    private final String discountsBaseDir;
+
+    // Ranked discounts of every date with a published snapshot, rebuilt when that snapshot is published
+    private final Map<LocalDate, VersionedLeaderboard> leaderboards = new ConcurrentHashMap<>();
+    // Ranked discounts of the most requested dates without a published snapshot, e.g. weekends
+    private final BoundedCache<LocalDate, VersionedLeaderboard> requestedLeaderboards =
+            new BoundedCache<>(REQUESTED_LEADERBOARD_DATES, Long.MAX_VALUE, leaderboard -> 1);
+
+    // Parsed discount files of the data directory by path, kept up to date by CatalogIngestionService
+    private final Map<String, DiscountIntervals> ingestedFiles = new ConcurrentHashMap<>();
+    private volatile boolean dataDirIngested;
+    // Every ingested file of a store in one interval index; dropped when a file of the store changes, rebuilt on use
+    private final Map<String, DiscountIntervals> catalogByStore = new ConcurrentHashMap<>();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Basket discount index of the most requested dates, valid while the catalog version is unchanged
+    private final BoundedCache<LocalDate, VersionedDiscountIndex> discountIndexes =
+            new BoundedCache<>(DISCOUNT_INDEX_DATES, Long.MAX_VALUE, index -> 1);
 
     public DiscountService(CsvLoader csvLoader, ProductService productService) {
+        this(csvLoader, productService, ProductService.DEFAULT_DATA_DIR);
+    }
+
+    @Autowired
+    public DiscountService(CsvLoader csvLoader,
+                           ProductService productService,
+                           @Value("${pricecomparator.data-dir:" + ProductService.DEFAULT_DATA_DIR + "}") String dataDir) {
         this.csvLoader = csvLoader;
         this.productService = productService;
+        this.discountsBaseDir = dataDir;
+        productService.addSnapshotListener(this::onSnapshotPublished);
+    }
+
+    /**
+     * @return directory holding the {store}_discounts_{date}.csv feeds
+     */
+    public String getDataDir() {
+        return discountsBaseDir;
+    }
+
+    /**
+     * Keeps the parsed discounts of a data directory file in memory, replacing an older version of the file.
+     */
+    public void putDiscountFile(String filePath, List<Discount> discounts) {
+        ingestedFiles.put(filePath, DiscountIntervals.of(List.copyOf(discounts)));
+        invalidateCatalog(filePath);
+    }
+
+    public void removeDiscountFile(String filePath) {
+        ingestedFiles.remove(filePath);
+        invalidateCatalog(filePath);
+    }
+
+    /**
+     * @return version of the ingested discount files, incremented whenever one is put or removed
+     */
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * Current and previous week discounts of the snapshot's stores, indexed for basket optimization.
+     * Once the data directory is ingested, the index of a date is built once per store list and catalog version
+     * and the same instance is returned until a discount file changes; before that the files are read on every call.
+     */
+    public DiscountIndex getDiscountIndex(CatalogSnapshot snapshot, LocalDate currentDate) {
+        List<String> stores = List.copyOf(snapshot.getProductsByStore().keySet());
+        if (!dataDirIngested) {
+            return DiscountIndex.of(loadDiscountsForCurrentAndPreviousWeek(stores, currentDate, discountsBaseDir));
+        }
+        // Read before building, so an index built while a file changes is stale on the next call
+        long version = catalogVersion.get();
+        VersionedDiscountIndex cached = discountIndexes.get(currentDate);
+        if (cached != null && cached.version == version && cached.stores.equals(stores)) {
+            return cached.index;
+        }
+        DiscountIndex index = DiscountIndex.of(loadDiscountsForCurrentAndPreviousWeek(stores, currentDate, discountsBaseDir));
+        discountIndexes.put(currentDate, new VersionedDiscountIndex(version, stores, index));
+        return index;
+    }
+
+    /**
+     * @return the discounts held in memory for a file, empty if it was not ingested
+     */
+    public List<Discount> getDiscountFile(String filePath) {
+        return ingestedFiles.getOrDefault(filePath, DiscountIntervals.empty()).getDiscounts();
+    }
+
+    /**
+     * @return paths of the discount files held in memory
+     */
+    public Set<String> getDiscountFilePaths() {
+        return Set.copyOf(ingestedFiles.keySet());
+    }
+
+    /**
+     * Marks the data directory as fully ingested: from now on a discount file of the directory that is not
+     * in memory does not exist, and is not looked up on disk.
+     */
+    public void markDataDirIngested() {
+        dataDirIngested = true;
     }
 
     /**
      * Loads discounts for the current week and previous week based on currentDate.
-     * Assumes discount CSV files are named with store and date, e.g. lidl_discounts_2025-05-01.csv
+     * Once the data directory is ingested they come from the catalog of every discount file of the store;
+     * otherwise the files dated currentDate and a week earlier are read, named like lidl_discounts_2025-05-01.csv
      *
      * @param stores       List of store names to load discounts for
      * @param currentDate  The current date to base loading weeks on
@@ -38,7 +157,64 @@ public class DiscountService {
      * @return List of discounts active for current or previous week
      */
     public List<Discount> loadDiscountsForCurrentAndPreviousWeek(List<String> stores, LocalDate currentDate, String baseDirPath) {
+        // Keep discounts that overlap the previous week or the current week
+        LocalDate previousWeekStart = currentDate.minusDays(7);
+        LocalDate currentWeekEnd = currentDate.plusDays(6);
+        return queryCurrentAndPreviousWeek(stores, currentDate, baseDirPath,
+                file -> file.overlapping(previousWeekStart, currentWeekEnd));
+    }
+
+    /**
+     * Discounts of the current and previous week files that started in [earliestFromDate, currentDate]
+     * and overlap the same window as {@link #loadDiscountsForCurrentAndPreviousWeek}.
+     */
+    List<Discount> loadNewDiscounts(String store, LocalDate currentDate, LocalDate earliestFromDate) {
+        LocalDate previousWeekStart = currentDate.minusDays(7);
+        return queryCurrentAndPreviousWeek(List.of(store), currentDate, discountsBaseDir, file -> {
+            List<Discount> started = file.startingBetween(earliestFromDate, currentDate);
+            started.removeIf(discount -> discount.getToDate().isBefore(previousWeekStart));
+            return started;
+        });
+    }
+
+    /**
+     * @param store a single store, or null / blank for every store of the catalog
+     * @return discounts valid on the date, from every discount file
+     */
+    public List<Discount> getActiveDiscounts(String store, LocalDate date) {
+        return getActiveDiscounts(store == null || store.isBlank() ? productService.getStores() : List.of(store), date);
+    }
+
+    /**
+     * @return discounts valid on the date, from every discount file of the stores
+     */
+    public List<Discount> getActiveDiscounts(List<String> stores, LocalDate date) {
+        if (!dataDirIngested) {
+            // Only the current and previous week files can be found without a catalog
+            List<Discount> discounts = new ArrayList<>(loadDiscountsForCurrentAndPreviousWeek(stores, date, discountsBaseDir));
+            discounts.removeIf(discount -> !discount.isApplicable(date));
+            return discounts;
+        }
+        List<Discount> active = new ArrayList<>();
+        for (String store : stores) {
+            active.addAll(catalog(store).activeOn(date));
+        }
+        return active;
+    }
+
+    /**
+     * Runs a query against the discount catalog of every store, or against its current week file, then its previous
+     * week file, while the data directory is not ingested or another directory is asked for.
+     */
+    private List<Discount> queryCurrentAndPreviousWeek(List<String> stores, LocalDate currentDate, String baseDirPath,
+                                                       Function<DiscountIntervals, List<Discount>> query) {
         List<Discount> allDiscounts = new ArrayList<>();
+        if (dataDirIngested && baseDirPath.equals(discountsBaseDir)) {
+            for (String store : stores) {
+                allDiscounts.addAll(query.apply(catalog(store)));
+            }
+            return allDiscounts;
+        }
 
         // Calculate previous week date (assuming 7 days back)
         LocalDate previousWeekDate = currentDate.minusDays(7);
@@ -48,19 +224,73 @@ public class DiscountService {
             String previousWeekFile = String.format("%s/%s_discounts_%s.csv", baseDirPath, store, previousWeekDate);
 
             // Load current week discounts if file exists
-            allDiscounts.addAll(csvLoader.loadDiscounts(currentWeekFile));
+            allDiscounts.addAll(query.apply(readDiscountFile(currentWeekFile)));
             // Load previous week discounts if file exists
-            allDiscounts.addAll(csvLoader.loadDiscounts(previousWeekFile));
+            allDiscounts.addAll(query.apply(readDiscountFile(previousWeekFile)));
         }
+        return allDiscounts;
+    }
 
-        // Filter out discounts that are not relevant for the current date period
-        // (optional safety check: keep discounts that overlap with currentDate or previous week)
-        LocalDate previousWeekStart = currentDate.minusDays(7);
-        LocalDate currentWeekEnd = currentDate.plusDays(6);
+    /**
+     * Discounts of one file: from memory when the ingestion pipeline has parsed it, from disk otherwise.
+     */
+    private DiscountIntervals readDiscountFile(String filePath) {
+        DiscountIntervals ingested = ingestedFiles.get(filePath);
+        if (ingested != null) {
+            return ingested;
+        }
+        if (dataDirIngested && filePath.startsWith(discountsBaseDir + "/")) {
+            return DiscountIntervals.empty();
+        }
+        return DiscountIntervals.of(csvLoader.loadDiscounts(filePath));
+    }
+
+    private DiscountIntervals catalog(String store) {
+        // An empty catalog is cached for known stores only, so arbitrary store names asked for do not pile up
+        DiscountIntervals catalog = catalogByStore.computeIfAbsent(store, s -> {
+            DiscountIntervals built = buildCatalog(s);
+            return built.size() > 0 || productService.getStores().contains(s) ? built : null;
+        });
+        return catalog != null ? catalog : DiscountIntervals.empty();
+    }
+
+    /**
+     * @return the discounts of every ingested file of the store, newest file first, empty if it has none
+     */
+    private DiscountIntervals buildCatalog(String store) {
+        // Newest first keeps the order of the current week file before the previous week one
+        Map<LocalDate, List<Discount>> files = new TreeMap<>(Comparator.reverseOrder());
+        ingestedFiles.forEach((filePath, file) -> {
+            FeedFileName feed = feedOf(filePath);
+            if (feed != null && feed.getStore().equals(store)) {
+                files.put(feed.getDate(), file.getDiscounts());
+            }
+        });
+        if (files.isEmpty()) {
+            return DiscountIntervals.empty();
+        }
+        List<Discount> discounts = new ArrayList<>();
+        files.values().forEach(discounts::addAll);
+        return DiscountIntervals.of(discounts);
+    }
+
+    private void invalidateCatalog(String filePath) {
+        FeedFileName feed = feedOf(filePath);
+        if (feed != null) {
+            catalogByStore.remove(feed.getStore());
+        }
+        catalogVersion.incrementAndGet();
+    }
 
-        return allDiscounts.stream()
-                .filter(discount -> !(discount.getToDate().isBefore(previousWeekStart) || discount.getFromDate().isAfter(currentWeekEnd)))
-                .collect(Collectors.toList());
+    /**
+     * @return the parsed name of a discount file of the data directory, null for any other path
+     */
+    private FeedFileName feedOf(String filePath) {
+        if (!filePath.startsWith(discountsBaseDir + "/")) {
+            return null;
+        }
+        FeedFileName feed = FeedFileName.parse(Paths.get(filePath).getFileName().toString());
+        return feed != null && feed.isDiscounts() ? feed : null;
     }
 
     /**
@@ -70,7 +300,7 @@ public class DiscountService {
         // Load products per store for date
         Map<String, List<Product>> productsByStore = productService.loadProductsByStore(date);
 
-        List<ProductDiscountDTO> results = new ArrayList<>();
+        TopDiscountSelector selector = new TopDiscountSelector(filter.getTopN().getValue());
 
         for (Map.Entry<String, List<Product>> storeEntry : productsByStore.entrySet()) {
             String store = storeEntry.getKey();
@@ -81,8 +311,7 @@ public class DiscountService {
                     List.of(store), date, discountsBaseDir);
 
             // Map products by productId for quick lookup
-            Map<String, Product> productIdMap = products.stream()
-                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+            Map<String, Product> productIdMap = indexById(products);
 
             for (Discount discount : discounts) {
                 Product product = productIdMap.get(discount.getProductId());
@@ -95,78 +324,124 @@ public class DiscountService {
                 if (filter.getBrand() != null && !filter.getBrand().isBlank()
                         && !product.getBrand().equalsIgnoreCase(filter.getBrand())) continue;
 
-                // Create DTO with discount percentage from discount record
-                results.add(buildDTO(product, discount, store));
+                selector.offer(product, discount, store);
             }
         }
 
-        // Sort descending by discountPercentage and limit top N using enum value
-        return sortAndLimitTopN(results, filter.getTopN().getValue());
+        // Top N by discountPercentage, then saved amount, using enum value
+        return selector.toDTOs();
     }
 
     /**
-     * Get top N discounts filtered by store.
+     * Get top N discounts filtered by store, sliced from the precomputed leaderboard of the date.
      */
     public List<ProductDiscountDTO> getTopDiscountsForStore(LocalDate date, String store, BestDiscountsRequestDTO filter) {
-        // Load all products for that store and date
-        List<Product> products = productService.loadProductsByStore(date).getOrDefault(store, List.of());
-        if (products.isEmpty()) {
+        DiscountLeaderboard leaderboard = getLeaderboard(date);
+        if (!leaderboard.hasProducts(store)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No products found for store: " + store);
         }
+        return leaderboard.topForStore(store, filter.getTopN().getValue());
+    }
+
+    /**
+     * Get top N discounts filtered by all stores, sliced from the precomputed leaderboard of the date.
+     */
+    public List<ProductDiscountDTO> getTopDiscountsAcrossStores(LocalDate date, BestDiscountsRequestDTO filter) {
+        return getLeaderboard(date).topAcrossStores(filter.getTopN().getValue());
+    }
+
+    /**
+     * Rebuilds the leaderboard of a date whenever its catalog snapshot is published.
+     */
+    private void onSnapshotPublished(CatalogSnapshot snapshot) {
+        LocalDate date = snapshot.getDate();
+        CatalogSnapshot inEffect = productService.resolveSnapshot(date);
+        long discountVersion = catalogVersion.get();
+        rankPublished(date, inEffect, discountVersion);
+    }
 
-        // Load discounts for that store for current and previous week
-        List<Discount> discounts = loadDiscountsForCurrentAndPreviousWeek(
-                List.of(store), date, discountsBaseDir);
-        Map<String, Product> productIdMap = products.stream()
-                .collect(Collectors.toMap(Product::getProductId, p -> p));
+    private DiscountLeaderboard getLeaderboard(LocalDate date) {
+        // Every store's latest prices on or before the date; publishes the date's snapshot if it has files
+        CatalogSnapshot inEffect = productService.resolveSnapshot(date);
+        // Read before ranking, so a ranking built while a discount file changes is stale on the next call
+        long discountVersion = catalogVersion.get();
 
-        List<ProductDiscountDTO> results = buildDiscountDTOs(productIdMap, discounts, store);
-        return sortAndLimitTopN(results, filter.getTopN().getValue());
+        if (leaderboards.containsKey(date)) {
+            return rankPublished(date, inEffect, discountVersion).leaderboard;
+        }
+        // Any other date is ranked into a bounded cache, so arbitrary dates asked for do not pile up
+        VersionedLeaderboard cached = requestedLeaderboards.get(date);
+        VersionedLeaderboard ranked = rank(date, cached, inEffect, discountVersion);
+        if (ranked != cached) {
+            requestedLeaderboards.put(date, ranked);
+        }
+        return ranked.leaderboard;
     }
 
     /**
-     * Get top N discounts filtered by all stores.
+     * Ranks a published date outside of any map lock, as ranking may read discount files before the data directory
+     * is ingested, then installs the result unless a ranking of newer prices or discounts was installed meanwhile.
      */
-    public List<ProductDiscountDTO> getTopDiscountsAcrossStores(LocalDate date, BestDiscountsRequestDTO filter) {
-        Map<String, List<Product>> productsByStore = productService.loadProductsByStore(date);
+    private VersionedLeaderboard rankPublished(LocalDate date, CatalogSnapshot inEffect, long discountVersion) {
+        VersionedLeaderboard current = leaderboards.get(date);
+        VersionedLeaderboard ranked = rank(date, current, inEffect, discountVersion);
+        if (ranked == current) {
+            return current;
+        }
+        return leaderboards.merge(date, ranked, (installed, candidate) -> candidate.isNotOlderThan(installed) ? candidate : installed);
+    }
+
+    /**
+     * @return the current ranking if it was built from the same prices and discounts, otherwise a new one
+     */
+    private VersionedLeaderboard rank(LocalDate date, VersionedLeaderboard current,
+                                      CatalogSnapshot inEffect, long discountVersion) {
+        if (current != null && current.snapshotVersion == inEffect.getVersion()
+                && current.snapshotDate.equals(inEffect.getDate()) && current.discountVersion == discountVersion) {
+            return current;
+        }
+        return new VersionedLeaderboard(inEffect.getVersion(), inEffect.getDate(), discountVersion,
+                buildLeaderboard(date, inEffect.getProductsByStore()));
+    }
 
-        List<ProductDiscountDTO> results = new ArrayList<>();
+    /**
+     * Ranks the current and previous week discounts of every store for a date,
+     * keeping the top DEPTH entries per store and across stores.
+     */
+    private DiscountLeaderboard buildLeaderboard(LocalDate date, Map<String, List<Product>> productsByStore) {
+        Set<String> storesWithProducts = new HashSet<>();
+        Map<String, List<ProductDiscountDTO>> byStore = new HashMap<>();
+        TopDiscountSelector acrossStores = new TopDiscountSelector(DiscountLeaderboard.DEPTH);
 
         for (Map.Entry<String, List<Product>> entry : productsByStore.entrySet()) {
             String store = entry.getKey();
             List<Product> products = entry.getValue();
+            if (products.isEmpty()) continue;
+            storesWithProducts.add(store);
 
             List<Discount> discounts = loadDiscountsForCurrentAndPreviousWeek(List.of(store), date, discountsBaseDir);
-            Map<String, Product> productIdMap = products.stream()
-                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+            Map<String, Product> productIdMap = indexById(products);
 
-            results.addAll(buildDiscountDTOs(productIdMap, discounts, store));
+            TopDiscountSelector storeSelector = new TopDiscountSelector(DiscountLeaderboard.DEPTH);
+            for (Discount discount : discounts) {
+                Product product = productIdMap.get(discount.getProductId());
+                if (product != null) {
+                    storeSelector.offer(product, discount, store);
+                    acrossStores.offer(product, discount, store);
+                }
+            }
+            byStore.put(store, storeSelector.toDTOs());
         }
 
-        return sortAndLimitTopN(results, filter.getTopN().getValue());
+        return new DiscountLeaderboard(date, storesWithProducts, byStore, acrossStores.toDTOs());
     }
 
-    private List<ProductDiscountDTO> buildDiscountDTOs(Map<String, Product> productIdMap, List<Discount> discounts, String store) {
-        return discounts.stream()
-                .map(discount -> {
-                    Product product = productIdMap.get(discount.getProductId());
-                    return product != null ? buildDTO(product, discount, store) : null;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-    }
-
-    private ProductDiscountDTO buildDTO(Product product, Discount discount, String store) {
-        return new ProductDiscountDTO(
-                product.getProductId(),
-                product.getProductName(),
-                product.getBrand(),
-                product.getPrice(),
-                discount.getPercentage(),
-                discount.getFromDate(),
-                discount.getToDate(),
-                store
-        );
+    /**
+     * Maps products by productId; when a file repeats an id the first row wins.
+     */
+    private Map<String, Product> indexById(List<Product> products) {
+        return products.stream()
+                .collect(Collectors.toMap(Product::getProductId, p -> p, (first, duplicate) -> first));
     }
 
     public List<ProductDiscountDTO> getNewDiscounts(LocalDate referenceDate, BestDiscountsRequestDTO filter) {
@@ -182,60 +457,70 @@ public class DiscountService {
         // Load products per store for date
         Map<String, List<Product>> productsByStore = productService.loadProductsByStore(referenceDate);
 
-        List<ProductDiscountDTO> newDiscounts = new ArrayList<>();
+        TopDiscountSelector selector = new TopDiscountSelector(filter.getTopN().getValue());
 
         for (Map.Entry<String, List<Product>> entry : productsByStore.entrySet()) {
             String store = entry.getKey();
             List<Product> products = entry.getValue();
 
-            // Load discounts for this store and week range (current and previous week)
-            List<Discount> discounts = loadDiscountsForCurrentAndPreviousWeek(List.of(store), referenceDate, discountsBaseDir);
+            // Discounts of this store's current and previous week with fromDate in [earliestNewDate, referenceDate]
+            List<Discount> discounts = loadNewDiscounts(store, referenceDate, earliestNewDate);
 
             // Map products by productId for quick lookup
-            Map<String, Product> productIdMap = products.stream()
-                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+            Map<String, Product> productIdMap = indexById(products);
 
             for (Discount discount : discounts) {
-                if (discount.getFromDate() != null &&
-                        !discount.getFromDate().isBefore(earliestNewDate) &&
-                        !discount.getFromDate().isAfter(referenceDate)) { // fromDate in [earliestNewDate, referenceDate]
-
-                    Product product = productIdMap.get(discount.getProductId());
-                    if (product == null) continue;
-
-                    // Optional filtering by productName (if specified)
-                    if (filter.getProductName() != null && !filter.getProductName().isBlank() &&
-                            !product.getProductName().equalsIgnoreCase(filter.getProductName())) {
-                        continue;
-                    }
-
-                    // Optional filtering by brand (if specified)
-                    if (filter.getBrand() != null && !filter.getBrand().isBlank() &&
-                            !product.getBrand().equalsIgnoreCase(filter.getBrand())) {
-                        continue;
-                    }
-
-                    newDiscounts.add(buildDTO(product, discount, store));
+                Product product = productIdMap.get(discount.getProductId());
+                if (product == null) continue;
+
+                // Optional filtering by productName (if specified)
+                if (filter.getProductName() != null && !filter.getProductName().isBlank() &&
+                        !product.getProductName().equalsIgnoreCase(filter.getProductName())) {
+                    continue;
                 }
+
+                // Optional filtering by brand (if specified)
+                if (filter.getBrand() != null && !filter.getBrand().isBlank() &&
+                        !product.getBrand().equalsIgnoreCase(filter.getBrand())) {
+                    continue;
+                }
+
+                selector.offer(product, discount, store);
             }
         }
 
-        return sortAndLimitTopN(newDiscounts, filter.getTopN().getValue());
+        return selector.toDTOs();
     }
 
-    /**
-     * Sorting first by discount percentage descending,
-     * and then by absolute money saved (price * discount percentage)
-     * descending will prioritize products that give customers the biggest monetary
-     * benefit when discounts are equal.
-     */
-    private List<ProductDiscountDTO> sortAndLimitTopN(List<ProductDiscountDTO> discounts, int topN) {
-        return discounts.stream()
-                .sorted(Comparator
-                        .comparing(ProductDiscountDTO::getDiscountPercentage).reversed()
-                        .thenComparing(dto -> dto.getPrice() * dto.getDiscountPercentage() / 100.0, Comparator.reverseOrder())
-                )
-                .limit(topN)
-                .collect(Collectors.toList());
+    private static final class VersionedLeaderboard {
+        // Version and date of the prices ranked, and discount catalog version
+        private final long snapshotVersion;
+        private final LocalDate snapshotDate;
+        private final long discountVersion;
+        private final DiscountLeaderboard leaderboard;
+
+        VersionedLeaderboard(long snapshotVersion, LocalDate snapshotDate, long discountVersion,
+                             DiscountLeaderboard leaderboard) {
+            this.snapshotVersion = snapshotVersion;
+            this.snapshotDate = snapshotDate;
+            this.discountVersion = discountVersion;
+            this.leaderboard = leaderboard;
+        }
+
+        boolean isNotOlderThan(VersionedLeaderboard other) {
+            return snapshotVersion >= other.snapshotVersion && discountVersion >= other.discountVersion;
+        }
+    }
+
+    private static final class VersionedDiscountIndex {
+        private final long version;
+        private final List<String> stores;
+        private final DiscountIndex index;
+
+        VersionedDiscountIndex(long version, List<String> stores, DiscountIndex index) {
+            this.version = version;
+            this.stores = stores;
+            this.index = index;
+        }
     }
 }
@@ -0,0 +1,64 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.CatalogIngestionReportDTO;
+import com.market.pricecomparator.dto.FeedFileLoadStatsDTO;
+import com.market.pricecomparator.util.FeedFileName;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * One parallel pass over a set of feed files: every file is parsed as its own task on a bounded executor and
+ * its parse time and row count are recorded, so the caller can join the results in any order it needs.
+ */
+final class FeedLoadStage {
+    private final Executor executor;
+    private final int threads;
+    private final long startNanos = System.nanoTime();
+    private final Queue<FeedFileLoadStatsDTO> fileStats = new ConcurrentLinkedQueue<>();
+
+    FeedLoadStage(Executor executor, int threads) {
+        this.executor = executor;
+        this.threads = threads;
+    }
+
+    <T> CompletableFuture<List<T>> submit(FeedFileName feed, Supplier<List<T>> parser) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<T> rows = parser.get();
+            double parseMillis = (System.nanoTime() - start) / 1e6;
+            fileStats.add(new FeedFileLoadStatsDTO(feed.toString(), feed.getStore(), feed.getDate(),
+                    feed.isDiscounts(), rows.size(), parseMillis, ratePerSecond(rows.size(), parseMillis)));
+            return rows;
+        }, executor);
+    }
+
+    long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @param fromCache whether the rows were decoded from the catalog cache instead of parsed from CSV
+     * @return stats of the files loaded so far, slowest first
+     */
+    CatalogIngestionReportDTO report(boolean fromCache) {
+        long wallMillis = elapsedMillis();
+        List<FeedFileLoadStatsDTO> files = new ArrayList<>(fileStats);
+        files.sort(Comparator.comparingDouble(FeedFileLoadStatsDTO::getParseMillis).reversed());
+        long rows = files.stream().mapToLong(FeedFileLoadStatsDTO::getRows).sum();
+        double parseMillis = files.stream().mapToDouble(FeedFileLoadStatsDTO::getParseMillis).sum();
+        return new CatalogIngestionReportDTO(Instant.now(), fromCache, threads, files.size(), rows, wallMillis, parseMillis,
+                ratePerSecond(rows, Math.max(wallMillis, 1)), files);
+    }
+
+    private static double ratePerSecond(long rows, double millis) {
+        return millis > 0 ? rows * 1000.0 / millis : 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.market.pricecomparator.service;
+
+/**
+ * Fixed-size latency histogram in microseconds, so percentiles of an unbounded stream take constant memory.
+ * Values below 64 us are exact; above that every power of two is split into 32 buckets, which bounds
+ * the reported value to within about 3% below the recorded one. Not thread safe.
+ */
+final class LatencyHistogram {
+    private static final int EXACT = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int FIRST_EXPONENT = 6; // log2(EXACT)
+
+    private final long[] counts = new long[EXACT + (Long.SIZE - FIRST_EXPONENT) * SUB_BUCKETS];
+    private long count;
+    private long maxMicros;
+
+    void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts[bucket(micros)]++;
+        count++;
+        maxMicros = Math.max(maxMicros, micros);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * Nearest-rank percentile, reported as the lower bound of its bucket.
+     */
+    long percentileMicros(int percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    private static int bucket(long micros) {
+        if (micros < EXACT) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < EXACT) return bucket;
+        int exponent = (bucket - EXACT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int subBucket = (bucket - EXACT) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
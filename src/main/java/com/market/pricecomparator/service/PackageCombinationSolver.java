@@ -0,0 +1,96 @@
+package com.market.pricecomparator.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the cheapest combination of package sizes whose total quantity covers a requested amount
+ * (unbounded min-cost cover). Sizes are integers; packages that a larger one matches or beats on price are dropped,
+ * then a DP over the amounts 0..target (in units of the gcd of the remaining sizes) gives the optimum.
+ * Targets that would need more than MAX_STATES amounts fall back to the best single package size.
+ */
+final class PackageCombinationSolver {
+    static final int MAX_STATES = 200_000;
+
+    private PackageCombinationSolver() {
+    }
+
+    /**
+     * @param sizes  package sizes, all positive
+     * @param costs  price of one package of each size
+     * @param target amount to cover, positive
+     * @return number of packages to buy of each size
+     */
+    static int[] solve(long[] sizes, double[] costs, long target) {
+        int n = sizes.length;
+        int[] counts = new int[n];
+        if (n == 0 || target <= 0) return counts;
+
+        // Largest sizes first, cheapest first within a size: an option is useful only if it is cheaper than every larger one
+        Integer[] bySizeDescending = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+        Arrays.sort(bySizeDescending, Comparator.comparingLong((Integer i) -> sizes[i]).reversed()
+                .thenComparingDouble(i -> costs[i]));
+        int[] useful = new int[n];
+        int usefulCount = 0;
+        double cheapestLarger = Double.POSITIVE_INFINITY;
+        long gcd = 0;
+        for (int i : bySizeDescending) {
+            if (costs[i] < cheapestLarger) {
+                cheapestLarger = costs[i];
+                useful[usefulCount++] = i;
+                gcd = gcd(gcd, sizes[i]);
+            }
+        }
+
+        long states = (target + gcd - 1) / gcd;
+        if (states > MAX_STATES) {
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int u = 0; u < usefulCount; u++) {
+                int i = useful[u];
+                double cost = costs[i] * ((target + sizes[i] - 1) / sizes[i]);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = i;
+                }
+            }
+            counts[best] = (int) Math.min(Integer.MAX_VALUE, (target + sizes[best] - 1) / sizes[best]);
+            return counts;
+        }
+
+        // cheapest[q] = cheapest way to buy at least q (in gcd units)
+        int amounts = (int) states;
+        long[] scaled = new long[usefulCount];
+        for (int u = 0; u < usefulCount; u++) {
+            scaled[u] = sizes[useful[u]] / gcd;
+        }
+        double[] cheapest = new double[amounts + 1];
+        int[] lastPackage = new int[amounts + 1];
+        for (int q = 1; q <= amounts; q++) {
+            cheapest[q] = Double.POSITIVE_INFINITY;
+            for (int u = 0; u < usefulCount; u++) {
+                int rest = (int) Math.max(0, q - scaled[u]);
+                double cost = costs[useful[u]] + cheapest[rest];
+                if (cost < cheapest[q]) {
+                    cheapest[q] = cost;
+                    lastPackage[q] = u;
+                }
+            }
+        }
+
+        for (int q = amounts; q > 0; q = (int) Math.max(0, q - scaled[lastPackage[q]])) {
+            counts[useful[lastPackage[q]]]++;
+        }
+        return counts;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -1,25 +1,109 @@
 package com.market.pricecomparator.service;
 
+import com.market.pricecomparator.dto.PriceAlertEventDTO;
 import com.market.pricecomparator.dto.PriceAlertMatchDTO;
+import com.market.pricecomparator.dto.PriceAlertSubscriptionDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
 import com.market.pricecomparator.model.Discount;
 import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Price alerts in two flavours: a pull check of one product name against a target price, and standing
+ * subscriptions that are evaluated whenever a catalog snapshot is published. The push path evaluates the prices in
+ * effect on the published date (every store's latest file) store by store: a store whose rows and discounts did not
+ * change is skipped, one whose discounts changed only recomputes those products, and subscriptions are only looked up
+ * for the products whose effective price changed; matches are appended to a bounded event log.
+ */
 @Service
 public class PriceAlertService {
+    private static final Logger logger = Logger.getLogger(PriceAlertService.class.getName());
+    private static final int MAX_EVENTS = 10_000;
 
     private final ProductService productService;
     private final DiscountService discountService;
 
-    private final String discountsBaseDir = "src/main/resources/data";
+    private final PriceAlertSubscriptionRegistry subscriptions = new PriceAlertSubscriptionRegistry();
+
+    // Normalized store -> its prices at the latest evaluated catalog date
+    private final Map<String, StorePrices> evaluatedStores = new HashMap<>();
+    private volatile LocalDate evaluatedDate;
+
+    // Most recent match events, oldest first
+    private final Deque<PriceAlertEventDTO> events = new ArrayDeque<>();
+    private long eventSequence;
+    private final List<Consumer<PriceAlertEventDTO>> eventListeners = new CopyOnWriteArrayList<>();
 
     public PriceAlertService(ProductService productService, DiscountService discountService) {
         this.productService = productService;
         this.discountService = discountService;
+        productService.addSnapshotListener(this::onSnapshotPublished);
+    }
+
+    /**
+     * Registers a standing alert. It is checked right away against the latest evaluated catalog date,
+     * then again whenever the effective price of a matching product changes.
+     * Runs under the same lock as the evaluation of a published snapshot, so a subscription is either seen by
+     * that evaluation or checked against its date, never missed by both.
+     */
+    public synchronized PriceAlertSubscriptionDTO subscribe(PriceAlertSubscriptionDTO request) {
+        PriceAlertSubscriptionDTO subscription = subscriptions.add(request);
+
+        LocalDate date = evaluatedDate;
+        if (date != null) {
+            List<PriceAlertMatchDTO> matches = checkPriceAgainstTarget(
+                    ProductIndex.normalize(subscription.getProductName()),
+                    optionalKey(subscription.getBrand()),
+                    optionalKey(subscription.getStore()),
+                    subscription.getTargetPrice(),
+                    date);
+            for (PriceAlertMatchDTO match : matches) {
+                emit(subscription, match.getProduct(), match.getEffectivePrice(), date);
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * @return false if no subscription has this id
+     */
+    public boolean unsubscribe(long subscriptionId) {
+        return subscriptions.remove(subscriptionId) != null;
+    }
+
+    public List<PriceAlertSubscriptionDTO> getSubscriptions() {
+        return subscriptions.getAll().stream()
+                .sorted(Comparator.comparing(PriceAlertSubscriptionDTO::getId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Match events with a sequence greater than afterSequence, optionally for one subscription.
+     * Only the latest MAX_EVENTS events are kept.
+     */
+    public List<PriceAlertEventDTO> getEvents(long afterSequence, Optional<Long> subscriptionId) {
+        synchronized (events) {
+            return events.stream()
+                    .filter(e -> e.getSequence() > afterSequence)
+                    .filter(e -> subscriptionId.map(id -> id == e.getSubscriptionId()).orElse(true))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Registers a callback invoked with every match event, e.g. to push notifications.
+     */
+    public void addEventListener(Consumer<PriceAlertEventDTO> listener) {
+        eventListeners.add(listener);
     }
 
     public List<PriceAlertMatchDTO> checkPriceAgainstTarget(
@@ -29,57 +113,48 @@ public class PriceAlertService {
             double targetPrice,
             LocalDate date) {
 
-        // Load all products for the current date grouped by store
-        Map<String, List<Product>> productsByStore = productService.loadProductsByStore(date);
+        CatalogSnapshot snapshot = productService.resolveSnapshot(date);
+        Optional<String> storeFilter = store.map(ProductIndex::normalize);
 
-        // Flatten all products
-        List<Product> allProducts = productsByStore.values().stream()
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+        // Candidate products straight from the name/brand/store index
+        List<Product> candidates = snapshot.getProductIndex().find(
+                ProductIndex.normalize(productName),
+                brand.map(ProductIndex::normalize).orElse(null),
+                storeFilter.orElse(null),
+                null);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
 
-        // Build productMap keyed by productId|store (unique key)
-        Map<String, Product> productMap = allProducts.stream()
-                .collect(Collectors.toMap(
-                        p -> p.getProductId() + "|" + p.getStore().toLowerCase(),
-                        p -> p
-                ));
+        // Candidate productIds per store; a (productId, store) pair may occur more than once in a file
+        Map<String, Set<String>> candidateIds = new HashMap<>();
+        for (Product p : candidates) {
+            candidateIds.computeIfAbsent(ProductIndex.normalize(p.getStore()), s -> new HashSet<>()).add(p.getProductId());
+        }
 
         // Load all discounts for current and previous week (filtered by stores or all)
         List<Discount> discounts = discountService.loadDiscountsForCurrentAndPreviousWeek(
-                store.map(List::of).orElse(new ArrayList<>(productsByStore.keySet())),
+                storeFilter.map(List::of).orElse(new ArrayList<>(snapshot.getProductsByStore().keySet())),
                 date,
-                discountsBaseDir
+                discountService.getDataDir()
         );
 
-        // Build discountMap keyed by productId|store, picking discount that saves the most money
-        Map<String, Discount> discountMap = discounts.stream()
-                .filter(d -> {
-                    // Discount key for productMap lookup
-                    String key = d.getProductId() + "|" + d.getStore().toLowerCase();
-                    return productMap.containsKey(key);
-                })
-                .collect(Collectors.toMap(
-                        d -> d.getProductId() + "|" + d.getStore().toLowerCase(),
-                        d -> d,
-                        (d1, d2) -> {
-                            String key1 = d1.getProductId() + "|" + d1.getStore().toLowerCase();
-                            String key2 = d2.getProductId() + "|" + d2.getStore().toLowerCase();
-                            Product p1 = productMap.get(key1);
-                            Product p2 = productMap.get(key2);
-                            double saving1 = p1.getPrice() * d1.getPercentage() / 100.0;
-                            double saving2 = p2.getPrice() * d2.getPercentage() / 100.0;
-                            return saving1 >= saving2 ? d1 : d2;
-                        }
-                ));
-
-        // Filter products by criteria, calculate discounted price, and return matches
-        return allProducts.stream()
-                .filter(p -> p.getProductName().equalsIgnoreCase(productName))
-                .filter(p -> brand.map(b -> b.equalsIgnoreCase(p.getBrand())).orElse(true))
-                .filter(p -> store.map(s -> s.equalsIgnoreCase(p.getStore())).orElse(true))
+        // Keep, per store -> productId, the discount that saves the most money
+        Map<String, Map<String, Discount>> discountMap = new HashMap<>();
+        for (Discount d : discounts) {
+            String storeKey = ProductIndex.normalize(d.getStore());
+            if (!candidateIds.getOrDefault(storeKey, Set.of()).contains(d.getProductId())) continue;
+
+            discountMap.computeIfAbsent(storeKey, s -> new HashMap<>())
+                    .merge(d.getProductId(), d, (d1, d2) -> d1.getPercentage() >= d2.getPercentage() ? d1 : d2);
+        }
+
+        // Calculate discounted price per candidate and return matches
+        return candidates.stream()
                 .map(p -> {
-                    String discountKey = p.getProductId() + "|" + p.getStore().toLowerCase();
-                    double discountPercent = Optional.ofNullable(discountMap.get(discountKey))
+                    Discount discount = discountMap.getOrDefault(ProductIndex.normalize(p.getStore()), Map.of())
+                            .get(p.getProductId());
+                    double discountPercent = Optional.ofNullable(discount)
                             .map(Discount::getPercentage)
                             .orElse(0);
                     double discountedPrice = p.getPrice() * (1 - discountPercent / 100.0);
@@ -90,4 +165,162 @@ public class PriceAlertService {
                 .sorted(Comparator.comparingDouble(PriceAlertMatchDTO::getEffectivePrice))
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    /**
+     * Evaluates subscriptions against the prices in effect on the date of a newly published snapshot. Snapshots older
+     * than the last evaluated date (e.g. loaded for price history) do not describe current prices and are ignored.
+     */
+    private synchronized void onSnapshotPublished(CatalogSnapshot snapshot) {
+        LocalDate date = snapshot.getDate();
+        if (evaluatedDate != null && date.isBefore(evaluatedDate)) {
+            return;
+        }
+
+        // A dated snapshot only holds the stores that published on it; the others keep their latest file
+        CatalogSnapshot inEffect = productService.resolveSnapshot(date);
+        int changed = 0;
+        int matched = 0;
+        Set<String> storeKeys = new HashSet<>();
+        for (Map.Entry<String, List<Product>> entry : inEffect.getProductsByStore().entrySet()) {
+            String storeKey = ProductIndex.normalize(entry.getKey());
+            storeKeys.add(storeKey);
+            List<Product> rows = entry.getValue();
+            Map<String, Integer> discountPercentages = bestDiscountPercentages(entry.getKey(), date);
+            StorePrices previous = evaluatedStores.get(storeKey);
+            if (previous != null && previous.rows == rows && previous.discountPercentages.equals(discountPercentages)) {
+                continue;
+            }
+
+            StorePrices current;
+            List<Integer> changedRows = new ArrayList<>();
+            if (previous != null && previous.rows == rows) {
+                // Same rows, other discounts: only the products whose discount changed
+                current = previous.withDiscounts(discountPercentages);
+                for (String productId : changedDiscounts(previous.discountPercentages, discountPercentages)) {
+                    Integer row = current.rowsById.get(productId);
+                    if (row != null && current.update(productId, rows.get(row).getPrice())) {
+                        changedRows.add(row);
+                    }
+                }
+            } else {
+                current = new StorePrices(rows, discountPercentages);
+                for (int row = 0; row < rows.size(); row++) {
+                    Product p = rows.get(row);
+                    if (current.rowsById.putIfAbsent(p.getProductId(), row) != null) continue; // repeated id, first row wins
+                    current.update(p.getProductId(), p.getPrice());
+                    Double before = previous != null ? previous.effectivePrices.get(p.getProductId()) : null;
+                    if (before == null || before != current.effectivePrices.get(p.getProductId()).doubleValue()) {
+                        changedRows.add(row);
+                    }
+                }
+            }
+            evaluatedStores.put(storeKey, current);
+
+            changed += changedRows.size();
+            for (int row : changedRows) {
+                Product p = rows.get(row);
+                String nameKey = ProductIndex.normalize(p.getProductName());
+                if (!subscriptions.hasSubscriptionsFor(nameKey)) continue;
+                double effectivePrice = current.effectivePrices.get(p.getProductId());
+                for (PriceAlertSubscriptionDTO subscription : subscriptions.triggeredBy(
+                        nameKey, ProductIndex.normalize(p.getBrand()), storeKey, effectivePrice)) {
+                    emit(subscription, p, effectivePrice, date);
+                    matched++;
+                }
+            }
+        }
+        // Stores whose every price file was removed
+        evaluatedStores.keySet().retainAll(storeKeys);
+
+        evaluatedDate = date;
+        logger.info(String.format("Evaluated %d changed prices for %s against %d alert subscriptions: %d matches",
+                changed, date, subscriptions.size(), matched));
+    }
+
+    private static Set<String> changedDiscounts(Map<String, Integer> before, Map<String, Integer> after) {
+        Set<String> productIds = new HashSet<>();
+        before.forEach((productId, percentage) -> {
+            if (!percentage.equals(after.get(productId))) productIds.add(productId);
+        });
+        after.forEach((productId, percentage) -> {
+            if (!percentage.equals(before.get(productId))) productIds.add(productId);
+        });
+        return productIds;
+    }
+
+    /**
+     * Highest discount percentage per productId of a store, from the current and previous week files.
+     */
+    private Map<String, Integer> bestDiscountPercentages(String store, LocalDate date) {
+        Map<String, Integer> percentages = new HashMap<>();
+        for (Discount d : discountService.loadDiscountsForCurrentAndPreviousWeek(List.of(store), date, discountService.getDataDir())) {
+            percentages.merge(d.getProductId(), d.getPercentage(), Math::max);
+        }
+        return percentages;
+    }
+
+    private void emit(PriceAlertSubscriptionDTO subscription, Product product, double effectivePrice, LocalDate date) {
+        PriceAlertEventDTO event;
+        synchronized (events) {
+            event = new PriceAlertEventDTO(++eventSequence, subscription.getId(), date, product,
+                    effectivePrice, subscription.getTargetPrice());
+            events.addLast(event);
+            if (events.size() > MAX_EVENTS) {
+                events.removeFirst();
+            }
+        }
+
+        for (Consumer<PriceAlertEventDTO> listener : eventListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Price alert listener failed for subscription " + subscription.getId() + ": ", e);
+            }
+        }
+    }
+
+    private static Optional<String> optionalKey(String value) {
+        return Optional.ofNullable(value).map(ProductIndex::normalize).filter(key -> !key.isEmpty());
+    }
+
+    /**
+     * Effective prices of one store's rows under the discounts they were computed with.
+     */
+    private static final class StorePrices {
+        // The store's rows as published; the same list instance as long as its price file did not change
+        private final List<Product> rows;
+        private final Map<String, Integer> discountPercentages;
+        // productId -> its first row
+        private final Map<String, Integer> rowsById;
+        private final Map<String, Double> effectivePrices;
+
+        StorePrices(List<Product> rows, Map<String, Integer> discountPercentages) {
+            this(rows, discountPercentages, new HashMap<>(rows.size() * 2), new HashMap<>(rows.size() * 2));
+        }
+
+        private StorePrices(List<Product> rows, Map<String, Integer> discountPercentages,
+                            Map<String, Integer> rowsById, Map<String, Double> effectivePrices) {
+            this.rows = rows;
+            this.discountPercentages = discountPercentages;
+            this.rowsById = rowsById;
+            this.effectivePrices = effectivePrices;
+        }
+
+        /**
+         * @return the same rows under other discounts; the effective prices are updated in place
+         */
+        StorePrices withDiscounts(Map<String, Integer> discountPercentages) {
+            return new StorePrices(rows, discountPercentages, rowsById, effectivePrices);
+        }
+
+        /**
+         * @return true if the product's effective price changed
+         */
+        boolean update(String productId, double price) {
+            double discountPercent = discountPercentages.getOrDefault(productId, 0);
+            double effectivePrice = price * (1 - discountPercent / 100.0);
+            Double previous = effectivePrices.put(productId, effectivePrice);
+            return previous == null || previous != effectivePrice;
+        }
+    }
+}
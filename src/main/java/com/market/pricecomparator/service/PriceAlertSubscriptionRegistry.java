@@ -0,0 +1,138 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.PriceAlertSubscriptionDTO;
+import com.market.pricecomparator.model.ProductIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Standing price alert subscriptions, indexed by normalized product name and brand ("" when any brand)
+ * and sorted by target price. Finding the subscriptions triggered by a price is a tail range
+ * of the (name, any brand) and (name, brand) buckets, so evaluating one product does not scan every subscription.
+ * Adds and removes of a name run inside a compute of its bucket, so they never lose each other's changes and
+ * empty buckets are dropped; lookups read the concurrent buckets without locking.
+ */
+final class PriceAlertSubscriptionRegistry {
+    private static final String ANY_BRAND = "";
+
+    private final AtomicLong ids = new AtomicLong();
+    private final ConcurrentMap<Long, Subscription> byId = new ConcurrentHashMap<>();
+    // name -> brand -> target price -> subscriptions
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentSkipListMap<Double, Set<Subscription>>>> index =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Registers a subscription and returns a copy with its assigned id.
+     */
+    PriceAlertSubscriptionDTO add(PriceAlertSubscriptionDTO request) {
+        PriceAlertSubscriptionDTO dto = new PriceAlertSubscriptionDTO(ids.incrementAndGet(),
+                request.getProductName(), request.getBrand(), request.getStore(), request.getTargetPrice());
+        Subscription subscription = new Subscription(dto);
+
+        byId.put(dto.getId(), subscription);
+        index.compute(subscription.name, (name, byBrand) -> {
+            if (byBrand == null) {
+                byBrand = new ConcurrentHashMap<>();
+            }
+            byBrand.computeIfAbsent(subscription.brand, k -> new ConcurrentSkipListMap<>())
+                    .computeIfAbsent(dto.getTargetPrice(), k -> ConcurrentHashMap.newKeySet())
+                    .add(subscription);
+            return byBrand;
+        });
+        return dto;
+    }
+
+    /**
+     * @return the removed subscription, null if the id is unknown
+     */
+    PriceAlertSubscriptionDTO remove(long id) {
+        Subscription subscription = byId.remove(id);
+        if (subscription == null) return null;
+
+        index.computeIfPresent(subscription.name, (name, byBrand) -> {
+            ConcurrentSkipListMap<Double, Set<Subscription>> byTarget = byBrand.get(subscription.brand);
+            if (byTarget != null) {
+                Set<Subscription> subscriptions = byTarget.get(subscription.dto.getTargetPrice());
+                if (subscriptions != null && subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+                    byTarget.remove(subscription.dto.getTargetPrice());
+                }
+                if (byTarget.isEmpty()) {
+                    byBrand.remove(subscription.brand);
+                }
+            }
+            return byBrand.isEmpty() ? null : byBrand;
+        });
+        return subscription.dto;
+    }
+
+    PriceAlertSubscriptionDTO get(long id) {
+        Subscription subscription = byId.get(id);
+        return subscription != null ? subscription.dto : null;
+    }
+
+    Collection<PriceAlertSubscriptionDTO> getAll() {
+        List<PriceAlertSubscriptionDTO> all = new ArrayList<>();
+        byId.values().forEach(s -> all.add(s.dto));
+        return all;
+    }
+
+    boolean hasSubscriptionsFor(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * Subscriptions whose target is at or above the effective price of a product. Keys must be normalized.
+     */
+    List<PriceAlertSubscriptionDTO> triggeredBy(String name, String brand, String store, double effectivePrice) {
+        Map<String, ConcurrentSkipListMap<Double, Set<Subscription>>> byBrand = index.get(name);
+        if (byBrand == null) return List.of();
+
+        List<PriceAlertSubscriptionDTO> result = new ArrayList<>();
+        collect(byBrand.get(ANY_BRAND), store, effectivePrice, result);
+        if (!brand.equals(ANY_BRAND)) {
+            collect(byBrand.get(brand), store, effectivePrice, result);
+        }
+        return result;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    private static void collect(ConcurrentSkipListMap<Double, Set<Subscription>> byTarget, String store,
+                                double effectivePrice, List<PriceAlertSubscriptionDTO> result) {
+        if (byTarget == null) return;
+        for (Set<Subscription> subscriptions : byTarget.tailMap(effectivePrice, true).values()) {
+            for (Subscription s : subscriptions) {
+                if (s.store.isEmpty() || s.store.equals(store)) {
+                    result.add(s.dto);
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscription with its normalized lookup keys.
+     */
+    private static final class Subscription {
+        private final PriceAlertSubscriptionDTO dto;
+        private final String name;
+        private final String brand;
+        private final String store;
+
+        Subscription(PriceAlertSubscriptionDTO dto) {
+            this.dto = dto;
+            this.name = ProductIndex.normalize(dto.getProductName());
+            this.brand = ProductIndex.normalize(dto.getBrand());
+            this.store = ProductIndex.normalize(dto.getStore());
+        }
+    }
+}
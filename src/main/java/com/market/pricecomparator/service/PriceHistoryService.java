@@ -1,23 +1,34 @@
 package com.market.pricecomparator.service;
 
 import com.market.pricecomparator.dto.PricePointDTO;
-import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.PriceHistoryGranularity;
+import com.market.pricecomparator.model.PriceTimeSeries;
+import com.market.pricecomparator.model.ProductIndex;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
 import java.util.List;
-import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Serves price history from a {@link PriceTimeSeries} that is appended to whenever ProductService publishes
+ * a catalog snapshot, so a query aggregates in-memory columns instead of probing one file per store per day.
+ * The series keeps every date, so its rows live where the catalog history does: off heap with the default
+ * OFF_HEAP history storage.
+ */
 @Service
 public class PriceHistoryService {
 
-    private final ProductService productService;
+    private final PriceTimeSeries timeSeries;
 
     public PriceHistoryService(ProductService productService) {
-        this.productService = productService;
+        this.timeSeries = new PriceTimeSeries(productService.getHistoryMemory());
+        productService.addSnapshotListener(timeSeries::append);
+        // Snapshots published before this service was created
+        productService.getSnapshots().forEach(timeSeries::append);
     }
 
     public List<PricePointDTO> getPriceHistory(
@@ -27,46 +38,39 @@ public class PriceHistoryService {
             Optional<String> category,
             LocalDate startDate,
             LocalDate endDate) {
-
-        List<LocalDate> dates = getDatesBetween(startDate, endDate);
-
-        List<PricePointDTO> history = new ArrayList<>();
-
-        for (LocalDate date : dates) {
-            Map<String, List<Product>> productsByStore = productService.loadProductsByStore(date);
-
-            // flatten all products
-            List<Product> allProducts = productsByStore.values().stream()
-                    .flatMap(List::stream)
-                    .collect(Collectors.toList());
-
-            // filter products by optional params
-            List<Product> filtered = allProducts.stream()
-                    .filter(p -> productName.map(name -> p.getProductName().equalsIgnoreCase(name)).orElse(true))
-                    .filter(p -> brand.map(b -> p.getBrand().equalsIgnoreCase(b)).orElse(true))
-                    .filter(p -> store.map(s -> p.getStore().equalsIgnoreCase(s)).orElse(true))
-                    .filter(p -> category.map(c -> p.getCategory().equalsIgnoreCase(c)).orElse(true))
-                    .collect(Collectors.toList());
-
-            if (filtered.isEmpty()) continue;
-
-            // average price for the day
-            double avgPrice = filtered.stream()
-                    .mapToDouble(Product::getPrice)
-                    .average()
-                    .orElse(0);
-
-            history.add(new PricePointDTO(date, avgPrice, filtered.size()));
-        }
-
-        return history;
+        return getPriceHistory(productName, brand, store, category, startDate, endDate, PriceHistoryGranularity.DAY);
     }
 
-    private List<LocalDate> getDatesBetween(LocalDate start, LocalDate end) {
-        List<LocalDate> dates = new ArrayList<>();
-        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
-            dates.add(date);
-        }
-        return dates;
+    /**
+     * Price points per day or per week. Queries without a product name are served from the pre-aggregated
+     * brand/store/category rollups and never visit individual products.
+     */
+    public List<PricePointDTO> getPriceHistory(
+            Optional<String> productName,
+            Optional<String> brand,
+            Optional<String> store,
+            Optional<String> category,
+            LocalDate startDate,
+            LocalDate endDate,
+            PriceHistoryGranularity granularity) {
+
+        // Normalize filters once; null means "any"
+        String nameKey = productName.map(ProductIndex::normalize).orElse(null);
+        String brandKey = brand.map(ProductIndex::normalize).orElse(null);
+        String storeKey = store.map(ProductIndex::normalize).orElse(null);
+        String categoryKey = category.map(ProductIndex::normalize).orElse(null);
+
+        // One pass over the dates held in memory; days without matching products are skipped
+        NavigableMap<LocalDate, DoubleSummaryStatistics> points = granularity == PriceHistoryGranularity.WEEK
+                ? timeSeries.aggregateWeekly(nameKey, brandKey, storeKey, categoryKey, startDate, endDate)
+                : timeSeries.aggregate(nameKey, brandKey, storeKey, categoryKey, startDate, endDate);
+
+        return points.entrySet().stream()
+                .map(entry -> {
+                    DoubleSummaryStatistics stats = entry.getValue();
+                    return new PricePointDTO(entry.getKey(), stats.getAverage(), (int) stats.getCount(),
+                            stats.getMin(), stats.getMax());
+                })
+                .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package com.market.pricecomparator.service;
 
 import com.market.pricecomparator.dto.ProductValueDTO;
 import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import com.market.pricecomparator.model.UnitConversion;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -10,20 +12,6 @@ import java.util.stream.Collectors;
 
 @Service
 public class ProductRecommendationService {
-    // Maps common units to standard base units (kg, l, buc)
-    private static final Map<String, Double> UNIT_CONVERSION_TO_STANDARD = Map.of(
-            "g", 0.001,
-            "kg", 1.0,
-            "ml", 0.001,
-            "l", 1.0,
-            "buc", 1.0
-    );
-    //Normalize quantity to base unit (e.g., grams -> kg)
-    private double normalizeQuantity(double quantity, String unit) {
-        return quantity * UNIT_CONVERSION_TO_STANDARD.getOrDefault(unit.toLowerCase(), 1.0);
-    }
-
-
     private final ProductService productService;
 
     public ProductRecommendationService(ProductService productService) {
@@ -40,18 +28,12 @@ public class ProductRecommendationService {
             Optional<String> storeFilter,
             LocalDate date) {
 
-        // Load all products by store for the date
-        Map<String, List<Product>> productsByStore = productService.loadProductsByStore(date);
-
-        // Flatten all products into one list
-        List<Product> allProducts = productsByStore.values().stream()
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+        ProductIndex index = productService.resolveSnapshot(date).getProductIndex();
+        String nameKey = ProductIndex.normalize(productName);
+        String brandKey = brandFilter.map(ProductIndex::normalize).orElse(null);
 
         // Find base product (first match by productName and brand if given)
-        Product baseProduct = allProducts.stream()
-                .filter(p -> p.getProductName().equalsIgnoreCase(productName))
-                .filter(p -> brandFilter.map(b -> p.getBrand().equalsIgnoreCase(b)).orElse(true))
+        Product baseProduct = index.findByNameAndBrand(nameKey, brandKey).stream()
                 .findFirst()
                 .orElseThrow(() -> new NoSuchElementException("Base product not found for name: " + productName));
         String baseUnit = baseProduct.getUnit().toLowerCase();
@@ -59,21 +41,17 @@ public class ProductRecommendationService {
         // Filter substitutes:
         // - same productName
         // - brand filter if specified
-        // - same unit for fair comparison
         // - optional store filter
-        List<Product> filtered = allProducts.stream()
-                .filter(p -> p.getProductName().toLowerCase().equals(productName))
-                .filter(p -> brandFilter.map(b -> p.getBrand().toLowerCase().equals(b)).orElse(true))
-                .filter(p -> storeFilter.map(s -> p.getStore().toLowerCase().equals(s)).orElse(true))
-                .filter(p -> p.getUnit() != null && normalizeQuantity(1, p.getUnit()) > 0)
-                .filter(p -> normalizeQuantity(1, p.getUnit()) == normalizeQuantity(1, baseUnit)) // match normalized units
+        // - same unit for fair comparison
+        List<Product> filtered = index.find(nameKey, brandKey, storeFilter.map(ProductIndex::normalize).orElse(null), null).stream()
+                .filter(p -> p.getUnit() != null && UnitConversion.normalizeQuantity(1, p.getUnit()) > 0)
+                .filter(p -> UnitConversion.normalizeQuantity(1, p.getUnit()) == UnitConversion.normalizeQuantity(1, baseUnit)) // match normalized units
                 .collect(Collectors.toList());
 
-
         // Compute price per unit based on normalized quantity
         return filtered.stream()
                 .map(p -> {
-                    double normalizedQuantity = normalizeQuantity(p.getQuantity(), p.getUnit());
+                    double normalizedQuantity = UnitConversion.normalizeQuantity(p.getQuantity(), p.getUnit());
                     double pricePerUnit = p.getPrice() / normalizedQuantity;
                     return new ProductValueDTO(p, pricePerUnit);
                 })
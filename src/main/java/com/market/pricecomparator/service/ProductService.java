@@ -1,42 +1,584 @@
 package com.market.pricecomparator.service;
 
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.ColumnMemory;
 import com.market.pricecomparator.model.Product;
 import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
+    private static final Logger logger = Logger.getLogger(ProductService.class.getName());
+    public static final String DEFAULT_DATA_DIR = "src/main/resources/data";
+    public static final List<String> DEFAULT_STORES = List.of("lidl", "kaufland", "profi");
+    // Composed views kept for the most recently resolved publication dates
+    private static final int MAX_COMPOSED_VIEWS = 8;
+
     private final CsvLoader csvLoader;
 
-    // Base directory path for product CSV files
-    private final String productsBaseDir = "src/main/resources/data";
+    // Base directory path for product (and discount) CSV files
+    private final String productsBaseDir;
+
+    // Configured stores; empty when stores are discovered from the files of the data directory
+    private final List<String> stores;
+    private final StoreRegistry storeRegistry = new StoreRegistry();
+    // Storage of the newest date, and of every older date
+    private final CatalogSnapshot.Storage storage;
+    private final CatalogSnapshot.Storage historyStorage;
+    private final ColumnMemory offHeapMemory;
+    // Loads the store files of one date in parallel
+    private final ThreadPoolExecutor loaderPool;
+
+    // Published snapshots by date; replaced as a whole so readers never see a half-updated map
+    private final AtomicReference<Map<LocalDate, CatalogSnapshot>> snapshots = new AtomicReference<>(Map.of());
+    private final AtomicLong versionSequence = new AtomicLong();
+    // Set once the data directory was listed: from then on the registry knows every price file, so a date or store
+    // without one is never probed on disk
+    private volatile boolean productFilesListed;
+    // Views of every store's latest prices by publication date, least recently resolved first; guarded by itself
+    private final Map<LocalDate, ComposedView> composedViews = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, ComposedView> eldest) {
+            return size() > MAX_COMPOSED_VIEWS;
+        }
+    };
+    // Incremented whenever a snapshot is published or replaced or a price file is recorded, so a composed view
+    // only looks its sources up again after something changed
+    private final AtomicLong catalogChanges = new AtomicLong();
 
-    // Stores list
-    private final List<String> stores = List.of("lidl", "kaufland", "profi");
+    // Notified after a snapshot is published, e.g. to rebuild data derived from it
+    private final List<Consumer<CatalogSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
 
     public ProductService(CsvLoader csvLoader) {
+        this(csvLoader, DEFAULT_STORES);
+    }
+
+    /**
+     * @param stores      stores to load; empty to discover them from the file names of the data directory
+     * @param parallelism threads loading the store files of a date, 0 for the number of available processors
+     * @param storage        in-memory representation of the rows of the newest date
+     * @param historyStorage representation of the rows of every older date
+     * @param offHeapDir     directory of the memory-mapped OFF_HEAP buffers; empty for direct buffers
+     */
+    @Autowired
+    public ProductService(CsvLoader csvLoader,
+                          @Value("${pricecomparator.data-dir:" + DEFAULT_DATA_DIR + "}") String dataDir,
+                          @Value("${pricecomparator.stores:}") List<String> stores,
+                          @Value("${pricecomparator.ingest.parallelism:0}") int parallelism,
+                          @Value("${pricecomparator.catalog.storage:COLUMNAR}") CatalogSnapshot.Storage storage,
+                          @Value("${pricecomparator.catalog.history-storage:OFF_HEAP}") CatalogSnapshot.Storage historyStorage,
+                          @Value("${pricecomparator.catalog.off-heap-dir:}") String offHeapDir) {
+        this(csvLoader, stores, dataDir, parallelism, storage, historyStorage,
+                offHeapDir.isBlank() ? ColumnMemory.direct() : ColumnMemory.mapped(Paths.get(offHeapDir)));
+    }
+
+    public ProductService(CsvLoader csvLoader, List<String> stores) {
+        this(csvLoader, stores, DEFAULT_DATA_DIR);
+    }
+
+    public ProductService(CsvLoader csvLoader, List<String> stores, String dataDir) {
+        this(csvLoader, stores, dataDir, 0);
+    }
+
+    public ProductService(CsvLoader csvLoader, List<String> stores, String dataDir, int parallelism) {
+        this(csvLoader, stores, dataDir, parallelism, CatalogSnapshot.Storage.OBJECTS);
+    }
+
+    public ProductService(CsvLoader csvLoader, List<String> stores, String dataDir, int parallelism,
+                          CatalogSnapshot.Storage storage) {
+        this(csvLoader, stores, dataDir, parallelism, storage, storage, ColumnMemory.direct());
+    }
+
+    public ProductService(CsvLoader csvLoader, List<String> stores, String dataDir, int parallelism,
+                          CatalogSnapshot.Storage storage, CatalogSnapshot.Storage historyStorage,
+                          ColumnMemory offHeapMemory) {
         this.csvLoader = csvLoader;
+        this.storage = storage;
+        this.historyStorage = historyStorage;
+        this.offHeapMemory = offHeapMemory;
+        this.stores = List.copyOf(stores);
+        this.productsBaseDir = dataDir;
+        // Configured stores keep their order in every snapshot
+        this.stores.forEach(storeRegistry::register);
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.loaderPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loaderPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return directory holding the {store}_{date}.csv and {store}_discounts_{date}.csv feeds
+     */
+    public String getDataDir() {
+        return productsBaseDir;
+    }
+
+    /**
+     * @return configured stores, or every store discovered in the data directory so far
+     */
+    public List<String> getStores() {
+        return isDiscoveringStores() ? storeRegistry.getStores() : stores;
+    }
+
+    /**
+     * @return where data derived from older dates belongs: the off-heap memory when they are stored OFF_HEAP,
+     * the heap otherwise
+     */
+    public ColumnMemory getHistoryMemory() {
+        return historyStorage == CatalogSnapshot.Storage.OFF_HEAP ? offHeapMemory : ColumnMemory.heap();
+    }
+
+    public boolean isDiscoveringStores() {
+        return stores.isEmpty();
     }
 
     /**
-     * Loads products for the given stores and currentDate from CSV files.
+     * Records that a price file appeared in or disappeared from the data directory.
+     * A file of a store that is not configured is ignored, unless stores are discovered.
+     *
+     * @return false if the file was ignored
+     */
+    public boolean recordProductFile(String store, LocalDate date, boolean present) {
+        if (!isDiscoveringStores() && !stores.contains(store)) {
+            return false;
+        }
+        if (present) {
+            storeRegistry.addProductFile(store, date);
+        } else {
+            storeRegistry.removeProductFile(store, date);
+        }
+        catalogChanges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return file names of the price files recorded so far, by date
+     */
+    public List<String> getProductFileNames() {
+        List<String> fileNames = new ArrayList<>();
+        for (LocalDate date : storeRegistry.productDates()) {
+            for (String store : storeRegistry.productStores(date)) {
+                fileNames.add(FeedFileName.productFileName(store, date));
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * Returns products for the given stores and currentDate.
+     * CSV files for a date are parsed only the first time the date is requested (or preloaded at startup),
+     * afterwards every call is served from the in-memory snapshot.
+     * Every store gets the prices of its latest file on or before the date, see {@link #resolveSnapshot}.
      *
      * @param currentDate the date used to determine which CSV file to load
      * @return Map with key = store name, value = list of products for that store
      */
     public Map<String, List<Product>> loadProductsByStore(LocalDate currentDate) {
-        return stores.stream()
-                .collect(Collectors.toMap(
-                        store -> store,
-                        store -> {
-                            String filePath = String.format("%s/%s_%s.csv", productsBaseDir, store, currentDate);
-                            return csvLoader.loadProducts(filePath);
-                        }
-                ));
+        return resolveSnapshot(currentDate).getProductsByStore();
+    }
+
+    /**
+     * Returns the prices in effect on a date: every store's rows come from its latest price file on or before it, so
+     * days without a feed (weekends, today before the morning drop) and stores that did not publish on the latest
+     * date are served from memory, and no file is opened for a day without one.
+     * When every store published on the most recent publication date, this is that date's snapshot; otherwise it is
+     * an unpublished view sharing the rows and indexes of each store's latest snapshot, dated on that publication date
+     * and given a new version whenever the rows it is made of change. Composed views are kept for a few recent dates
+     * and composed once per change, however many requests resolve the date. A day before the first publication gets an empty snapshot that is not published.
+     * Until price files are recorded (the data directory is not ingested), the exact date is loaded as by
+     * {@link #getSnapshot(LocalDate)}.
+     */
+    public CatalogSnapshot resolveSnapshot(LocalDate date) {
+        if (storeRegistry.productDates().isEmpty()) {
+            return getSnapshot(date);
+        }
+        LocalDate published = storeRegistry.latestProductDate(date);
+        if (published == null) {
+            return emptySnapshot(date);
+        }
+        ComposedView composed;
+        synchronized (composedViews) {
+            composed = composedViews.computeIfAbsent(published, ComposedView::new);
+        }
+        return composed.get();
+    }
+
+    /**
+     * Returns the published snapshot for a date, loading it once if it is not in memory yet.
+     * Only dates with price files are published: once the data directory is listed, a date without one gets an
+     * empty snapshot without touching disk, and before that a load that found no rows is returned unpublished,
+     * so probing arbitrary dates never grows the catalog or notifies listeners.
+     */
+    public CatalogSnapshot getSnapshot(LocalDate date) {
+        CatalogSnapshot snapshot = snapshots.get().get(date);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (productFilesListed && !storeRegistry.productDates().contains(date)) {
+            return emptySnapshot(date);
+        }
+        CatalogSnapshot loaded = loadSnapshot(date);
+        return loaded.getProductCount() == 0 ? loaded : publish(loaded, false);
+    }
+
+    /**
+     * Re-reads the CSV files for a date and atomically replaces the published snapshot.
+     * Used when new or corrected files arrive for a date that is already in memory. A date whose last file was
+     * removed publishes an empty snapshot in place of its previous one; a date that never had one is not published.
+     */
+    public CatalogSnapshot reloadSnapshot(LocalDate date) {
+        if (productFilesListed && !storeRegistry.productDates().contains(date) && !snapshots.get().containsKey(date)) {
+            return emptySnapshot(date);
+        }
+        return publish(loadSnapshot(date), true);
+    }
+
+    /**
+     * Publishes the products of an in-memory date again under a new version, without re-reading any file,
+     * so snapshot listeners recompute what they derive from other inputs (e.g. a changed discount file).
+     *
+     * @return the new snapshot, or empty if the date is not in memory
+     */
+    public Optional<CatalogSnapshot> republishSnapshot(LocalDate date) {
+        CatalogSnapshot current = snapshots.get().get(date);
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(publish(current.withVersion(versionSequence.incrementAndGet()), true));
+    }
+
+    /**
+     * @return all snapshots currently held in memory, ordered by date
+     */
+    public List<CatalogSnapshot> getSnapshots() {
+        return snapshots.get().values().stream()
+                .sorted(Comparator.comparing(CatalogSnapshot::getDate))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return version of the most recently published snapshot, 0 if nothing is loaded yet
+     */
+    public long getCatalogVersion() {
+        return versionSequence.get();
+    }
+
+    /**
+     * Registers a callback invoked with every newly published (or replaced) snapshot.
+     */
+    public void addSnapshotListener(Consumer<CatalogSnapshot> listener) {
+        snapshotListeners.add(listener);
+    }
+
+    /**
+     * Loads every product file found in the data directory, so requests never pay parsing cost.
+     * The directory is listed once and all files of all dates are parsed in parallel.
+     */
+    public void preloadSnapshots() {
+        Path baseDir = Paths.get(productsBaseDir);
+        if (!Files.isDirectory(baseDir)) {
+            return;
+        }
+        FeedLoadStage stage = newLoadStage();
+        try {
+            publishLoadedSnapshots(stage, submitProductFiles(stage, FeedFileName.list(baseDir)));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error at listing product files: ", e);
+        }
+    }
+
+    FeedLoadStage newLoadStage() {
+        return new FeedLoadStage(loaderPool, loaderPool.getMaximumPoolSize());
+    }
+
+    Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> submitProductFiles(FeedLoadStage stage,
+                                                                                   List<FeedFileName> feeds) {
+        return submitProductFiles(stage, feeds, feed -> csvLoader.loadProducts(productsBaseDir + "/" + feed));
+    }
+
+    /**
+     * Records the price files among the feeds and submits each of them to the stage.
+     *
+     * @param loader reads the rows of one price file
+     * @return pending loads by date, then store
+     */
+    Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> submitProductFiles(
+            FeedLoadStage stage, List<FeedFileName> feeds, Function<FeedFileName, List<Product>> loader) {
+        Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> loads = new TreeMap<>();
+        for (FeedFileName feed : feeds) {
+            if (feed.isDiscounts() || !recordProductFile(feed.getStore(), feed.getDate(), true)) {
+                continue;
+            }
+            loads.computeIfAbsent(feed.getDate(), date -> new HashMap<>())
+                    .put(feed.getStore(), stage.submit(feed, () -> loader.apply(feed)));
+        }
+        productFilesListed = true;
+        return loads;
+    }
+
+    /**
+     * Waits for the loads of each date and publishes its snapshot, oldest date first.
+     * Dates before the newest one are built directly in the history storage.
+     */
+    List<CatalogSnapshot> publishLoadedSnapshots(FeedLoadStage stage,
+                                                 Map<LocalDate, Map<String, CompletableFuture<List<Product>>>> loads) {
+        List<CatalogSnapshot> published = new ArrayList<>(loads.size());
+        LocalDate newest = loads.keySet().stream().max(Comparator.naturalOrder()).orElse(null);
+        LocalDate newestPublished = newestDate(snapshots.get());
+        if (newest == null || (newestPublished != null && newestPublished.isAfter(newest))) {
+            newest = newestPublished;
+        }
+        LocalDate current = newest;
+        loads.forEach((date, loadsByStore) -> {
+            Map<String, List<Product>> productsByStore = new LinkedHashMap<>();
+            for (String store : storesOf(date)) {
+                CompletableFuture<List<Product>> load = loadsByStore.get(store);
+                // A configured store without a file for the date keeps an empty list, as when loaded lazily
+                productsByStore.put(store, load != null ? load.join() : List.of());
+            }
+            published.add(publish(new CatalogSnapshot(versionSequence.incrementAndGet(), date, productsByStore,
+                    stage.elapsedMillis(), storageFor(date, current), offHeapMemory), true));
+        });
+
+        logger.info(String.format("Preloaded %d catalog snapshots of %d stores (%d products, ~%d KB on heap, ~%d KB off heap) in %d ms",
+                published.size(),
+                getStores().size(),
+                published.stream().mapToInt(CatalogSnapshot::getProductCount).sum(),
+                published.stream().mapToLong(CatalogSnapshot::getEstimatedBytes).sum() / 1024,
+                published.stream().mapToLong(CatalogSnapshot::getOffHeapBytes).sum() / 1024,
+                stage.elapsedMillis()));
+        return published;
+    }
+
+    private CatalogSnapshot loadSnapshot(LocalDate date) {
+        long start = System.nanoTime();
+        List<String> storesOfDate = storesOf(date);
+
+        List<CompletableFuture<List<Product>>> loads = new ArrayList<>(storesOfDate.size());
+        for (String store : storesOfDate) {
+            if (productFilesListed && !storeRegistry.hasProductFile(store, date)) {
+                // A configured store without a file for the date keeps an empty list, as when preloaded
+                loads.add(CompletableFuture.completedFuture(List.of()));
+                continue;
+            }
+            String filePath = productsBaseDir + "/" + FeedFileName.productFileName(store, date);
+            loads.add(storesOfDate.size() == 1
+                    ? CompletableFuture.completedFuture(csvLoader.loadProducts(filePath))
+                    : CompletableFuture.supplyAsync(() -> csvLoader.loadProducts(filePath), loaderPool));
+        }
+
+        Map<String, List<Product>> productsByStore = new LinkedHashMap<>();
+        for (int i = 0; i < storesOfDate.size(); i++) {
+            productsByStore.put(storesOfDate.get(i), loads.get(i).join());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        return new CatalogSnapshot(versionSequence.incrementAndGet(), date, productsByStore, elapsedMillis,
+                storageFor(date, newestDate(snapshots.get())), offHeapMemory);
+    }
+
+    /**
+     * @return store -> published snapshot holding its latest price file on or before the date
+     */
+    private Map<String, CatalogSnapshot> latestSources(LocalDate published) {
+        Map<LocalDate, CatalogSnapshot> byDate = new HashMap<>();
+        Map<String, CatalogSnapshot> sources = new HashMap<>();
+        storeRegistry.latestProductDates(published).forEach((store, date) ->
+                sources.put(store, byDate.computeIfAbsent(date, this::getSnapshot)));
+        return sources;
+    }
+
+    /**
+     * @return the date's snapshot, or a view of it where each store without a file on the date gets the rows of its
+     * latest earlier one, sharing the rows and indexes of the snapshots they come from
+     */
+    private CatalogSnapshot composeSnapshot(LocalDate published, Map<String, CatalogSnapshot> sources, long version) {
+        CatalogSnapshot snapshot = getSnapshot(published);
+        if (sources.values().stream().allMatch(source -> source == snapshot)) {
+            return snapshot;
+        }
+        long start = System.nanoTime();
+        Map<String, CatalogSnapshot> sourcesByStore = new LinkedHashMap<>();
+        for (String store : getStores()) {
+            CatalogSnapshot source = sources.get(store);
+            // A configured store that never published keeps its empty list
+            if (source != null || !isDiscoveringStores()) {
+                sourcesByStore.put(store, source);
+            }
+        }
+        CatalogSnapshot view = CatalogSnapshot.compose(version, published, snapshot.getStorage(), sourcesByStore,
+                (System.nanoTime() - start) / 1_000_000);
+        logger.info(String.format("Composed catalog view %s v%d from the latest files of %d stores: %d products",
+                published, version, sourcesByStore.size(), view.getProductCount()));
+        return view;
+    }
+
+    /**
+     * @return an unpublished snapshot of the date where every store has no products
+     */
+    private CatalogSnapshot emptySnapshot(LocalDate date) {
+        Map<String, List<Product>> empty = new LinkedHashMap<>();
+        storesOf(date).forEach(store -> empty.put(store, List.of()));
+        return new CatalogSnapshot(versionSequence.get(), date, empty, 0, storage);
+    }
+
+    private List<String> storesOf(LocalDate date) {
+        // Configured stores are probed on every date; discovered ones only where a file was seen
+        return isDiscoveringStores() ? storeRegistry.productStores(date) : stores;
+    }
+
+    private CatalogSnapshot.Storage storageFor(LocalDate date, LocalDate newest) {
+        return newest != null && date.isBefore(newest) ? historyStorage : storage;
+    }
+
+    private static LocalDate newestDate(Map<LocalDate, CatalogSnapshot> published) {
+        return published.keySet().stream().max(Comparator.naturalOrder()).orElse(null);
+    }
+
+    private CatalogSnapshot publish(CatalogSnapshot candidate, boolean replace) {
+        while (true) {
+            Map<LocalDate, CatalogSnapshot> current = snapshots.get();
+            CatalogSnapshot existing = current.get(candidate.getDate());
+            if (existing != null && !replace) {
+                // Another request loaded the same date first; keep the published one
+                return existing;
+            }
+
+            Map<LocalDate, CatalogSnapshot> next = new HashMap<>(current);
+            next.put(candidate.getDate(), candidate);
+            if (snapshots.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                catalogChanges.incrementAndGet();
+                logger.info(String.format("Published catalog snapshot %s v%d: %d products, ~%d KB %s (%.0f B/row, ~%d KB as objects, ~%d KB off heap), loaded in %d ms",
+                        candidate.getDate(), candidate.getVersion(), candidate.getProductCount(),
+                        candidate.getEstimatedBytes() / 1024, candidate.getStorage(), candidate.getBytesPerRow(),
+                        candidate.getObjectModelBytes() / 1024, candidate.getOffHeapBytes() / 1024,
+                        candidate.getLoadMillis()));
+                notifyListeners(candidate);
+                moveHistory();
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Moves every snapshot older than the newest date into the history storage, e.g. the previous newest date
+     * once a later one is published. The products and version do not change, so listeners are not notified.
+     */
+    private void moveHistory() {
+        if (historyStorage == storage) {
+            return;
+        }
+        Map<LocalDate, CatalogSnapshot> published = snapshots.get();
+        LocalDate newest = newestDate(published);
+        for (CatalogSnapshot snapshot : published.values()) {
+            if (snapshot.getDate().isBefore(newest) && snapshot.getStorage() != historyStorage) {
+                replace(snapshot, snapshot.withStorage(historyStorage, offHeapMemory));
+            }
+        }
+    }
+
+    /**
+     * Swaps a published snapshot for another representation of it, unless it was replaced in the meantime.
+     */
+    private void replace(CatalogSnapshot existing, CatalogSnapshot replacement) {
+        while (true) {
+            Map<LocalDate, CatalogSnapshot> current = snapshots.get();
+            if (current.get(existing.getDate()) != existing) {
+                return;
+            }
+            Map<LocalDate, CatalogSnapshot> next = new HashMap<>(current);
+            next.put(existing.getDate(), replacement);
+            if (snapshots.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                catalogChanges.incrementAndGet();
+                logger.info(String.format("Moved catalog snapshot %s v%d to %s: ~%d KB on heap, ~%d KB off heap",
+                        replacement.getDate(), replacement.getVersion(), replacement.getStorage(),
+                        replacement.getEstimatedBytes() / 1024, replacement.getOffHeapBytes() / 1024));
+                return;
+            }
+        }
+    }
+
+    private void notifyListeners(CatalogSnapshot snapshot) {
+        for (Consumer<CatalogSnapshot> listener : snapshotListeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Snapshot listener failed for " + snapshot.getDate() + ": ", e);
+            }
+        }
+    }
+
+    /**
+     * The resolved view of one publication date. It is composed by one request after a change while the others
+     * wait for it, and gets a version of its own whenever the rows it is made of change, so the version identifies
+     * its content like that of a published snapshot.
+     */
+    private final class ComposedView {
+        private final LocalDate published;
+        private CatalogSnapshot view;
+        // store -> snapshot its rows were taken from
+        private Map<String, CatalogSnapshot> sources = Map.of();
+        // Value of catalogChanges when the sources were last looked up
+        private long checkedAtChange = -1;
+
+        ComposedView(LocalDate published) {
+            this.published = published;
+        }
+
+        CatalogSnapshot get() {
+            long changes = catalogChanges.get();
+            synchronized (this) {
+                if (view != null && checkedAtChange == changes) {
+                    return view;
+                }
+            }
+            // Looked up outside the lock: it may load a snapshot and notify listeners
+            Map<String, CatalogSnapshot> current = latestSources(published);
+            synchronized (this) {
+                if (view != null && checkedAtChange >= changes) {
+                    // Checked by another request meanwhile, as recently as this one
+                    return view;
+                }
+                if (view == null || !current.equals(sources)) {
+                    // A source moved to another storage keeps its version, and so does the view of the same rows
+                    boolean sameRows = view != null && current.keySet().equals(sources.keySet())
+                            && current.entrySet().stream().allMatch(entry ->
+                            entry.getValue().getVersion() == sources.get(entry.getKey()).getVersion());
+                    view = composeSnapshot(published, current,
+                            sameRows ? view.getVersion() : versionSequence.incrementAndGet());
+                    sources = current;
+                }
+                checkedAtChange = changes;
+                return view;
+            }
+        }
     }
 }
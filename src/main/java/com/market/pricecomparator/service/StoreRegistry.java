@@ -0,0 +1,150 @@
+package com.market.pricecomparator.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Stores discovered from the feed files of the data directory, and which of them published a price file on each date.
+ * Every store gets a dense id on first sight; the stores of a date are a bit set over these ids, so thousands of
+ * stores over a year of dates cost a few hundred bytes per date and listing the stores of a date never touches disk.
+ * Dates are kept sorted, so the latest publication on or before any day is a floor lookup, and the latest file of
+ * every store is found in one walk back over the bit sets, which stops as soon as every store is placed.
+ * Lookups are lock free; registrations (ingestion only) synchronize on the registry.
+ */
+final class StoreRegistry {
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    // Written under the lock, replaced as a whole so readers see a consistent list
+    private volatile List<String> names = List.of();
+    // date -> ids of the stores with a price file for that date; bit sets are copied on write
+    private final ConcurrentSkipListMap<LocalDate, BitSet> productFiles = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the store's id, assigning the next free one to a new store
+     */
+    int register(String store) {
+        Integer id = idsByName.get(store);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = idsByName.get(store);
+            if (id == null) {
+                id = names.size();
+                List<String> next = new ArrayList<>(names.size() + 1);
+                next.addAll(names);
+                next.add(store);
+                names = Collections.unmodifiableList(next);
+                idsByName.put(store, id);
+            }
+            return id;
+        }
+    }
+
+    synchronized void addProductFile(String store, LocalDate date) {
+        BitSet stores = (BitSet) productFiles.getOrDefault(date, new BitSet()).clone();
+        stores.set(register(store));
+        productFiles.put(date, stores);
+    }
+
+    synchronized void removeProductFile(String store, LocalDate date) {
+        Integer id = idsByName.get(store);
+        BitSet current = productFiles.get(date);
+        if (id == null || current == null) {
+            return;
+        }
+        BitSet stores = (BitSet) current.clone();
+        stores.clear(id);
+        if (stores.isEmpty()) {
+            productFiles.remove(date);
+        } else {
+            productFiles.put(date, stores);
+        }
+    }
+
+    /**
+     * @return stores with a price file for the date, in discovery order
+     */
+    List<String> productStores(LocalDate date) {
+        BitSet stores = productFiles.get(date);
+        if (stores == null) {
+            return List.of();
+        }
+        List<String> all = names;
+        List<String> result = new ArrayList<>(stores.cardinality());
+        for (int id = stores.nextSetBit(0); id >= 0; id = stores.nextSetBit(id + 1)) {
+            result.add(all.get(id));
+        }
+        return result;
+    }
+
+    boolean hasProductFile(String store, LocalDate date) {
+        Integer id = idsByName.get(store);
+        BitSet stores = productFiles.get(date);
+        return id != null && stores != null && stores.get(id);
+    }
+
+    /**
+     * @return the most recent date on or before the given one with at least one price file, null if there is none
+     */
+    LocalDate latestProductDate(LocalDate onOrBefore) {
+        return productFiles.floorKey(onOrBefore);
+    }
+
+    /**
+     * @return for every store with a price file on or before the date, the date of its latest one, in discovery order
+     */
+    Map<String, LocalDate> latestProductDates(LocalDate onOrBefore) {
+        List<String> all = names;
+        LocalDate[] latest = new LocalDate[all.size()];
+        BitSet placed = new BitSet(all.size());
+        for (Map.Entry<LocalDate, BitSet> entry : productFiles.headMap(onOrBefore, true).descendingMap().entrySet()) {
+            BitSet stores = entry.getValue();
+            for (int id = stores.nextSetBit(0); id >= 0 && id < latest.length; id = stores.nextSetBit(id + 1)) {
+                if (!placed.get(id)) {
+                    placed.set(id);
+                    latest[id] = entry.getKey();
+                }
+            }
+            if (placed.cardinality() == latest.length) {
+                break;
+            }
+        }
+        Map<String, LocalDate> result = new LinkedHashMap<>();
+        for (int id = 0; id < latest.length; id++) {
+            if (latest[id] != null) {
+                result.put(all.get(id), latest[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return dates with at least one price file, ascending
+     */
+    NavigableSet<LocalDate> productDates() {
+        return productFiles.keySet();
+    }
+
+    /**
+     * @return every store seen so far, in discovery order
+     */
+    List<String> getStores() {
+        return names;
+    }
+
+    boolean contains(String store) {
+        return idsByName.containsKey(store);
+    }
+
+    int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,416 @@
+package com.market.pricecomparator.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Chooses the stores a basket is bought in when the number of visited stores is limited and/or every visit has a cost.
+ * Input is the cheapest effective price of each item in each store; every item is then bought in the cheapest chosen
+ * store. Objective: fewest items that no chosen store sells, then lowest products cost + visit cost per chosen store.
+ * Small instances are solved exactly with a branch and bound over store subsets, larger ones with a greedy
+ * construction followed by add / drop / swap local search.
+ */
+final class StoreSubsetSelector {
+    // Largest number of candidate subsets (sum of C(stores, k) for k <= maxStores) searched exhaustively
+    static final long EXACT_SUBSET_LIMIT = 50_000;
+    // Above this many stores the suffix bounds of the exact search take too much memory
+    static final int EXACT_MAX_STORES = 64;
+    private static final int LOCAL_SEARCH_STARTS = 8;
+    private static final int MAX_LOCAL_SEARCH_PASSES = 50;
+    private static final double EPSILON = 1e-9;
+
+    private final int itemCount;
+    private final int storeCount;
+    // Store-major: cost[store * itemCount + item], POSITIVE_INFINITY when the store does not sell the item
+    private final double[] cost;
+
+    // Exact search state
+    private int maxStores;
+    private double visitCost;
+    private int[] order;
+    private double[][] suffixMin;
+    private double[][] levels;
+    private int[] path;
+    private double bestValue;
+    private int[] bestPath;
+
+    StoreSubsetSelector(int itemCount, int storeCount) {
+        this.itemCount = itemCount;
+        this.storeCount = storeCount;
+        this.cost = new double[itemCount * storeCount];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Records a price of the item in the store, keeping the cheapest one.
+     */
+    void offer(int item, int store, double price) {
+        int cell = store * itemCount + item;
+        if (price < cost[cell]) cost[cell] = price;
+    }
+
+    double cost(int item, int store) {
+        return cost[store * itemCount + item];
+    }
+
+    /**
+     * @param maxStores most stores to visit, at least 1
+     * @param visitCost cost added for every visited store, 0 or more
+     */
+    Selection select(int maxStores, double visitCost) {
+        if (maxStores < 1) throw new IllegalArgumentException("maxStores must be at least 1");
+        if (visitCost < 0) throw new IllegalArgumentException("visitCost must not be negative");
+
+        this.maxStores = Math.min(maxStores, storeCount);
+        this.visitCost = visitCost;
+        if (itemCount == 0 || storeCount == 0) {
+            int[] unassigned = new int[itemCount];
+            Arrays.fill(unassigned, -1);
+            return new Selection(new int[0], unassigned, true);
+        }
+
+        // Leaving one item uncovered must cost more than any set that covers it
+        double penalty = 1 + visitCost * storeCount;
+        for (int item = 0; item < itemCount; item++) {
+            double max = 0;
+            for (int store = 0; store < storeCount; store++) {
+                double c = cost(item, store);
+                if (c != Double.POSITIVE_INFINITY && c > max) max = c;
+            }
+            penalty += max;
+        }
+        double[] capped = new double[cost.length];
+        for (int cell = 0; cell < cost.length; cell++) {
+            capped[cell] = Math.min(cost[cell], penalty);
+        }
+
+        boolean exact = storeCount <= EXACT_MAX_STORES && subsetCount(storeCount, this.maxStores) <= EXACT_SUBSET_LIMIT;
+        int[] stores = exact ? exactSearch(capped, penalty) : localSearch(capped, penalty);
+        Arrays.sort(stores);
+
+        int[] storeOfItem = new int[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            int bestStore = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int store : stores) {
+                double c = cost(item, store);
+                if (c < best) {
+                    best = c;
+                    bestStore = store;
+                }
+            }
+            storeOfItem[item] = bestStore;
+        }
+        return new Selection(stores, storeOfItem, exact);
+    }
+
+    private static long subsetCount(int n, int k) {
+        long total = 0;
+        long combinations = 1;
+        for (int size = 1; size <= k; size++) {
+            combinations = combinations * (n - size + 1) / size;
+            total += combinations;
+            if (total > EXACT_SUBSET_LIMIT) return total;
+        }
+        return total;
+    }
+
+    private int[] exactSearch(double[] capped, double penalty) {
+        // Visiting promising stores first finds a good incumbent early, which prunes most of the tree
+        order = storesByStandaloneCost(capped);
+
+        // suffixMin[j][item] = cheapest price of the item in stores order[j..], a lower bound for any extension
+        suffixMin = new double[storeCount + 1][itemCount];
+        Arrays.fill(suffixMin[storeCount], penalty);
+        for (int j = storeCount - 1; j >= 0; j--) {
+            int base = order[j] * itemCount;
+            for (int item = 0; item < itemCount; item++) {
+                suffixMin[j][item] = Math.min(suffixMin[j + 1][item], capped[base + item]);
+            }
+        }
+
+        levels = new double[maxStores + 1][itemCount];
+        Arrays.fill(levels[0], penalty);
+        path = new int[maxStores];
+        bestValue = Double.POSITIVE_INFINITY;
+        bestPath = new int[0];
+
+        branch(capped, 0, 0);
+
+        int[] result = bestPath;
+        order = null;
+        suffixMin = null;
+        levels = null;
+        path = null;
+        bestPath = null;
+        return result;
+    }
+
+    private void branch(double[] capped, int start, int depth) {
+        double[] current = levels[depth];
+        if (depth > 0) {
+            double value = sum(current, 0) + visitCost * depth;
+            if (value < bestValue) {
+                bestValue = value;
+                bestPath = Arrays.copyOf(path, depth);
+            }
+        }
+        if (depth == maxStores || start == storeCount) return;
+
+        double bound = visitCost * (depth + 1);
+        double[] reachable = suffixMin[start];
+        for (int item = 0; item < itemCount; item++) {
+            bound += Math.min(current[item], reachable[item]);
+        }
+        if (bound >= bestValue) return;
+
+        double[] next = levels[depth + 1];
+        for (int j = start; j < storeCount; j++) {
+            int base = order[j] * itemCount;
+            for (int item = 0; item < itemCount; item++) {
+                next[item] = Math.min(current[item], capped[base + item]);
+            }
+            path[depth] = order[j];
+            branch(capped, j + 1, depth + 1);
+        }
+    }
+
+    private int[] localSearch(double[] capped, double penalty) {
+        // Restarting from several good first stores escapes most local optima of a single greedy run
+        int[] seeds = storesByStandaloneCost(capped);
+        int starts = maxStores == 1 ? 1 : Math.min(LOCAL_SEARCH_STARTS, storeCount);
+
+        boolean[] best = null;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (int start = 0; start < starts; start++) {
+            boolean[] chosen = new boolean[storeCount];
+            chosen[seeds[start]] = true;
+            double value = improve(capped, penalty, chosen);
+            if (value < bestValue - EPSILON) {
+                bestValue = value;
+                best = chosen;
+            }
+        }
+
+        boolean[] selected = best;
+        return IntStream.range(0, storeCount).filter(store -> selected[store]).toArray();
+    }
+
+    /**
+     * Grows the chosen set greedily, then applies the best add / drop / swap move until none improves.
+     *
+     * @return products cost + visit cost of the final set, which is left in chosen
+     */
+    private double improve(double[] capped, double penalty, boolean[] chosen) {
+        int count = 0;
+        double[] current = new double[itemCount];
+        Arrays.fill(current, penalty);
+        for (int store = 0; store < storeCount; store++) {
+            if (!chosen[store]) continue;
+            count++;
+            int base = store * itemCount;
+            for (int item = 0; item < itemCount; item++) {
+                current[item] = Math.min(current[item], capped[base + item]);
+            }
+        }
+
+        // Greedy: add the store that saves the most until the limit is reached or a visit no longer pays off.
+        // A store's saving only shrinks as stores are added, so a stale saving is an upper bound and only the
+        // head of the queue needs to be recomputed (lazy greedy)
+        PriorityQueue<double[]> savings = new PriorityQueue<>((x, y) -> Double.compare(y[1], x[1]));
+        for (int store = 0; store < storeCount; store++) {
+            if (!chosen[store]) savings.add(new double[]{store, Double.POSITIVE_INFINITY});
+        }
+        while (count < maxStores && !savings.isEmpty()) {
+            double[] head = savings.poll();
+            int store = (int) head[0];
+            int base = store * itemCount;
+            double gain = 0;
+            for (int item = 0; item < itemCount; item++) {
+                gain += Math.max(0, current[item] - capped[base + item]);
+            }
+            if (!savings.isEmpty() && gain < savings.peek()[1]) {
+                head[1] = gain;
+                savings.add(head);
+                continue;
+            }
+            if (count > 0 && gain <= visitCost + EPSILON) break;
+
+            chosen[store] = true;
+            count++;
+            for (int item = 0; item < itemCount; item++) {
+                current[item] = Math.min(current[item], capped[base + item]);
+            }
+        }
+
+        // Best improvement local search. With the cheapest and second cheapest chosen price per item, replacing
+        // store out by store in only changes the items out currently wins, so one pass over all moves is O(stores * items)
+        double[] first = new double[itemCount];
+        double[] second = new double[itemCount];
+        int[] firstStore = new int[itemCount];
+        double[] addValue = new double[storeCount];
+        int[] ownedStart = new int[storeCount + 1];
+        int[] owned = new int[itemCount];
+        double value = Double.POSITIVE_INFINITY;
+
+        for (int pass = 0; pass < MAX_LOCAL_SEARCH_PASSES; pass++) {
+            Arrays.fill(first, penalty);
+            Arrays.fill(second, penalty);
+            Arrays.fill(firstStore, -1);
+            for (int store = 0; store < storeCount; store++) {
+                if (!chosen[store]) continue;
+                int base = store * itemCount;
+                for (int item = 0; item < itemCount; item++) {
+                    double c = capped[base + item];
+                    if (c < first[item]) {
+                        second[item] = first[item];
+                        first[item] = c;
+                        firstStore[item] = store;
+                    } else if (c < second[item]) {
+                        second[item] = c;
+                    }
+                }
+            }
+
+            value = sum(first, 0) + visitCost * count;
+
+            // Items grouped by the chosen store they are bought in (counting sort)
+            Arrays.fill(ownedStart, 0);
+            for (int item = 0; item < itemCount; item++) {
+                if (firstStore[item] >= 0) ownedStart[firstStore[item] + 1]++;
+            }
+            for (int store = 0; store < storeCount; store++) {
+                ownedStart[store + 1] += ownedStart[store];
+            }
+            int[] next = Arrays.copyOf(ownedStart, storeCount);
+            for (int item = 0; item < itemCount; item++) {
+                if (firstStore[item] >= 0) owned[next[firstStore[item]]++] = item;
+            }
+
+            // Items cost after adding each unchosen store
+            for (int store = 0; store < storeCount; store++) {
+                if (chosen[store]) continue;
+                int base = store * itemCount;
+                double total = 0;
+                for (int item = 0; item < itemCount; item++) {
+                    total += Math.min(first[item], capped[base + item]);
+                }
+                addValue[store] = total;
+            }
+
+            double itemsCost = value - visitCost * count;
+            double bestMoveValue = value - EPSILON;
+            int removeStore = -1;
+            int addStore = -1;
+
+            if (count < maxStores) {
+                for (int store = 0; store < storeCount; store++) {
+                    if (chosen[store]) continue;
+                    double candidate = addValue[store] + visitCost * (count + 1);
+                    if (candidate < bestMoveValue) {
+                        bestMoveValue = candidate;
+                        removeStore = -1;
+                        addStore = store;
+                    }
+                }
+            }
+
+            for (int out = 0; out < storeCount; out++) {
+                if (!chosen[out]) continue;
+                int from = ownedStart[out];
+                int to = ownedStart[out + 1];
+
+                if (count > 1) {
+                    double candidate = itemsCost + visitCost * (count - 1);
+                    for (int k = from; k < to; k++) {
+                        candidate += second[owned[k]] - first[owned[k]];
+                    }
+                    if (candidate < bestMoveValue) {
+                        bestMoveValue = candidate;
+                        removeStore = out;
+                        addStore = -1;
+                    }
+                }
+                for (int in = 0; in < storeCount; in++) {
+                    if (chosen[in]) continue;
+                    int base = in * itemCount;
+                    double candidate = addValue[in] + visitCost * count;
+                    for (int k = from; k < to; k++) {
+                        int item = owned[k];
+                        double c = capped[base + item];
+                        candidate += Math.min(second[item], c) - Math.min(first[item], c);
+                    }
+                    if (candidate < bestMoveValue) {
+                        bestMoveValue = candidate;
+                        removeStore = out;
+                        addStore = in;
+                    }
+                }
+            }
+
+            if (removeStore < 0 && addStore < 0) break;
+            if (removeStore >= 0) {
+                chosen[removeStore] = false;
+                count--;
+            }
+            if (addStore >= 0) {
+                chosen[addStore] = true;
+                count++;
+            }
+            value = bestMoveValue;
+        }
+        return value;
+    }
+
+    // Stores ordered by the cost of buying the whole basket there alone
+    private int[] storesByStandaloneCost(double[] capped) {
+        double[] standalone = new double[storeCount];
+        for (int store = 0; store < storeCount; store++) {
+            standalone[store] = sum(capped, store * itemCount);
+        }
+        return IntStream.range(0, storeCount).boxed()
+                .sorted(Comparator.comparingDouble(store -> standalone[store]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private double sum(double[] values, int from) {
+        double total = 0;
+        for (int item = 0; item < itemCount; item++) {
+            total += values[from + item];
+        }
+        return total;
+    }
+
+    static final class Selection {
+        private final int[] stores;
+        private final int[] storeOfItem;
+        private final boolean exact;
+
+        Selection(int[] stores, int[] storeOfItem, boolean exact) {
+            this.stores = stores;
+            this.storeOfItem = storeOfItem;
+            this.exact = exact;
+        }
+
+        /**
+         * @return chosen store ids, ascending
+         */
+        int[] getStores() {
+            return stores;
+        }
+
+        /**
+         * @return store id each item is bought in, -1 when no chosen store sells it
+         */
+        int storeOf(int item) {
+            return storeOfItem[item];
+        }
+
+        boolean isExact() {
+            return exact;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.ProductDiscountDTO;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best N (product, discount) pairs seen so far in a bounded min-heap.
+ * Ranking: discount percentage descending, then money saved (price * percentage) descending,
+ * then first offered first, which matches a stable sort of all candidates.
+ * Candidates that cannot enter the top N are rejected without allocating, and DTOs are only built for the winners.
+ */
+final class TopDiscountSelector {
+    // Best candidate first
+    static final Comparator<Candidate> RANKING = Comparator
+            .comparingInt((Candidate c) -> c.percentage).reversed()
+            .thenComparing(Comparator.comparingDouble((Candidate c) -> c.saving).reversed())
+            .thenComparingLong(c -> c.sequence);
+
+    private final int limit;
+    private final PriorityQueue<Candidate> heap;
+    private long sequence;
+
+    TopDiscountSelector(int limit) {
+        this.limit = Math.max(limit, 0);
+        // Worst candidate at the head, so it is the one evicted
+        this.heap = new PriorityQueue<>(Math.max(this.limit, 1), RANKING.reversed());
+    }
+
+    void offer(Product product, Discount discount, String store) {
+        int percentage = discount.getPercentage();
+        double saving = product.getPrice() * percentage / 100.0;
+        long seq = sequence++;
+        if (limit == 0) return;
+
+        if (heap.size() == limit) {
+            Candidate worst = heap.peek();
+            if (!ranksBefore(percentage, saving, seq, worst)) return;
+            heap.poll();
+        }
+        heap.add(new Candidate(product, discount, store, percentage, saving, seq));
+    }
+
+    /**
+     * @return the selected discounts as DTOs, best first
+     */
+    List<ProductDiscountDTO> toDTOs() {
+        List<Candidate> winners = new ArrayList<>(heap);
+        winners.sort(RANKING);
+
+        List<ProductDiscountDTO> result = new ArrayList<>(winners.size());
+        for (Candidate c : winners) {
+            result.add(new ProductDiscountDTO(
+                    c.product.getProductId(),
+                    c.product.getProductName(),
+                    c.product.getBrand(),
+                    c.product.getPrice(),
+                    c.discount.getPercentage(),
+                    c.discount.getFromDate(),
+                    c.discount.getToDate(),
+                    c.store
+            ));
+        }
+        return result;
+    }
+
+    private static boolean ranksBefore(int percentage, double saving, long seq, Candidate other) {
+        if (percentage != other.percentage) return percentage > other.percentage;
+        int bySaving = Double.compare(saving, other.saving);
+        if (bySaving != 0) return bySaving > 0;
+        return seq < other.sequence;
+    }
+
+    static final class Candidate {
+        private final Product product;
+        private final Discount discount;
+        private final String store;
+        private final int percentage;
+        private final double saving;
+        private final long sequence;
+
+        Candidate(Product product, Discount discount, String store, int percentage, double saving, long sequence) {
+            this.product = product;
+            this.discount = discount;
+            this.store = store;
+            this.percentage = percentage;
+            this.saving = saving;
+            this.sequence = sequence;
+        }
+    }
+}
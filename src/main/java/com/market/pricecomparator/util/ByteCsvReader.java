@@ -0,0 +1,228 @@
+package com.market.pricecomparator.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a delimited file through a buffered FileChannel and exposes each row as byte ranges.
+ * Rows are split on the delimiter byte without creating a String per line or per field; numbers and dates
+ * are parsed straight from the bytes and text fields go through a {@link StringDictionary}.
+ * Not thread safe, one reader per file.
+ */
+final class ByteCsvReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FAST_DIGITS = 15; // keeps the mantissa exact in a double
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    interface RowHandler {
+        void onRow(ByteCsvReader row);
+    }
+
+    private final Path path;
+    private final byte delimiter;
+    private final StringDictionary dictionary;
+    private final Map<Integer, LocalDate> dates = new HashMap<>();
+    private int lastDateKey = -1;
+    private LocalDate lastDate;
+
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+    private long lineNumber;
+
+    ByteCsvReader(Path path, byte delimiter, StringDictionary dictionary) {
+        this.path = path;
+        this.delimiter = delimiter;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Calls the handler once per non-blank line, after the header line.
+     */
+    void forEachRow(RowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int limit = 0;
+            int lineStart = 0;
+            int scan = 0;
+            boolean eof = false;
+
+            while (true) {
+                // Process every complete line currently in the buffer
+                for (; scan < limit; scan++) {
+                    if (buf[scan] == '\n') {
+                        handleLine(lineStart, scan, handler);
+                        lineStart = scan + 1;
+                    }
+                }
+                if (eof) {
+                    if (lineStart < limit) {
+                        handleLine(lineStart, limit, handler);
+                    }
+                    return;
+                }
+
+                // Keep the partial line, grow only when a single line does not fit
+                int remaining = limit - lineStart;
+                if (lineStart == 0 && limit == buf.length) {
+                    byte[] bigger = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, bigger, 0, limit);
+                    buf = bigger;
+                } else if (lineStart > 0) {
+                    System.arraycopy(buf, lineStart, buf, 0, remaining);
+                }
+                lineStart = 0;
+                limit = remaining;
+                scan = remaining;
+
+                int read = channel.read(ByteBuffer.wrap(buf, limit, buf.length - limit));
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                }
+            }
+        }
+    }
+
+    private void handleLine(int start, int end, RowHandler handler) {
+        lineNumber++;
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+        if (lineNumber == 1 || end == start) {
+            return; // header or blank line
+        }
+
+        fieldCount = 0;
+        int fieldBegin = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buf[i] == delimiter) {
+                if (fieldCount == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                }
+                fieldStart[fieldCount] = fieldBegin;
+                fieldEnd[fieldCount] = i;
+                fieldCount++;
+                fieldBegin = i + 1;
+            }
+        }
+        handler.onRow(this);
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    String string(int field) {
+        return dictionary.lookup(buf, fieldStart[field], fieldEnd[field]);
+    }
+
+    /**
+     * Parses a plain decimal ("12", "0.4", "-3.50") without going through a String.
+     * The mantissa and power of ten are both exact doubles, so the division is correctly rounded
+     * and gives the same value as Double.parseDouble; anything else falls back to it.
+     */
+    double decimal(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        int i = start;
+        boolean negative = i < end && buf[i] == '-';
+        if (negative) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_FAST_DIGITS) return slowDecimal(start, end);
+                mantissa = mantissa * 10 + (b - '0');
+                if (dot) scale++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return slowDecimal(start, end);
+            }
+        }
+        if (digits == 0) return slowDecimal(start, end);
+
+        double value = scale == 0 ? mantissa : mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    int integer(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        int i = start;
+        boolean negative = i < end && buf[i] == '-';
+        if (negative) i++;
+        if (i == end || end - i > 9) return Integer.parseInt(text(start, end));
+
+        int value = 0;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') return Integer.parseInt(text(start, end));
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an ISO yyyy-MM-dd date; each distinct date of a file is created once.
+     */
+    LocalDate date(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (end - start != 10 || buf[start + 4] != '-' || buf[start + 7] != '-') {
+            return LocalDate.parse(text(start, end));
+        }
+
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return LocalDate.parse(text(start, end));
+        }
+        int key = year * 10000 + month * 100 + day;
+        if (key != lastDateKey) {
+            lastDate = dates.computeIfAbsent(key, k -> LocalDate.of(year, month, day));
+            lastDateKey = key;
+        }
+        return lastDate;
+    }
+
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private double slowDecimal(int start, int end) {
+        return Double.parseDouble(text(start, end));
+    }
+
+    private String text(int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,482 @@
+package com.market.pricecomparator.util;
+
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of the parsed feed files of the data directory, written after a CSV ingestion and memory-mapped
+ * on the next start instead of parsing the CSV files again.
+ * <p>
+ * Layout: a fixed header (magic, format version, body length, CRC32 of the body), then the body: the manifest of
+ * the feed files it was built from (name, size, modification time), a table of every distinct string, a table of
+ * contents and one section per feed file. Rows refer to strings by index, so each value is stored once, and have a
+ * fixed size, so the table of contents is known before any row is encoded and the file is written in one streaming
+ * pass. Every section can be decoded independently, from any thread, straight from the mapped file; sections are
+ * mapped in windows of at most {@link #MAX_WINDOW_BYTES}, so the file itself may exceed 2 GB.
+ * A file with another format version, a bad checksum or a manifest that no longer matches the directory is ignored.
+ */
+public final class CatalogBinaryFile {
+    private static final Logger logger = Logger.getLogger(CatalogBinaryFile.class.getName());
+    private static final int MAGIC = 0x50435343; // "PCSC"
+    public static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+    // 7 string ids, quantity, price and date
+    private static final int PRODUCT_ROW_BYTES = 7 * 4 + 2 * 8 + 4;
+    // A product row, from and to dates, percentage
+    private static final int DISCOUNT_ROW_BYTES = PRODUCT_ROW_BYTES + 3 * 4;
+    // Encoded rows are written through a buffer of this size
+    static final int WRITE_BUFFER_BYTES = 1 << 16;
+    // Largest mapping, and largest span of sections mapped together
+    private static final long MAX_WINDOW_BYTES = Integer.MAX_VALUE;
+    private static final int NULL_STRING = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private final String[] strings;
+    private final Map<String, Section> sections;
+
+    private CatalogBinaryFile(String[] strings, Map<String, Section> sections) {
+        this.strings = strings;
+        this.sections = sections;
+    }
+
+    /**
+     * @return one line per feed file with its size and modification time, or null if the directory cannot be read
+     */
+    public static String manifest(Path dataDir, List<FeedFileName> feeds) {
+        StringBuilder manifest = new StringBuilder();
+        try {
+            for (FeedFileName feed : feeds) {
+                Path file = dataDir.resolve(feed.toString());
+                manifest.append(feed).append(' ').append(Files.size(file)).append(' ')
+                        .append(Files.getLastModifiedTime(file).toMillis()).append('\n');
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error at reading feed file attributes: ", e);
+            return null;
+        }
+        return manifest.toString();
+    }
+
+    /**
+     * Maps the file and checks it was written from exactly the given manifest.
+     *
+     * @return the mapped catalog, or null if the file is missing, stale or corrupt
+     */
+    public static CatalogBinaryFile open(Path path, String manifest) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // until the header is read or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                logger.warning("Ignoring catalog cache " + path + ": not a catalog cache file");
+                return null;
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                logger.info(String.format("Ignoring catalog cache %s: format version %d, expected %d", path, version, FORMAT_VERSION));
+                return null;
+            }
+            long bodyLength = header.getLong();
+            long checksum = header.getLong();
+            if (bodyLength != channel.size() - HEADER_BYTES) {
+                logger.warning("Ignoring catalog cache " + path + ": truncated");
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            for (long position = HEADER_BYTES; position < channel.size(); position += MAX_WINDOW_BYTES) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_WINDOW_BYTES, channel.size() - position)));
+            }
+            if (crc.getValue() != checksum) {
+                logger.warning("Ignoring catalog cache " + path + ": checksum mismatch");
+                return null;
+            }
+
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, Math.min(MAX_WINDOW_BYTES, bodyLength));
+            if (!readString(in).equals(manifest)) {
+                logger.info("Ignoring catalog cache " + path + ": feed files changed since it was written");
+                return null;
+            }
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            int sectionCount = in.getInt();
+            long sectionsStart = HEADER_BYTES + in.position() + (long) sectionCount * SectionEntry.BYTES;
+            List<SectionEntry> entries = new ArrayList<>(sectionCount);
+            for (int i = 0; i < sectionCount; i++) {
+                entries.add(new SectionEntry(strings[in.getInt()], in.getLong(), in.getLong(), in.getInt()));
+            }
+            return new CatalogBinaryFile(strings, mapSections(channel, sectionsStart, entries));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Ignoring unreadable catalog cache " + path + ": ", e);
+            return null;
+        }
+    }
+
+    /**
+     * Maps consecutive sections together, starting a new window where the next section would not fit in the current one.
+     */
+    private static Map<String, Section> mapSections(FileChannel channel, long sectionsStart, List<SectionEntry> entries)
+            throws IOException {
+        Map<String, Section> sections = new LinkedHashMap<>();
+        int first = 0;
+        while (first < entries.size()) {
+            long windowStart = entries.get(first).offset;
+            int last = first;
+            while (last + 1 < entries.size() && entries.get(last + 1).end() - windowStart <= MAX_WINDOW_BYTES) {
+                last++;
+            }
+            long windowLength = entries.get(last).end() - windowStart;
+            if (windowLength > MAX_WINDOW_BYTES) {
+                throw new IOException("section " + entries.get(first).fileName + " exceeds " + MAX_WINDOW_BYTES + " bytes");
+            }
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, sectionsStart + windowStart, windowLength);
+            for (int i = first; i <= last; i++) {
+                SectionEntry entry = entries.get(i);
+                sections.put(entry.fileName, new Section(window, (int) (entry.offset - windowStart), (int) entry.length, entry.rows));
+            }
+            first = last + 1;
+        }
+        return sections;
+    }
+
+    /**
+     * Writes the parsed feed files, replacing the previous file atomically.
+     *
+     * @param products  price rows by feed file name
+     * @param discounts discount rows by feed file name
+     */
+    public static void write(Path path, String manifest, Map<String, List<Product>> products,
+                             Map<String, List<Discount>> discounts) throws IOException {
+        // Rows have a fixed size: one pass assigns the string ids and lays the sections out, the next encodes them
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<SectionEntry> entries = new ArrayList<>();
+        long offset = 0;
+        for (Map.Entry<String, List<Product>> file : products.entrySet()) {
+            for (Product product : file.getValue()) {
+                addStrings(product, stringIds, strings);
+            }
+            SectionEntry entry = new SectionEntry(file.getKey(), offset, (long) PRODUCT_ROW_BYTES * file.getValue().size(),
+                    file.getValue().size());
+            entries.add(entry);
+            offset = entry.end();
+        }
+        for (Map.Entry<String, List<Discount>> file : discounts.entrySet()) {
+            for (Discount discount : file.getValue()) {
+                addStrings(discount, stringIds, strings);
+            }
+            SectionEntry entry = new SectionEntry(file.getKey(), offset, (long) DISCOUNT_ROW_BYTES * file.getValue().size(),
+                    file.getValue().size());
+            entries.add(entry);
+            offset = entry.end();
+        }
+        for (SectionEntry entry : entries) {
+            stringId(entry.fileName, stringIds, strings);
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ChannelOutput out = new ChannelOutput(channel, HEADER_BYTES);
+            writeString(out, manifest);
+            out.putInt(strings.size());
+            for (String value : strings) {
+                writeString(out, value);
+            }
+            out.putInt(entries.size());
+            for (SectionEntry entry : entries) {
+                out.putInt(stringIds.get(entry.fileName));
+                out.putLong(entry.offset);
+                out.putLong(entry.length);
+                out.putInt(entry.rows);
+            }
+            // Section offsets are relative to the end of the table of contents
+            long sectionsStart = out.size();
+            for (List<Product> rows : products.values()) {
+                for (Product product : rows) {
+                    writeProduct(out, product, stringIds);
+                }
+            }
+            for (List<Discount> rows : discounts.values()) {
+                for (Discount discount : rows) {
+                    writeProduct(out, discount, stringIds);
+                    writeDate(out, discount.getFromDate());
+                    writeDate(out, discount.getToDate());
+                    out.putInt(discount.getPercentage());
+                }
+            }
+            if (out.size() - sectionsStart != offset) {
+                throw new IllegalStateException("encoded " + (out.size() - sectionsStart) + " section bytes, expected " + offset);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(FORMAT_VERSION).putLong(out.written).putLong(out.crc.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return names of the feed files stored in the image
+     */
+    public List<String> getFileNames() {
+        return List.copyOf(sections.keySet());
+    }
+
+    public int getRowCount(String fileName) {
+        Section section = sections.get(fileName);
+        return section != null ? section.rows : 0;
+    }
+
+    /**
+     * @return the price rows of a feed file, an empty list if the file is not in the image
+     */
+    public List<Product> products(String fileName) {
+        Section section = sections.get(fileName);
+        if (section == null) {
+            return new ArrayList<>();
+        }
+        ByteBuffer in = section(section);
+        List<Product> products = new ArrayList<>(section.rows);
+        for (int i = 0; i < section.rows; i++) {
+            Product product = new Product();
+            readProduct(in, product);
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * @return the discount rows of a feed file, an empty list if the file is not in the image
+     */
+    public List<Discount> discounts(String fileName) {
+        Section section = sections.get(fileName);
+        if (section == null) {
+            return new ArrayList<>();
+        }
+        ByteBuffer in = section(section);
+        List<Discount> discounts = new ArrayList<>(section.rows);
+        for (int i = 0; i < section.rows; i++) {
+            Discount discount = new Discount();
+            readProduct(in, discount);
+            discount.setFromDate(readDate(in));
+            discount.setToDate(readDate(in));
+            discount.setPercentage(in.getInt());
+            discounts.add(discount);
+        }
+        return discounts;
+    }
+
+    private ByteBuffer section(Section section) {
+        // Absolute slice of the shared mapping, so concurrent decoders never share a position
+        return section.window.slice(section.offset, section.length);
+    }
+
+    private void readProduct(ByteBuffer in, Product product) {
+        product.setProductId(string(in.getInt()));
+        product.setProductName(string(in.getInt()));
+        product.setCategory(string(in.getInt()));
+        product.setBrand(string(in.getInt()));
+        product.setQuantity(in.getDouble());
+        product.setUnit(string(in.getInt()));
+        product.setPrice(in.getDouble());
+        product.setCurrency(string(in.getInt()));
+        product.setStore(string(in.getInt()));
+        product.setDate(readDate(in));
+    }
+
+    private String string(int id) {
+        return id == NULL_STRING ? null : strings[id];
+    }
+
+    private static void addStrings(Product product, Map<String, Integer> ids, List<String> strings) {
+        stringId(product.getProductId(), ids, strings);
+        stringId(product.getProductName(), ids, strings);
+        stringId(product.getCategory(), ids, strings);
+        stringId(product.getBrand(), ids, strings);
+        stringId(product.getUnit(), ids, strings);
+        stringId(product.getCurrency(), ids, strings);
+        stringId(product.getStore(), ids, strings);
+    }
+
+    private static void writeProduct(ChannelOutput out, Product product, Map<String, Integer> ids) throws IOException {
+        out.putInt(idOf(product.getProductId(), ids));
+        out.putInt(idOf(product.getProductName(), ids));
+        out.putInt(idOf(product.getCategory(), ids));
+        out.putInt(idOf(product.getBrand(), ids));
+        out.putDouble(product.getQuantity());
+        out.putInt(idOf(product.getUnit(), ids));
+        out.putDouble(product.getPrice());
+        out.putInt(idOf(product.getCurrency(), ids));
+        out.putInt(idOf(product.getStore(), ids));
+        writeDate(out, product.getDate());
+    }
+
+    private static int idOf(String value, Map<String, Integer> ids) {
+        return value == null ? NULL_STRING : ids.get(value);
+    }
+
+    private static int stringId(String value, Map<String, Integer> ids, List<String> strings) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        return ids.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    private static void writeDate(ChannelOutput out, LocalDate date) throws IOException {
+        out.putInt(date != null ? (int) date.toEpochDay() : NULL_DATE);
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        int epochDay = in.getInt();
+        return epochDay != NULL_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    private static void writeString(ChannelOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Section {
+        // Mapping shared with the neighbouring sections
+        private final ByteBuffer window;
+        private final int offset;
+        private final int length;
+        private final int rows;
+
+        private Section(ByteBuffer window, int offset, int length, int rows) {
+            this.window = window;
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * A table of contents entry: where a feed file's rows are, relative to the first section.
+     */
+    private static final class SectionEntry {
+        // File name id, offset, length, rows
+        private static final int BYTES = 4 + 8 + 8 + 4;
+
+        private final String fileName;
+        private final long offset;
+        private final long length;
+        private final int rows;
+
+        private SectionEntry(String fileName, long offset, long length, int rows) {
+            this.fileName = fileName;
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+        }
+
+        long end() {
+            return offset + length;
+        }
+    }
+
+    /**
+     * Encodes big-endian values into a fixed buffer that is written to the channel, and checksummed, whenever it fills up.
+     */
+    private static final class ChannelOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+        private long position;
+        // Bytes written after the start position
+        private long written;
+
+        ChannelOutput(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES).putDouble(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int from = 0;
+            while (from < bytes.length) {
+                int length = Math.min(bytes.length - from, ensure(1).remaining());
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+        }
+
+        /**
+         * @return bytes put so far, written or not
+         */
+        long size() {
+            return written + buffer.position();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            written += buffer.limit();
+            buffer.clear();
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.market.pricecomparator.util;
 
 import com.market.pricecomparator.model.Discount;
 import com.market.pricecomparator.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -11,6 +13,8 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -21,10 +25,54 @@ import java.util.logging.Logger;
 public class CsvLoader {
     private static final Logger logger = Logger.getLogger(CsvLoader.class.getName());
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern STORE_PATTERN = Pattern.compile("^(.*?)_");
+    private static final byte DELIMITER = ';';
+    private static final int PRODUCT_FIELDS = 8;
+    private static final int DISCOUNT_FIELDS = 9;
+
+    /**
+     * LINES: Files.lines + String.split per row (original loader).
+     * STREAMING: buffered channel reader that tokenizes bytes, parses numbers without Strings
+     * and shares repeated text values between the rows of a file, and low-cardinality ones between files.
+     */
+    public enum ParserMode {
+        LINES,
+        STREAMING
+    }
+
+    private final ParserMode mode;
+
+    // Canonical instances of the low-cardinality values loaded so far (stores, categories, brands, units, currencies);
+    // ids and names are only shared within a file, as every feed brings new ones
+    private final ConcurrentMap<String, String> internedStrings = new ConcurrentHashMap<>();
+
+    public CsvLoader() {
+        this(ParserMode.STREAMING);
+    }
+
+    @Autowired
+    public CsvLoader(@Value("${pricecomparator.csv.parser-mode:STREAMING}") ParserMode mode) {
+        this.mode = mode;
+    }
+
+    public ParserMode getMode() {
+        return mode;
+    }
 
     public List<Product> loadProducts(String filePath) {
+        return mode == ParserMode.STREAMING ? streamProducts(filePath) : readProductLines(filePath);
+    }
+
+    public List<Discount> loadDiscounts(String filePath) {
+        return mode == ParserMode.STREAMING ? streamDiscounts(filePath) : readDiscountLines(filePath);
+    }
+
+    private List<Product> readProductLines(String filePath) {
         List<Product> products = new ArrayList<>();
         try (Stream<String> lines = Files.lines(Paths.get(filePath)).skip(1)) {
+            String store = extractStoreNameFromFilename(filePath);
+            LocalDate date = extractDateFromFilename(filePath);
             lines.forEach(line -> {
                 String[] values = line.split(";");
                 Product p = new Product();
@@ -36,8 +84,8 @@ public class CsvLoader {
                 p.setUnit(values[5]);
                 p.setPrice(Double.parseDouble(values[6]));
                 p.setCurrency(values[7]);
-                p.setStore(extractStoreNameFromFilename(filePath));
-                p.setDate(extractDateFromFilename(filePath));
+                p.setStore(store);
+                p.setDate(date);
                 products.add(p);
             });
         } catch (IOException e) {
@@ -46,9 +94,10 @@ public class CsvLoader {
         return products;
     }
 
-    public List<Discount> loadDiscounts(String filePath) {
+    private List<Discount> readDiscountLines(String filePath) {
         List<Discount> discounts = new ArrayList<>();
         try (Stream<String> lines = Files.lines(Paths.get(filePath)).skip(1)) {
+            String store = extractStoreNameFromFilename(filePath);
             lines.forEach(line -> {
                 String[] values = line.split(";");
                 Discount d = new Discount();
@@ -61,7 +110,7 @@ public class CsvLoader {
                 d.setFromDate(LocalDate.parse(values[6]));
                 d.setToDate(LocalDate.parse(values[7]));
                 d.setPercentage(Integer.parseInt(values[8]));
-                d.setStore(extractStoreNameFromFilename(filePath));
+                d.setStore(store);
                 discounts.add(d);
             });
         } catch (IOException e) {
@@ -70,9 +119,75 @@ public class CsvLoader {
         return discounts;
     }
 
+    private List<Product> streamProducts(String filePath) {
+        List<Product> products = new ArrayList<>();
+        try {
+            ByteCsvReader reader = new ByteCsvReader(Paths.get(filePath), DELIMITER, new StringDictionary());
+            String store = intern(extractStoreNameFromFilename(filePath));
+            LocalDate date = extractDateFromFilename(filePath);
+            reader.forEachRow(row -> {
+                if (!hasFields(row, PRODUCT_FIELDS, filePath)) return;
+                try {
+                    products.add(new Product(
+                            row.string(0), row.string(1), intern(row.string(2)), intern(row.string(3)), row.decimal(4),
+                            intern(row.string(5)), row.decimal(6), intern(row.string(7)), store, date));
+                } catch (NumberFormatException e) {
+                    logMalformedRow(filePath, row, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error at reading CSV Products: ", e);
+        }
+        return products;
+    }
+
+    private List<Discount> streamDiscounts(String filePath) {
+        List<Discount> discounts = new ArrayList<>();
+        try {
+            ByteCsvReader reader = new ByteCsvReader(Paths.get(filePath), DELIMITER, new StringDictionary());
+            String store = intern(extractStoreNameFromFilename(filePath));
+            reader.forEachRow(row -> {
+                if (!hasFields(row, DISCOUNT_FIELDS, filePath)) return;
+                try {
+                    Discount d = new Discount(row.date(6), row.date(7), row.integer(8));
+                    d.setProductId(row.string(0));
+                    d.setProductName(row.string(1));
+                    d.setBrand(intern(row.string(2)));
+                    d.setQuantity(row.decimal(3));
+                    d.setUnit(intern(row.string(4)));
+                    d.setCurrency(intern(row.string(5)));
+                    d.setStore(store);
+                    discounts.add(d);
+                } catch (RuntimeException e) {
+                    logMalformedRow(filePath, row, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error at reading CSV Discounts: ", e);
+        }
+        return discounts;
+    }
+
+    private boolean hasFields(ByteCsvReader row, int expected, String filePath) {
+        if (row.fieldCount() >= expected) {
+            return true;
+        }
+        logger.warning(String.format("Skipping line %d of %s: expected %d fields, found %d",
+                row.lineNumber(), filePath, expected, row.fieldCount()));
+        return false;
+    }
+
+    private void logMalformedRow(String filePath, ByteCsvReader row, RuntimeException e) {
+        logger.warning(String.format("Skipping line %d of %s: %s", row.lineNumber(), filePath, e.getMessage()));
+    }
+
+    private String intern(String value) {
+        String shared = internedStrings.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
     private LocalDate extractDateFromFilename(String filePath) {
-        Pattern datePattern = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
-        Matcher matcher = datePattern.matcher(filePath);
+        Matcher matcher = DATE_PATTERN.matcher(filePath);
         if (matcher.find()) {
             return LocalDate.parse(matcher.group(), DATE_FORMAT);
         }
@@ -81,8 +196,7 @@ public class CsvLoader {
 
     private String extractStoreNameFromFilename(String filePath) {
         String fileName = Paths.get(filePath).getFileName().toString();
-        Pattern storePattern = Pattern.compile("^(.*?)_");
-        Matcher matcher = storePattern.matcher(fileName);
+        Matcher matcher = STORE_PATTERN.matcher(fileName);
         if (matcher.find()) {
             return matcher.group(1);
         }
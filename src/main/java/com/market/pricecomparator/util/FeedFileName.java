@@ -0,0 +1,88 @@
+package com.market.pricecomparator.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Name of a store feed in the data directory, following the convention CsvLoader reads store and date from:
+ * {store}_{yyyy-MM-dd}.csv for prices and {store}_discounts_{yyyy-MM-dd}.csv for discounts.
+ * The store is everything before the first underscore, e.g. "lidl" or "lidl-bucuresti-042".
+ */
+public final class FeedFileName {
+    private static final Pattern FEED_PATTERN =
+            Pattern.compile("^([a-z0-9][a-z0-9.-]*)_(discounts_)?(\\d{4}-\\d{2}-\\d{2})\\.csv$");
+
+    private final String store;
+    private final LocalDate date;
+    private final boolean discounts;
+
+    private FeedFileName(String store, LocalDate date, boolean discounts) {
+        this.store = store;
+        this.date = date;
+        this.discounts = discounts;
+    }
+
+    /**
+     * @return the parsed name, or null if the file is not a store feed
+     */
+    public static FeedFileName parse(String fileName) {
+        Matcher matcher = FEED_PATTERN.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            return new FeedFileName(matcher.group(1), LocalDate.parse(matcher.group(3)), matcher.group(2) != null);
+        } catch (RuntimeException e) {
+            // e.g. 2025-02-30
+            return null;
+        }
+    }
+
+    /**
+     * @return feeds of a directory ordered by store, then date, prices before discounts
+     */
+    public static List<FeedFileName> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> parse(path.getFileName().toString()))
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(FeedFileName::getStore)
+                            .thenComparing(FeedFileName::getDate)
+                            .thenComparing(FeedFileName::isDiscounts))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static String productFileName(String store, LocalDate date) {
+        return store + "_" + date + ".csv";
+    }
+
+    public static String discountFileName(String store, LocalDate date) {
+        return store + "_discounts_" + date + ".csv";
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public boolean isDiscounts() {
+        return discounts;
+    }
+
+    @Override
+    public String toString() {
+        return discounts ? discountFileName(store, date) : productFileName(store, date);
+    }
+}
@@ -0,0 +1,81 @@
+package com.market.pricecomparator.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open-addressing table that turns a byte range into a String without allocating when the value was seen before.
+ * One dictionary is used per parsed file (not thread safe) and dropped with it, so repeated values of a file are one
+ * instance without keeping the ids and names of past feeds reachable.
+ */
+final class StringDictionary {
+    private static final int MAX_LOAD_PERCENT = 60;
+
+    private byte[][] keys;
+    private String[] values;
+    private int[] hashes;
+    private int size;
+
+    StringDictionary() {
+        this.keys = new byte[256][];
+        this.values = new String[256];
+        this.hashes = new int[256];
+    }
+
+    String lookup(byte[] buf, int start, int end) {
+        int hash = hash(buf, start, end);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                return insert(slot, hash, buf, start, end);
+            }
+            if (hashes[slot] == hash && Arrays.equals(key, 0, key.length, buf, start, end)) {
+                return values[slot];
+            }
+        }
+    }
+
+    private String insert(int slot, int hash, byte[] buf, int start, int end) {
+        String value = new String(buf, start, end - start, StandardCharsets.UTF_8);
+
+        keys[slot] = Arrays.copyOfRange(buf, start, end);
+        values[slot] = value;
+        hashes[slot] = hash;
+        if (++size * 100 > keys.length * MAX_LOAD_PERCENT) {
+            grow();
+        }
+        return value;
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static int hash(byte[] buf, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        // Spread the bits, small tables only look at the low ones
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,77 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.BasketBatchResultDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.service.BasketBatchService;
+import com.market.pricecomparator.service.BasketOptimizerService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch optimization of many saved shopping lists against one snapshot, sequentially and on the worker pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BasketBatchBenchmark extends CatalogBenchmarkState {
+    @Param({"1000"})
+    public int baskets;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private BasketOptimizerService basketOptimizerService;
+    private BasketBatchService basketBatchService;
+    private List<List<ShoppingItemDTO>> shoppingLists;
+    private CatalogSnapshot snapshot;
+    private DiscountIndex discountIndex;
+
+    @Override
+    protected void setupServices() {
+        basketOptimizerService = new BasketOptimizerService();
+        basketBatchService = new BasketBatchService(basketOptimizerService, parallelism);
+        snapshot = productService.getSnapshot(queryDate);
+        discountIndex = DiscountIndex.of(discountService.loadDiscountsForCurrentAndPreviousWeek(
+                catalog.getStores(), queryDate, DATA_DIR));
+
+        Random random = new Random(1);
+        shoppingLists = new ArrayList<>(baskets);
+        for (int i = 0; i < baskets; i++) {
+            shoppingLists.add(catalog.shoppingList(5 + random.nextInt(40), random));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        basketBatchService.shutdown();
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (List<ShoppingItemDTO> shoppingList : shoppingLists) {
+            blackhole.consume(basketOptimizerService.optimizeBasketDetailed(
+                    shoppingList, snapshot.getProductIndex(), discountIndex, queryDate));
+        }
+    }
+
+    @Benchmark
+    public BasketBatchResultDTO batch() {
+        return basketBatchService.optimizeBatch(shoppingLists, snapshot.getProductIndex(), discountIndex, queryDate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BasketBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.QuantityShoppingItemDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.dto.UnitBasketResultDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import com.market.pricecomparator.service.BasketCacheService;
+import com.market.pricecomparator.service.BasketOptimizerService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BasketOptimizerBenchmark extends CatalogBenchmarkState {
+    @Param({"10", "100"})
+    public int basketSize;
+
+    private BasketOptimizerService basketOptimizerService;
+    private BasketOptimizerService unmemoizedOptimizerService;
+    private BasketCacheService basketCacheService;
+    private List<ShoppingItemDTO> shoppingList;
+    private List<QuantityShoppingItemDTO> quantityList;
+    private CatalogSnapshot snapshot;
+    private List<Discount> discounts;
+    private DiscountIndex discountIndex;
+
+    @Override
+    protected void setupServices() {
+        basketOptimizerService = new BasketOptimizerService();
+        unmemoizedOptimizerService = new BasketOptimizerService(0);
+        basketCacheService = new BasketCacheService(basketOptimizerService, productService, 10_000, 64);
+        shoppingList = catalog.shoppingList(basketSize, new Random(1));
+        snapshot = productService.getSnapshot(queryDate);
+        quantityList = new ArrayList<>();
+        for (int i = 0; i < shoppingList.size(); i++) {
+            ShoppingItemDTO item = shoppingList.get(i);
+            // 1 to 7.5 in the product's own unit (package sizes are 1-5 of it), so most items need a mix of sizes
+            String unit = snapshot.getProductIndex().findByName(ProductIndex.normalize(item.getProductName())).stream()
+                    .findFirst().map(Product::getUnit).orElse(null);
+            quantityList.add(new QuantityShoppingItemDTO(item.getProductName(), item.getBrand(), 1 + (i % 14) * 0.5, unit));
+        }
+        discounts = discountService.loadDiscountsForCurrentAndPreviousWeek(catalog.getStores(), queryDate, DATA_DIR);
+        discountIndex = DiscountIndex.of(discounts);
+    }
+
+    /**
+     * Request path of BasketController: snapshot product index and a prebuilt discount index.
+     * After the first call every item's cheapest offer comes from the per-item memo.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO optimizeWithIndexes() {
+        return basketOptimizerService.optimizeBasketDetailed(shoppingList, snapshot.getProductIndex(), discountIndex, queryDate);
+    }
+
+    /**
+     * Same as optimizeWithIndexes with the per-item memo disabled: every item scans its candidates across stores.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO optimizeUnmemoized() {
+        return unmemoizedOptimizerService.optimizeBasketDetailed(shoppingList, snapshot.getProductIndex(), discountIndex, queryDate);
+    }
+
+    /**
+     * Same request answered from the result cache after the first call: key building plus one lookup.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO optimizeCached() {
+        return basketCacheService.optimize(shoppingList, snapshot, discountIndex, queryDate);
+    }
+
+    /**
+     * Plain product map and discount list, indexes are built inside the call.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO optimizeFromLists() {
+        return basketOptimizerService.optimizeBasketDetailed(shoppingList, snapshot.getProductsByStore(), discounts, queryDate);
+    }
+
+    /**
+     * Quantity based optimization: cheapest package size combination per item from the snapshot's unit price index.
+     */
+    @Benchmark
+    public UnitBasketResultDTO optimizeByUnitPrice() {
+        return basketOptimizerService.optimizeBasketByUnitPrice(quantityList, snapshot.getUnitPriceIndex(), discountIndex, queryDate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BasketOptimizerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,62 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.service.DiscountService;
+import com.market.pricecomparator.service.ProductService;
+import com.market.pricecomparator.util.CsvLoader;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+
+/**
+ * Shared benchmark state: a synthetic catalog wired into the real services, with every snapshot preloaded
+ * so benchmarks measure query cost rather than the first load.
+ */
+@State(Scope.Benchmark)
+public abstract class CatalogBenchmarkState {
+    static final LocalDate START_DATE = LocalDate.of(2025, 5, 1);
+    static final String DATA_DIR = "src/main/resources/data";
+
+    @Param({"3", "20"})
+    public int stores;
+
+    @Param({"1000", "10000"})
+    public int skusPerStore;
+
+    @Param({"0.3"})
+    public double discountDensity;
+
+    @Param({"14"})
+    public int days;
+
+    // Application default; -p storage=OBJECTS measures the object model
+    @Param({"COLUMNAR"})
+    public CatalogSnapshot.Storage storage;
+
+    protected SyntheticCatalog catalog;
+    protected ProductService productService;
+    protected DiscountService discountService;
+
+    // Second discount file day, so both the current and the previous week have discounts
+    protected LocalDate queryDate;
+
+    @Setup(Level.Trial)
+    public void setupCatalog() {
+        catalog = new SyntheticCatalog(stores, skusPerStore, discountDensity, START_DATE, days, 42);
+        CsvLoader csvLoader = catalog.csvLoader();
+        productService = new ProductService(csvLoader, catalog.getStores(), ProductService.DEFAULT_DATA_DIR, 0, storage);
+        discountService = new DiscountService(csvLoader, productService);
+        queryDate = START_DATE.plusDays(Math.min(7, days - 1));
+
+        for (LocalDate date = catalog.getStartDate(); !date.isAfter(catalog.getEndDate()); date = date.plusDays(1)) {
+            productService.getSnapshot(date);
+        }
+        setupServices();
+    }
+
+    protected abstract void setupServices();
+}
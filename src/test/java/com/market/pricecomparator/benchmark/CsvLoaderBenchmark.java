@@ -0,0 +1,85 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.util.CsvLoader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original Files.lines + split loader with the streaming byte parser on synthetic feeds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CsvLoaderBenchmark {
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 1);
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private Path dir;
+    private String productFile;
+    private String discountFile;
+    private CsvLoader linesLoader;
+    private CsvLoader streamingLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("csv-bench");
+
+        // Every SKU discounted, so both files have the same number of rows
+        SyntheticCatalog catalog = new SyntheticCatalog(1, rows, 1.0, DATE, 1, 42);
+        String store = catalog.getStores().get(0);
+        productFile = dir.resolve(store + "_" + DATE + ".csv").toString();
+        discountFile = dir.resolve(store + "_discounts_" + DATE + ".csv").toString();
+        catalog.writeProductCsv(Path.of(productFile), store, DATE);
+        catalog.writeDiscountCsv(Path.of(discountFile), store, DATE);
+
+        linesLoader = new CsvLoader(CsvLoader.ParserMode.LINES);
+        streamingLoader = new CsvLoader(CsvLoader.ParserMode.STREAMING);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(productFile));
+        Files.deleteIfExists(Path.of(discountFile));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public List<Product> productsLines() {
+        return linesLoader.loadProducts(productFile);
+    }
+
+    @Benchmark
+    public List<Product> productsStreaming() {
+        return streamingLoader.loadProducts(productFile);
+    }
+
+    @Benchmark
+    public List<Discount> discountsLines() {
+        return linesLoader.loadDiscounts(discountFile);
+    }
+
+    @Benchmark
+    public List<Discount> discountsStreaming() {
+        return streamingLoader.loadDiscounts(discountFile);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvLoaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,61 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.BestDiscountsRequestDTO;
+import com.market.pricecomparator.dto.ProductDiscountDTO;
+import com.market.pricecomparator.model.TopNOption;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DiscountServiceBenchmark extends CatalogBenchmarkState {
+    private BestDiscountsRequestDTO topFilter;
+    private BestDiscountsRequestDTO productFilter;
+    private BestDiscountsRequestDTO newFilter;
+
+    @Override
+    protected void setupServices() {
+        topFilter = new BestDiscountsRequestDTO();
+        topFilter.setTopN(TopNOption.TWENTY);
+
+        productFilter = new BestDiscountsRequestDTO();
+        productFilter.setProductName(catalog.productName(0));
+        productFilter.setTopN(TopNOption.TWENTY);
+
+        newFilter = new BestDiscountsRequestDTO();
+        newFilter.setTopN(TopNOption.TWENTY);
+        newFilter.setNewWithinDays(7);
+    }
+
+    @Benchmark
+    public List<ProductDiscountDTO> topAcrossStores() {
+        return discountService.getTopDiscountsAcrossStores(queryDate, topFilter);
+    }
+
+    @Benchmark
+    public List<ProductDiscountDTO> topForStore() {
+        return discountService.getTopDiscountsForStore(queryDate, catalog.getStores().get(0), topFilter);
+    }
+
+    @Benchmark
+    public List<ProductDiscountDTO> bestForProduct() {
+        return discountService.getBestDiscounts(queryDate, productFilter);
+    }
+
+    @Benchmark
+    public List<ProductDiscountDTO> newDiscounts() {
+        return discountService.getNewDiscounts(queryDate, newFilter);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DiscountServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
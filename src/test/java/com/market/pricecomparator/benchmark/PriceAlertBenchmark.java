@@ -0,0 +1,82 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.PriceAlertMatchDTO;
+import com.market.pricecomparator.dto.PriceAlertSubscriptionDTO;
+import com.market.pricecomparator.service.PriceAlertService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PriceAlertBenchmark extends CatalogBenchmarkState {
+    private static final int SUBSCRIPTIONS = 10_000;
+
+    private PriceAlertService priceAlertService;
+    private List<PriceAlertSubscriptionDTO> subscriptions;
+
+    @Override
+    protected void setupServices() {
+        priceAlertService = new PriceAlertService(productService, discountService);
+
+        // Subscriptions are checked against the latest snapshot, so publish it again once the service listens
+        productService.reloadSnapshot(catalog.getEndDate());
+        Random random = new Random(7);
+        subscriptions = new ArrayList<>(SUBSCRIPTIONS);
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            int sku = random.nextInt(skusPerStore);
+            subscriptions.add(priceAlertService.subscribe(new PriceAlertSubscriptionDTO(null, catalog.productName(sku),
+                    i % 2 == 0 ? catalog.brand(sku) : null, null, 1 + random.nextInt(100))));
+        }
+    }
+
+    @Benchmark
+    public List<PriceAlertMatchDTO> byName() {
+        return priceAlertService.checkPriceAgainstTarget(catalog.productName(0), Optional.empty(), Optional.empty(),
+                50.0, queryDate);
+    }
+
+    @Benchmark
+    public List<PriceAlertMatchDTO> byNameAndStore() {
+        return priceAlertService.checkPriceAgainstTarget(catalog.productName(0), Optional.empty(),
+                Optional.of(catalog.getStores().get(0)), 50.0, queryDate);
+    }
+
+    /**
+     * Pull model: every subscription re-checks the catalog.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int pollAllSubscriptions() {
+        int matches = 0;
+        for (PriceAlertSubscriptionDTO s : subscriptions) {
+            matches += priceAlertService.checkPriceAgainstTarget(s.getProductName(), Optional.ofNullable(s.getBrand()),
+                    Optional.empty(), s.getTargetPrice(), catalog.getEndDate()).size();
+        }
+        return matches;
+    }
+
+    /**
+     * Push model: republishing the latest snapshot runs every snapshot listener, including the alert evaluation
+     * that diffs effective prices and only looks up subscriptions for changed products.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object republishLatestSnapshot() {
+        return productService.reloadSnapshot(catalog.getEndDate());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PriceAlertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.PricePointDTO;
+import com.market.pricecomparator.model.PriceHistoryGranularity;
+import com.market.pricecomparator.service.PriceHistoryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PriceHistoryBenchmark extends CatalogBenchmarkState {
+    private PriceHistoryService priceHistoryService;
+
+    @Override
+    protected void setupServices() {
+        priceHistoryService = new PriceHistoryService(productService);
+    }
+
+    @Benchmark
+    public List<PricePointDTO> byProductName() {
+        return priceHistoryService.getPriceHistory(Optional.of(catalog.productName(0)), Optional.empty(),
+                Optional.empty(), Optional.empty(), catalog.getStartDate(), catalog.getEndDate());
+    }
+
+    @Benchmark
+    public List<PricePointDTO> byCategory() {
+        return priceHistoryService.getPriceHistory(Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.of(SyntheticCatalog.CATEGORIES[0]), catalog.getStartDate(), catalog.getEndDate());
+    }
+
+    @Benchmark
+    public List<PricePointDTO> byStoreAndBrand() {
+        return priceHistoryService.getPriceHistory(Optional.empty(), Optional.of(SyntheticCatalog.BRANDS[0]),
+                Optional.of(catalog.getStores().get(0)), Optional.empty(), catalog.getStartDate(), catalog.getEndDate());
+    }
+
+    @Benchmark
+    public List<PricePointDTO> byProductNameOverTwoYears() {
+        // Mostly days without data; only the published dates are visited
+        return priceHistoryService.getPriceHistory(Optional.of(catalog.productName(0)), Optional.empty(),
+                Optional.empty(), Optional.empty(), catalog.getStartDate().minusYears(1), catalog.getEndDate().plusYears(1));
+    }
+
+    @Benchmark
+    public List<PricePointDTO> byCategoryWeekly() {
+        return priceHistoryService.getPriceHistory(Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.of(SyntheticCatalog.CATEGORIES[0]), catalog.getStartDate(), catalog.getEndDate(),
+                PriceHistoryGranularity.WEEK);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PriceHistoryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.service.BasketOptimizerService;
+import com.market.pricecomparator.service.DiscountService;
+import com.market.pricecomparator.service.ProductService;
+import com.market.pricecomparator.util.CsvLoader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store-limited basket optimization on 500-item baskets. Unlike the other benchmarks the store count is the
+ * main parameter, so only the query date snapshot is loaded to keep 200 stores within the heap.
+ * With maxStores 2-3 the exact subset search runs for 10 and 50 stores and the greedy + local search heuristic for 200;
+ * with a visit cost and no limit only 10 stores are searched exactly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class StoreLimitedBasketBenchmark {
+    private static final LocalDate START_DATE = LocalDate.of(2025, 5, 1);
+    private static final String DATA_DIR = "src/main/resources/data";
+
+    @Param({"10", "50", "200"})
+    public int stores;
+
+    @Param({"4000"})
+    public int skusPerStore;
+
+    @Param({"500"})
+    public int basketSize;
+
+    @Param({"2", "3"})
+    public int maxStores;
+
+    private BasketOptimizerService basketOptimizerService;
+    private List<ShoppingItemDTO> shoppingList;
+    private CatalogSnapshot snapshot;
+    private DiscountIndex discountIndex;
+    private LocalDate queryDate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticCatalog catalog = new SyntheticCatalog(stores, skusPerStore, 0.3, START_DATE, 8, 42);
+        CsvLoader csvLoader = catalog.csvLoader();
+        ProductService productService = new ProductService(csvLoader, catalog.getStores());
+        DiscountService discountService = new DiscountService(csvLoader, productService);
+        queryDate = START_DATE.plusDays(7);
+
+        basketOptimizerService = new BasketOptimizerService();
+        shoppingList = catalog.shoppingList(basketSize, new Random(1));
+        snapshot = productService.getSnapshot(queryDate);
+        discountIndex = DiscountIndex.of(
+                discountService.loadDiscountsForCurrentAndPreviousWeek(catalog.getStores(), queryDate, DATA_DIR));
+    }
+
+    /**
+     * Baseline: cheapest product per item, no limit on stores.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO perItemCheapest() {
+        return basketOptimizerService.optimizeBasketDetailed(shoppingList, snapshot.getProductIndex(), discountIndex, queryDate);
+    }
+
+    @Benchmark
+    public BasketOptimizationResultDTO maxStoresLimit() {
+        return basketOptimizerService.optimizeBasketWithStoreLimit(
+                shoppingList, snapshot.getProductIndex(), discountIndex, queryDate, maxStores, 0);
+    }
+
+    /**
+     * No store limit but a visit cost, so the heuristic decides how many stores pay off.
+     */
+    @Benchmark
+    public BasketOptimizationResultDTO storeVisitCost() {
+        return basketOptimizerService.optimizeBasketWithStoreLimit(
+                shoppingList, snapshot.getProductIndex(), discountIndex, queryDate, Integer.MAX_VALUE, 15.0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StoreLimitedBasketBenchmark.class.getSimpleName()).build()).run();
+    }
+}
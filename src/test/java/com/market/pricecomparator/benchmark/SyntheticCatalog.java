@@ -0,0 +1,232 @@
+package com.market.pricecomparator.benchmark;
+
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.util.CsvLoader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic generator of production-sized catalogs for benchmarks.
+ * Every store sells the same SKU ids with store- and day-specific prices; a product name is shared by several
+ * SKUs (brands / package sizes), and discount files are published weekly starting on startDate.
+ * Data for a (store, date) pair is generated on first use, so only the dates a benchmark touches take heap.
+ */
+public class SyntheticCatalog {
+    static final String[] CATEGORIES = {"lactate", "legume și fructe", "panificație", "băuturi", "produse de menaj",
+            "carne", "gustări", "paste făinoase", "cafea", "ouă"};
+    static final String[] BRANDS = {"Zuzu", "Pilos", "Lidl", "K-Classic", "Ariel", "Barilla", "Dorna", "Napolact",
+            "Persil", "Davidoff", "Ferma Veche", "Generic"};
+    static final String[] UNITS = {"l", "kg", "g", "ml", "buc"};
+    private static final int SKUS_PER_NAME = 4;
+
+    private static final Pattern PRODUCT_FILE = Pattern.compile("^(.+)_(\\d{4}-\\d{2}-\\d{2})\\.csv$");
+    private static final Pattern DISCOUNT_FILE = Pattern.compile("^(.+)_discounts_(\\d{4}-\\d{2}-\\d{2})\\.csv$");
+
+    private final List<String> stores;
+    private final int skusPerStore;
+    private final double discountDensity;
+    private final LocalDate startDate;
+    private final int days;
+    private final long seed;
+
+    private final Map<String, List<Product>> products = new ConcurrentHashMap<>();
+    private final Map<String, List<Discount>> discounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param storeCount      number of stores ("store000", "store001", ...)
+     * @param skusPerStore    SKUs sold by every store
+     * @param discountDensity fraction of SKUs discounted in each weekly discount file (0..1)
+     * @param startDate       first day with a price file
+     * @param days            number of consecutive days with price files
+     * @param seed            random seed, equal seeds give equal catalogs
+     */
+    public SyntheticCatalog(int storeCount, int skusPerStore, double discountDensity, LocalDate startDate, int days, long seed) {
+        this.stores = new ArrayList<>();
+        for (int i = 0; i < storeCount; i++) {
+            stores.add(String.format("store%03d", i));
+        }
+        this.skusPerStore = skusPerStore;
+        this.discountDensity = discountDensity;
+        this.startDate = startDate;
+        this.days = days;
+        this.seed = seed;
+    }
+
+    public List<String> getStores() {
+        return stores;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return startDate.plusDays(days - 1L);
+    }
+
+    public String productName(int sku) {
+        return "produs " + (sku / SKUS_PER_NAME);
+    }
+
+    public String brand(int sku) {
+        return BRANDS[sku % BRANDS.length];
+    }
+
+    public int distinctNames() {
+        return (skusPerStore + SKUS_PER_NAME - 1) / SKUS_PER_NAME;
+    }
+
+    /**
+     * @return products of a store on a date, empty outside the generated date range
+     */
+    public List<Product> products(String store, LocalDate date) {
+        if (date.isBefore(startDate) || date.isAfter(getEndDate())) return List.of();
+        return products.computeIfAbsent(store + "|" + date, key -> generateProducts(store, date));
+    }
+
+    /**
+     * @return discounts published by a store on a date; files exist every 7 days from startDate
+     */
+    public List<Discount> discounts(String store, LocalDate fileDate) {
+        long offset = fileDate.toEpochDay() - startDate.toEpochDay();
+        if (offset < 0 || offset >= days || offset % 7 != 0) return List.of();
+        return discounts.computeIfAbsent(store + "|" + fileDate, key -> generateDiscounts(store, fileDate));
+    }
+
+    /**
+     * @return a shopping list mixing name-only items, name + brand items and a few unknown products
+     */
+    public List<ShoppingItemDTO> shoppingList(int size, Random random) {
+        List<ShoppingItemDTO> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int sku = random.nextInt(skusPerStore);
+            if (i % 20 == 19) {
+                items.add(new ShoppingItemDTO("necunoscut " + i, ""));
+            } else if (i % 2 == 0) {
+                items.add(new ShoppingItemDTO(productName(sku), brand(sku)));
+            } else {
+                items.add(new ShoppingItemDTO(productName(sku), ""));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * CsvLoader that serves generated data for the file paths services ask for, without touching the disk.
+     */
+    public CsvLoader csvLoader() {
+        return new CsvLoader() {
+            @Override
+            public List<Product> loadProducts(String filePath) {
+                Matcher m = PRODUCT_FILE.matcher(Paths.get(filePath).getFileName().toString());
+                return m.matches() ? products(m.group(1), LocalDate.parse(m.group(2))) : List.of();
+            }
+
+            @Override
+            public List<Discount> loadDiscounts(String filePath) {
+                Matcher m = DISCOUNT_FILE.matcher(Paths.get(filePath).getFileName().toString());
+                return m.matches() ? discounts(m.group(1), LocalDate.parse(m.group(2))) : List.of();
+            }
+        };
+    }
+
+    public void writeProductCsv(Path file, String store, LocalDate date) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("product_id;product_name;product_category;brand;package_quantity;package_unit;price;currency\n");
+            for (Product p : products(store, date)) {
+                out.write(String.format(Locale.ROOT, "%s;%s;%s;%s;%.2f;%s;%.2f;%s\n",
+                        p.getProductId(), p.getProductName(), p.getCategory(), p.getBrand(),
+                        p.getQuantity(), p.getUnit(), p.getPrice(), p.getCurrency()));
+            }
+        }
+    }
+
+    public void writeDiscountCsv(Path file, String store, LocalDate fileDate) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("product_id;product_name;brand;package_quantity;package_unit;product_category;from_date;to_date;percentage_of_discount\n");
+            for (Discount d : discounts(store, fileDate)) {
+                out.write(String.format(Locale.ROOT, "%s;%s;%s;%.2f;%s;%s;%s;%s;%d\n",
+                        d.getProductId(), d.getProductName(), d.getBrand(), d.getQuantity(), d.getUnit(),
+                        CATEGORIES[Math.abs(d.getProductId().hashCode()) % CATEGORIES.length],
+                        d.getFromDate(), d.getToDate(), d.getPercentage()));
+            }
+        }
+    }
+
+    /**
+     * Writes every product and discount file of the catalog using the {store}_{date}.csv naming convention.
+     */
+    public void writeCsv(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (String store : stores) {
+            for (int d = 0; d < days; d++) {
+                LocalDate date = startDate.plusDays(d);
+                writeProductCsv(dir.resolve(store + "_" + date + ".csv"), store, date);
+                if (d % 7 == 0) {
+                    writeDiscountCsv(dir.resolve(store + "_discounts_" + date + ".csv"), store, date);
+                }
+            }
+        }
+    }
+
+    private List<Product> generateProducts(String store, LocalDate date) {
+        Random storeRandom = new Random(seed ^ store.hashCode());
+        Random dayRandom = new Random(seed ^ store.hashCode() ^ date.toEpochDay());
+        List<Product> result = new ArrayList<>(skusPerStore);
+
+        for (int sku = 0; sku < skusPerStore; sku++) {
+            // Store level price is stable, the daily drift is small
+            double basePrice = 1 + storeRandom.nextInt(10_000) / 100.0;
+            double price = Math.round(basePrice * (0.95 + dayRandom.nextDouble() * 0.1) * 100) / 100.0;
+            result.add(new Product(
+                    String.format("P%07d", sku),
+                    productName(sku),
+                    CATEGORIES[sku % CATEGORIES.length],
+                    brand(sku),
+                    1 + sku % 5,
+                    UNITS[(sku / SKUS_PER_NAME) % UNITS.length],
+                    price,
+                    "RON",
+                    store,
+                    date));
+        }
+        return result;
+    }
+
+    private List<Discount> generateDiscounts(String store, LocalDate fileDate) {
+        Random random = new Random(seed ^ store.hashCode() ^ (fileDate.toEpochDay() * 31));
+        List<Discount> result = new ArrayList<>();
+
+        for (int sku = 0; sku < skusPerStore; sku++) {
+            if (random.nextDouble() >= discountDensity) continue;
+
+            LocalDate from = fileDate.plusDays(random.nextInt(3));
+            Discount d = new Discount(from, from.plusDays(6), 5 + random.nextInt(46));
+            d.setProductId(String.format("P%07d", sku));
+            d.setProductName(productName(sku));
+            d.setBrand(brand(sku));
+            d.setQuantity(1 + sku % 5);
+            d.setUnit(UNITS[(sku / SKUS_PER_NAME) % UNITS.length]);
+            d.setCurrency("RON");
+            d.setStore(store);
+            result.add(d);
+        }
+        return result;
+    }
+}
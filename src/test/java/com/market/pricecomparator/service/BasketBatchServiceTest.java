@@ -0,0 +1,130 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.BasketBatchResultDTO;
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.BasketStreamSummaryDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BasketBatchServiceTest {
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 8);
+
+    private final BasketOptimizerService optimizer = new BasketOptimizerService();
+    private final BasketBatchService batchService = new BasketBatchService(optimizer, 3);
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    private static Product product(String id, String name, String brand, String store, double price) {
+        Product p = new Product(price, "RON", DATE);
+        p.setProductId(id);
+        p.setProductName(name);
+        p.setBrand(brand);
+        p.setStore(store);
+        return p;
+    }
+
+    @Test
+    void optimizeBatch_matchesSequentialResultsInSubmissionOrder() {
+        ProductIndex productIndex = ProductIndex.of(Map.of(
+                "lidl", List.of(product("P1", "lapte", "Zuzu", "lidl", 9.0), product("P2", "paine", "Lidl", "lidl", 4.0)),
+                "profi", List.of(product("P1", "lapte", "Zuzu", "profi", 8.5), product("P3", "oua", "Ferma", "profi", 12.0))));
+        Discount discount = new Discount(DATE.minusDays(1), DATE.plusDays(1), 50);
+        discount.setProductId("P1");
+        discount.setStore("lidl");
+        DiscountIndex discountIndex = DiscountIndex.of(List.of(discount));
+
+        List<List<ShoppingItemDTO>> baskets = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<ShoppingItemDTO> basket = new ArrayList<>();
+            basket.add(new ShoppingItemDTO("lapte", ""));
+            if (i % 2 == 0) basket.add(new ShoppingItemDTO("paine", ""));
+            if (i % 3 == 0) basket.add(new ShoppingItemDTO("oua", "Ferma"));
+            if (i % 5 == 0) basket.add(new ShoppingItemDTO("cafea", ""));
+            baskets.add(basket);
+        }
+
+        BasketBatchResultDTO batch = batchService.optimizeBatch(baskets, productIndex, discountIndex, DATE);
+
+        assertEquals(100, batch.getBasketCount());
+        assertEquals(3, batch.getParallelism());
+        assertEquals(100, batch.getResults().size());
+        for (int i = 0; i < baskets.size(); i++) {
+            BasketOptimizationResultDTO expected = optimizer.optimizeBasketDetailed(baskets.get(i), productIndex, discountIndex, DATE);
+            BasketOptimizationResultDTO actual = batch.getResults().get(i);
+            assertEquals(expected.getTotalCost(), actual.getTotalCost(), 1e-9);
+            assertEquals(expected.getTotalSavings(), actual.getTotalSavings(), 1e-9);
+            assertEquals(expected.getStores(), actual.getStores());
+            assertEquals(expected.getUnmatchedItems(), actual.getUnmatchedItems());
+        }
+        assertTrue(batch.getP50Micros() <= batch.getP95Micros());
+        assertTrue(batch.getP99Micros() <= batch.getMaxMicros());
+        assertTrue(batch.getBasketsPerSecond() > 0);
+    }
+
+    @Test
+    void optimizeBatch_emptyBatch() {
+        BasketBatchResultDTO batch = batchService.optimizeBatch(List.of(), ProductIndex.empty(), DiscountIndex.empty(), DATE);
+
+        assertEquals(0, batch.getBasketCount());
+        assertTrue(batch.getResults().isEmpty());
+        assertEquals(0, batch.getMaxMicros());
+    }
+
+    @Test
+    void optimizeNdjson_writesOneResultPerLineInOrderAndSkipsMalformedLines() throws IOException {
+        ProductIndex productIndex = ProductIndex.of(Map.of(
+                "lidl", List.of(product("P1", "lapte", "Zuzu", "lidl", 9.0), product("P2", "paine", "Lidl", "lidl", 4.0))));
+
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            input.append(i % 2 == 0 ? "[{\"productName\":\"lapte\"}]" : "[{\"productName\":\"paine\",\"brand\":\"\"}]").append('\n');
+        }
+        input.append("\n{not json\n");
+        StringWriter output = new StringWriter();
+
+        BasketStreamSummaryDTO summary = batchService.optimizeNdjson(
+                new StringReader(input.toString()), output, productIndex, DiscountIndex.empty(), DATE);
+
+        String[] lines = output.toString().split("\n");
+        assertEquals(501, lines.length);
+        assertTrue(lines[0].contains("\"totalCost\":9.0"));
+        assertTrue(lines[1].contains("\"totalCost\":4.0"));
+        assertTrue(lines[499].contains("\"totalCost\":4.0"));
+        assertTrue(lines[500].contains("\"basketCount\":500"));
+        assertEquals(500, summary.getBasketCount());
+        assertEquals(1, summary.getSkippedLines());
+        assertTrue(summary.getP50Micros() <= summary.getMaxMicros());
+    }
+
+    @Test
+    void latencyHistogram_percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.recordNanos(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5_000, histogram.percentileMicros(50), 5_000 * 0.04);
+        assertEquals(9_900, histogram.percentileMicros(99), 9_900 * 0.04);
+        assertTrue(histogram.percentileMicros(99) <= 9_900);
+    }
+}
@@ -0,0 +1,208 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.BasketCacheStatsDTO;
+import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.ShoppingItemDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import com.market.pricecomparator.util.CsvLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class BasketCacheServiceTest {
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 8);
+
+    private CsvLoader csvLoader;
+    private ProductService productService;
+    private BasketOptimizerService optimizer;
+    private BasketCacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        csvLoader = mock(CsvLoader.class);
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of());
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_" + DATE + ".csv")).thenReturn(List.of(
+                product("P1", "lapte", "Zuzu", 9.0), product("P2", "paine", "Vel Pitar", 4.0)));
+
+        productService = new ProductService(csvLoader, List.of("lidl"));
+        optimizer = spy(new BasketOptimizerService());
+        cacheService = new BasketCacheService(optimizer, productService, 100, 1);
+    }
+
+    private static Product product(String id, String name, String brand, double price) {
+        Product p = new Product(price, "RON", DATE);
+        p.setProductId(id);
+        p.setProductName(name);
+        p.setBrand(brand);
+        p.setStore("lidl");
+        return p;
+    }
+
+    private static DiscountIndex discounts(int percentage) {
+        Discount d = new Discount(DATE.minusDays(1), DATE.plusDays(1), percentage);
+        d.setProductId("P1");
+        d.setStore("lidl");
+        return DiscountIndex.of(List.of(d));
+    }
+
+    @Test
+    void optimize_reorderedAndRecasedBasketIsServedFromCache() {
+        CatalogSnapshot snapshot = productService.getSnapshot(DATE);
+        DiscountIndex discountIndex = discounts(10);
+
+        BasketOptimizationResultDTO first = cacheService.optimize(List.of(
+                new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("paine", ""), new ShoppingItemDTO("cafea", "")),
+                snapshot, discountIndex, DATE);
+        BasketOptimizationResultDTO second = cacheService.optimize(List.of(
+                new ShoppingItemDTO(" CAFEA ", ""), new ShoppingItemDTO("Paine", ""),
+                new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("lapte", "")),
+                snapshot, discountIndex, DATE);
+
+        verify(optimizer, times(1)).optimizeBasketDetailed(anyList(), any(ProductIndex.class), any(), any());
+        assertEquals(first.getTotalCost(), second.getTotalCost(), 1e-9);
+        assertEquals(first.getTotalSavings(), second.getTotalSavings(), 1e-9);
+        assertEquals(first.getStores(), second.getStores());
+        // Unmatched items come back as this request spelled them
+        assertEquals(List.of(new ShoppingItemDTO(" CAFEA ", "")), second.getUnmatchedItems());
+
+        BasketCacheStatsDTO stats = cacheService.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate(), 1e-9);
+        assertEquals(1, stats.getSize());
+        assertTrue(stats.getWeightBytes() > 0);
+    }
+
+    @Test
+    void optimize_differentBrandIsADifferentBasket() {
+        CatalogSnapshot snapshot = productService.getSnapshot(DATE);
+        DiscountIndex discountIndex = discounts(10);
+
+        cacheService.optimize(List.of(new ShoppingItemDTO("lapte", "")), snapshot, discountIndex, DATE);
+        cacheService.optimize(List.of(new ShoppingItemDTO("lapte", "Zuzu")), snapshot, discountIndex, DATE);
+
+        verify(optimizer, times(2)).optimizeBasketDetailed(anyList(), any(ProductIndex.class), any(), any());
+    }
+
+    @Test
+    void optimize_newSnapshotInvalidatesCache() {
+        List<ShoppingItemDTO> basket = List.of(new ShoppingItemDTO("lapte", ""));
+        DiscountIndex discountIndex = discounts(10);
+
+        BasketOptimizationResultDTO before = cacheService.optimize(basket, productService.getSnapshot(DATE), discountIndex, DATE);
+        assertEquals(8.1, before.getTotalCost(), 1e-9);
+
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_" + DATE + ".csv")).thenReturn(List.of(
+                product("P1", "lapte", "Zuzu", 7.0)));
+        long invalidations = cacheService.getStats().getInvalidations();
+        CatalogSnapshot reloaded = productService.reloadSnapshot(DATE);
+        assertEquals(0, cacheService.getStats().getSize());
+        assertEquals(invalidations + 1, cacheService.getStats().getInvalidations());
+
+        BasketOptimizationResultDTO after = cacheService.optimize(basket, reloaded, discountIndex, DATE);
+        assertEquals(6.3, after.getTotalCost(), 1e-9);
+        assertEquals(0, cacheService.getStats().getHits());
+    }
+
+    @Test
+    void optimize_changedDiscountsMissTheCache() {
+        CatalogSnapshot snapshot = productService.getSnapshot(DATE);
+        List<ShoppingItemDTO> basket = List.of(new ShoppingItemDTO("lapte", ""));
+
+        DiscountIndex discountIndex = discounts(10);
+        assertEquals(8.1, cacheService.optimize(basket, snapshot, discountIndex, DATE).getTotalCost(), 1e-9);
+        // Same discount index: still a hit
+        assertEquals(8.1, cacheService.optimize(basket, snapshot, discountIndex, DATE).getTotalCost(), 1e-9);
+        assertEquals(1, cacheService.getStats().getHits());
+
+        // A new discount index is another key; nothing else is dropped, the stale entry ages out
+        long invalidations = cacheService.getStats().getInvalidations();
+        assertEquals(4.5, cacheService.optimize(basket, snapshot, discounts(50), DATE).getTotalCost(), 1e-9);
+        assertEquals(invalidations, cacheService.getStats().getInvalidations());
+        assertEquals(1, cacheService.getStats().getHits());
+        assertEquals(2, cacheService.getStats().getSize());
+    }
+
+    @Test
+    void optimize_zeroMaxEntriesDisablesCache() {
+        BasketCacheService disabled = new BasketCacheService(optimizer, productService, 0, 1);
+        CatalogSnapshot snapshot = productService.getSnapshot(DATE);
+        List<ShoppingItemDTO> basket = List.of(new ShoppingItemDTO("lapte", ""));
+
+        disabled.optimize(basket, snapshot, discounts(10), DATE);
+        disabled.optimize(basket, snapshot, discounts(10), DATE);
+
+        verify(optimizer, times(2)).optimizeBasketDetailed(anyList(), any(ProductIndex.class), any(), any());
+        assertEquals(0, disabled.getStats().getMaxEntries());
+    }
+
+    @Test
+    void boundedCache_keepsAtMostMaxEntries() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, value -> 1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "v" + i);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictions());
+        // The newest entry is always in the window
+        assertEquals("v999", cache.get(999));
+    }
+
+    @Test
+    void boundedCache_frequentKeysSurviveAScanOfOneOffKeys() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, value -> 1);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "hot" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+
+        // A long scan of one-off keys while the hot keys keep being requested now and then
+        for (int i = 1000; i < 11_000; i++) {
+            if (cache.get(i) == null) cache.put(i, "cold" + i);
+            if (i % 200 == 0) {
+                for (int hot = 0; hot < 50; hot++) {
+                    cache.get(hot);
+                }
+            }
+        }
+
+        int hotLeft = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(i) != null) hotLeft++;
+        }
+        assertEquals(50, hotLeft);
+    }
+
+    @Test
+    void boundedCache_respectsMaxWeight() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>(1000, 100, String::length);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "0123456789");
+        }
+        assertTrue(cache.getWeight() <= 100);
+        assertEquals(10, cache.size());
+
+        // Heavier than the whole budget: never cached
+        cache.put(-1, "x".repeat(101));
+        assertNull(cache.get(-1));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+}
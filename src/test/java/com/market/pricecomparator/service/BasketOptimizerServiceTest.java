@@ -5,19 +5,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.market.pricecomparator.dto.BasketOptimizationResultDTO;
+import com.market.pricecomparator.dto.QuantityShoppingItemDTO;
 import com.market.pricecomparator.dto.ShoppingItemDTO;
 import com.market.pricecomparator.dto.StoreProductsDTO;
+import com.market.pricecomparator.dto.UnitBasketItemDTO;
+import com.market.pricecomparator.dto.UnitBasketResultDTO;
 import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
 import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
+import com.market.pricecomparator.model.UnitPriceIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -183,4 +194,359 @@ public class BasketOptimizerServiceTest {
         // Timestamp should be recent (within last 1 minute)
         assertTrue(result.getTimestamp().isAfter(LocalDateTime.now().minusMinutes(1)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testOptimizeBasket_picksBestDiscountActiveOnDate() {
+        List<ShoppingItemDTO> shoppingList = List.of(new ShoppingItemDTO("banane", ""));
+
+        Product bananas = new Product("P040", "banane", "fructe", "Generic", 1, "kg",
+                10.00, "RON", "lidl", LocalDate.of(2025, 5, 8));
+        Map<String, List<Product>> productsByStore = Map.of("lidl", List.of(bananas));
+
+        List<Discount> allDiscounts = List.of(
+                // Long running discount covering the whole period
+                new Discount(LocalDate.of(2025, 4, 20), LocalDate.of(2025, 5, 20), 5) {{
+                    setProductId("P040");
+                    setStore("lidl");
+                }},
+                // Better discount that already expired
+                new Discount(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 7), 30) {{
+                    setProductId("P040");
+                    setStore("lidl");
+                }},
+                // Better discount active from the query date on
+                new Discount(LocalDate.of(2025, 5, 8), LocalDate.of(2025, 5, 14), 20) {{
+                    setProductId("P040");
+                    setStore("lidl");
+                }},
+                // Same product id in another store must not apply
+                new Discount(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 14), 50) {{
+                    setProductId("P040");
+                    setStore("profi");
+                }}
+        );
+
+        BasketOptimizationResultDTO result = service.optimizeBasketDetailed(
+                shoppingList, productsByStore, allDiscounts, LocalDate.of(2025, 5, 8));
+
+        assertEquals(8.00, result.getTotalCost(), 0.001);
+        assertEquals(2.00, result.getTotalSavings(), 0.001);
+    }
+
+    @Test
+    void testOptimizeBasket_memoizedOffersMatchFreshResolution() throws Exception {
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(product("L1", "lapte", "lidl", 6.50), product("L2", "paine", "lidl", 3.00)),
+                "kaufland", List.of(product("K1", "lapte", "kaufland", 6.00), product("K2", "oua", "kaufland", 9.00)));
+        ProductIndex productIndex = ProductIndex.of(productsByStore);
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        Discount discount = new Discount(date.minusDays(1), date.plusDays(1), 20);
+        discount.setProductId("L1");
+        discount.setStore("lidl");
+        DiscountIndex discountIndex = DiscountIndex.of(List.of(discount));
+        BasketOptimizerService unmemoized = new BasketOptimizerService(0);
+
+        List<List<ShoppingItemDTO>> baskets = List.of(
+                List.of(new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("paine", "")),
+                List.of(new ShoppingItemDTO("LAPTE", ""), new ShoppingItemDTO("oua", ""), new ShoppingItemDTO("cafea", "")),
+                List.of(new ShoppingItemDTO("cafea", ""), new ShoppingItemDTO("paine", "")));
+        for (List<ShoppingItemDTO> basket : baskets) {
+            BasketOptimizationResultDTO expected = unmemoized.optimizeBasketDetailed(basket, productIndex, discountIndex, date);
+            BasketOptimizationResultDTO actual = service.optimizeBasketDetailed(basket, productIndex, discountIndex, date);
+            assertEquals(expected.getStores(), actual.getStores());
+            assertEquals(expected.getTotalCost(), actual.getTotalCost(), 1e-9);
+            assertEquals(expected.getTotalSavings(), actual.getTotalSavings(), 1e-9);
+            assertEquals(expected.getUnmatchedItems(), actual.getUnmatchedItems());
+        }
+        // 4 distinct items resolved once each; lapte, cafea and paine were served from the memo the second time
+        assertEquals(4, service.getOfferMemo().size());
+        assertEquals(3, service.getOfferMemo().getHits());
+        assertEquals(4, service.getOfferMemo().getMisses());
+        assertNull(unmemoized.getOfferMemo());
+
+        // Lidl milk with 20% off (5.20) beats kaufland; without the discount it does not
+        List<ShoppingItemDTO> milk = List.of(new ShoppingItemDTO("lapte", ""));
+        assertEquals(5.20, service.optimizeBasketDetailed(milk, productIndex, discountIndex, date).getTotalCost(), 1e-9);
+        assertEquals(6.00, service.optimizeBasketDetailed(milk, productIndex, DiscountIndex.of(List.of()), date).getTotalCost(), 1e-9);
+        assertEquals(6.00, service.optimizeBasketDetailed(milk, productIndex, discountIndex, date.plusDays(5)).getTotalCost(), 1e-9);
+
+        // A new snapshot (new index) never sees offers of the old one
+        ProductIndex reloaded = ProductIndex.of(Map.of("lidl", List.of(product("L1", "lapte", "lidl", 4.00))));
+        assertEquals(3.20, service.optimizeBasketDetailed(milk, reloaded, discountIndex, date).getTotalCost(), 1e-9);
+
+        // Concurrent baskets over the same items all agree with the fresh resolution
+        double expectedTotal = unmemoized.optimizeBasketDetailed(baskets.get(1), productIndex, discountIndex, date).getTotalCost();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Double>> totals = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                totals.add(pool.submit(() -> service.optimizeBasketDetailed(baskets.get(1), productIndex, discountIndex, date).getTotalCost()));
+            }
+            for (Future<Double> total : totals) {
+                assertEquals(expectedTotal, total.get(), 1e-9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testOfferMemo_staysWithinMemoryBudget() {
+        CheapestOfferMemo memo = new CheapestOfferMemo(64 * 1024);
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        for (int i = 0; i < 10_000; i++) {
+            memo.put(new CheapestOfferMemo.Key("produs " + i, "", date, 1, 0), CheapestOfferMemo.NO_OFFER);
+        }
+        assertTrue(memo.getWeight() <= 64 * 1024);
+        assertTrue(memo.size() > 0 && memo.size() < 10_000);
+    }
+
+    @Test
+    void testOptimizeWithStoreLimit_tradesPriceForFewerStores() {
+        // Per item optimum splits the basket: milk and bread at lidl, eggs and sugar at kaufland, bananas at profi
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(
+                        product("L1", "lapte", "lidl", 5.00),
+                        product("L2", "paine", "lidl", 3.00),
+                        product("L3", "oua", "lidl", 12.00),
+                        product("L4", "zahar", "lidl", 6.00),
+                        product("L5", "banane", "lidl", 6.00)),
+                "kaufland", List.of(
+                        product("K1", "lapte", "kaufland", 6.00),
+                        product("K2", "paine", "kaufland", 4.00),
+                        product("K3", "oua", "kaufland", 9.00),
+                        product("K4", "zahar", "kaufland", 4.00),
+                        product("K5", "banane", "kaufland", 7.50)),
+                "profi", List.of(
+                        product("P1", "banane", "profi", 5.00)));
+        List<ShoppingItemDTO> shoppingList = List.of(
+                new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("paine", ""), new ShoppingItemDTO("oua", ""),
+                new ShoppingItemDTO("zahar", ""), new ShoppingItemDTO("banane", ""));
+        ProductIndex productIndex = ProductIndex.of(productsByStore);
+        DiscountIndex discountIndex = DiscountIndex.of(List.of());
+        LocalDate date = LocalDate.of(2025, 5, 8);
+
+        // No limit and free visits: same as the per item optimum
+        BasketOptimizationResultDTO unlimited = service.optimizeBasketWithStoreLimit(
+                shoppingList, productIndex, discountIndex, date, Integer.MAX_VALUE, 0);
+        BasketOptimizationResultDTO perItem = service.optimizeBasketDetailed(shoppingList, productIndex, discountIndex, date);
+        assertEquals(3, unlimited.getStores().size());
+        assertEquals(perItem.getTotalCost(), unlimited.getTotalCost(), 0.001);
+        assertEquals(26.00, unlimited.getTotalCost(), 0.001);
+
+        // One trip: kaufland (30.50) beats lidl (32.00), profi cannot cover the basket
+        BasketOptimizationResultDTO oneStore = service.optimizeBasketWithStoreLimit(
+                shoppingList, productIndex, discountIndex, date, 1, 0);
+        assertEquals(1, oneStore.getStores().size());
+        assertEquals("kaufland", oneStore.getStores().get(0).getStore());
+        assertEquals(30.50, oneStore.getTotalCost(), 0.001);
+        assertTrue(oneStore.getUnmatchedItems().isEmpty());
+
+        // Two trips: lidl + kaufland (27.00) beats kaufland + profi (28.00)
+        BasketOptimizationResultDTO twoStores = service.optimizeBasketWithStoreLimit(
+                shoppingList, productIndex, discountIndex, date, 2, 0);
+        assertEquals(2, twoStores.getStores().size());
+        assertEquals(27.00, twoStores.getTotalCost(), 0.001);
+
+        // Visiting profi saves 1.00 on bananas, not worth a 2.50 trip; lidl still saves 3.50 over kaufland alone
+        BasketOptimizationResultDTO visitCost = service.optimizeBasketWithStoreLimit(
+                shoppingList, productIndex, discountIndex, date, Integer.MAX_VALUE, 2.50);
+        assertEquals(2, visitCost.getStores().size());
+        assertTrue(visitCost.getStores().stream().noneMatch(store -> store.getStore().equals("profi")));
+        assertEquals(27.00, visitCost.getTotalCost(), 0.001);
+    }
+
+    @Test
+    void testOptimizeWithStoreLimit_prefersCoverageOverPrice() {
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(product("L1", "lapte", "lidl", 1.00)),
+                "kaufland", List.of(
+                        product("K1", "lapte", "kaufland", 9.00),
+                        product("K2", "paine", "kaufland", 9.00)));
+        List<ShoppingItemDTO> shoppingList = List.of(
+                new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("paine", ""), new ShoppingItemDTO("aspirator", ""));
+
+        BasketOptimizationResultDTO result = service.optimizeBasketWithStoreLimit(shoppingList,
+                ProductIndex.of(productsByStore), DiscountIndex.of(List.of()), LocalDate.of(2025, 5, 8), 1, 0);
+
+        assertEquals("kaufland", result.getStores().get(0).getStore());
+        assertEquals(18.00, result.getTotalCost(), 0.001);
+        assertEquals(1, result.getUnmatchedItems().size());
+        assertEquals("aspirator", result.getUnmatchedItems().get(0).getProductName());
+    }
+
+    @Test
+    void testOptimizeBasket_blankOrMissingNameMatchesNothing() {
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(packaged("L1", "lapte", "lidl", 1, "l", 6.00)),
+                "kaufland", List.of(packaged("K1", "paine", "kaufland", 500, "g", 1.00)));
+        ProductIndex productIndex = ProductIndex.of(productsByStore);
+        DiscountIndex discountIndex = DiscountIndex.of(List.of());
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        List<ShoppingItemDTO> shoppingList = List.of(
+                new ShoppingItemDTO("lapte", ""), new ShoppingItemDTO("  ", ""), new ShoppingItemDTO(null, "Generic"));
+
+        // Not the cheapest product of the whole catalog
+        BasketOptimizationResultDTO perItem = service.optimizeBasketDetailed(shoppingList, productIndex, discountIndex, date);
+        assertEquals(6.00, perItem.getTotalCost(), 0.001);
+        assertEquals(2, perItem.getUnmatchedItems().size());
+
+        BasketOptimizationResultDTO storeLimited = service.optimizeBasketWithStoreLimit(
+                shoppingList, productIndex, discountIndex, date, 1, 0);
+        assertEquals("lidl", storeLimited.getStores().get(0).getStore());
+        assertEquals(2, storeLimited.getUnmatchedItems().size());
+
+        UnitBasketResultDTO byUnit = service.optimizeBasketByUnitPrice(
+                List.of(new QuantityShoppingItemDTO(" ", "", 1.0, "kg"), new QuantityShoppingItemDTO(null, "Generic", null, null)),
+                UnitPriceIndex.of(productsByStore), discountIndex, date);
+        assertTrue(byUnit.getItems().isEmpty());
+        assertEquals(2, byUnit.getUnmatchedItems().size());
+
+        // Only an explicit null name is a wildcard
+        assertEquals(2, productIndex.find(null, null, null, null).size());
+        assertTrue(productIndex.find("", null, null, null).isEmpty());
+    }
+
+    @Test
+    void testStoreSubsetSelector_exactAndHeuristicMatchBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            int storeCount = round % 2 == 0 ? 12 : 80; // 80 stores is above the exact search limit
+            int itemCount = 40;
+            int maxStores = 1 + round % 3;
+            double visitCost = round % 4 == 0 ? 3.0 : 0;
+
+            StoreSubsetSelector selector = new StoreSubsetSelector(itemCount, storeCount);
+            for (int item = 0; item < itemCount; item++) {
+                for (int store = 0; store < storeCount; store++) {
+                    if (random.nextInt(10) > 0) selector.offer(item, store, 1 + random.nextInt(2000) / 100.0);
+                }
+            }
+
+            StoreSubsetSelector.Selection selection = selector.select(maxStores, visitCost);
+            assertEquals(storeCount == 12, selection.isExact());
+            assertTrue(selection.getStores().length <= maxStores);
+
+            double optimum = bruteForce(selector, itemCount, storeCount, maxStores, visitCost);
+            double found = objective(selector, itemCount, selection.getStores(), visitCost);
+            if (selection.isExact()) {
+                assertEquals(optimum, found, 1e-6);
+            } else {
+                assertTrue(found <= optimum * 1.02, "heuristic " + found + " vs optimum " + optimum);
+            }
+        }
+    }
+
+    @Test
+    void testOptimizeByUnitPrice_picksCheapestPackageCombination() {
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(
+                        packaged("L1", "lapte", "lidl", 1, "l", 6.00),
+                        packaged("L2", "zahar", "lidl", 500, "g", 3.00),
+                        packaged("L3", "faina", "lidl", 1, "kg", 4.00)),
+                "kaufland", List.of(
+                        packaged("K1", "lapte", "kaufland", 2, "l", 10.00),
+                        packaged("K2", "lapte", "kaufland", 1, "l", 7.00),
+                        packaged("K3", "zahar", "kaufland", 1, "kg", 5.00)));
+        // 20% off the kaufland 2 l pack makes it 8.00
+        DiscountIndex discountIndex = DiscountIndex.of(List.of(
+                new Discount(LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 14), 20) {{
+                    setProductId("K1");
+                    setStore("kaufland");
+                }}));
+        List<QuantityShoppingItemDTO> shoppingList = List.of(
+                new QuantityShoppingItemDTO("lapte", "", 3.0, "l"),
+                new QuantityShoppingItemDTO("zahar", "", 1500.0, "g"),
+                new QuantityShoppingItemDTO("faina", "", null, null),
+                new QuantityShoppingItemDTO("faina", "", 2.0, "l"),
+                new QuantityShoppingItemDTO("aspirator", "", 1.0, "buc"));
+
+        UnitBasketResultDTO result = service.optimizeBasketByUnitPrice(
+                shoppingList, UnitPriceIndex.of(productsByStore), discountIndex, LocalDate.of(2025, 5, 8));
+
+        // 3 l: 2 l at kaufland (8.00) + 1 l at lidl (6.00) beats 3 x 1 l (18.00) and 2 x 2 l (16.00)
+        UnitBasketItemDTO milk = result.getItems().get(0);
+        assertEquals("l", milk.getUnit());
+        assertEquals(3.0, milk.getPurchasedQuantity(), 1e-9);
+        assertEquals(14.00, milk.getCost(), 0.001);
+        assertEquals(2, milk.getPackages().size());
+        assertEquals("K1", milk.getPackages().get(0).getProduct().getProductId());
+        assertEquals("L1", milk.getPackages().get(1).getProduct().getProductId());
+
+        // 1500 g = 1.5 kg: 1 kg (5.00) + 500 g (3.00) beats 3 x 500 g (9.00) and 2 x 1 kg (10.00)
+        UnitBasketItemDTO sugar = result.getItems().get(1);
+        assertEquals("kg", sugar.getUnit());
+        assertEquals(1.5, sugar.getRequestedQuantity(), 1e-9);
+        assertEquals(1.5, sugar.getPurchasedQuantity(), 1e-9);
+        assertEquals(8.00, sugar.getCost(), 0.001);
+
+        // No quantity: one cheapest package; the duplicate with an incompatible unit is dropped like any duplicate
+        UnitBasketItemDTO flour = result.getItems().get(2);
+        assertEquals(1, flour.getPackages().get(0).getCount());
+        assertEquals(4.00, flour.getCost(), 0.001);
+        assertEquals(3, result.getItems().size());
+
+        assertEquals(1, result.getUnmatchedItems().size());
+        assertEquals(26.00, result.getTotalCost(), 0.001);
+        assertEquals(2.00, result.getTotalSavings(), 0.001);
+    }
+
+    @Test
+    void testOptimizeByUnitPrice_unitWithoutPackagesIsUnmatched() {
+        Map<String, List<Product>> productsByStore = Map.of(
+                "lidl", List.of(packaged("L3", "faina", "lidl", 1, "kg", 4.00)));
+
+        UnitBasketResultDTO result = service.optimizeBasketByUnitPrice(
+                List.of(new QuantityShoppingItemDTO("faina", "", 2.0, "l")),
+                UnitPriceIndex.of(productsByStore), DiscountIndex.of(List.of()), LocalDate.of(2025, 5, 8));
+
+        assertTrue(result.getItems().isEmpty());
+        assertEquals(1, result.getUnmatchedItems().size());
+    }
+
+    @Test
+    void testPackageCombinationSolver() {
+        // 7 units: 5 + 3 (10.00) beats 3 x 3 (12.00) and 2 x 5 (12.00)
+        assertArrayEquals(new int[]{1, 1}, PackageCombinationSolver.solve(new long[]{3, 5}, new double[]{4, 6}, 7));
+        // The 4 pack is never worth it next to a cheaper 6 pack
+        assertArrayEquals(new int[]{0, 2}, PackageCombinationSolver.solve(new long[]{4, 6}, new double[]{5, 5}, 8));
+        // Too many states for the DP: best single size, rounded up
+        long huge = (long) PackageCombinationSolver.MAX_STATES * 10;
+        assertArrayEquals(new int[]{0, 4}, PackageCombinationSolver.solve(new long[]{1, huge / 3}, new double[]{1, 1}, huge));
+    }
+
+    // Cost of a store set for test instances where every item is sold somewhere in the set (1000 per missing item)
+    private static double objective(StoreSubsetSelector selector, int itemCount, int[] stores, double visitCost) {
+        double total = visitCost * stores.length;
+        for (int item = 0; item < itemCount; item++) {
+            double best = 1000;
+            for (int store : stores) best = Math.min(best, selector.cost(item, store));
+            total += best;
+        }
+        return total;
+    }
+
+    private static double bruteForce(StoreSubsetSelector selector, int itemCount, int storeCount, int maxStores, double visitCost) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < storeCount; a++) {
+            best = Math.min(best, objective(selector, itemCount, new int[]{a}, visitCost));
+            if (maxStores < 2) continue;
+            for (int b = a + 1; b < storeCount; b++) {
+                best = Math.min(best, objective(selector, itemCount, new int[]{a, b}, visitCost));
+                if (maxStores < 3) continue;
+                for (int c = b + 1; c < storeCount; c++) {
+                    best = Math.min(best, objective(selector, itemCount, new int[]{a, b, c}, visitCost));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Product product(String id, String name, String store, double price) {
+        return new Product(id, name, "categorie", "Generic", 1, "buc", price, "RON", store, LocalDate.of(2025, 5, 8));
+    }
+
+    private static Product packaged(String id, String name, String store, double quantity, String unit, double price) {
+        return new Product(id, name, "categorie", "Generic", quantity, unit, price, "RON", store, LocalDate.of(2025, 5, 8));
+    }
+}
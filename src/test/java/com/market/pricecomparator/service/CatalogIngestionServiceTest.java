@@ -0,0 +1,225 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.CatalogIngestionReportDTO;
+import com.market.pricecomparator.dto.FeedFileLoadStatsDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.util.CsvLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CatalogIngestionServiceTest {
+    private static final LocalDate DAY1 = LocalDate.of(2025, 5, 1);
+    private static final LocalDate DAY2 = LocalDate.of(2025, 5, 8);
+    private static final String PRODUCT_HEADER = "product_id;product_name;product_category;brand;package_quantity;package_unit;price;currency\n";
+    private static final String DISCOUNT_HEADER = "product_id;product_name;brand;package_quantity;package_unit;product_category;from_date;to_date;percentage_of_discount\n";
+
+    @TempDir
+    Path dataDir;
+
+    private CsvLoader csvLoader;
+    private ProductService productService;
+    private DiscountService discountService;
+    private CatalogIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        write("lidl_" + DAY1 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;9.80;RON\n");
+        write("lidl_discounts_" + DAY1 + ".csv", DISCOUNT_HEADER + "P001;lapte zuzu;Zuzu;1;l;lactate;2025-05-01;2025-05-07;10\n");
+
+        csvLoader = spy(new CsvLoader());
+        productService = new ProductService(csvLoader, List.of("lidl"), dataDir.toString());
+        discountService = new DiscountService(csvLoader, productService, dataDir.toString());
+        ingestionService = new CatalogIngestionService(csvLoader, productService, discountService, true, 50);
+        ingestionService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionService.stop();
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        // Written next to the directory and moved in, like a feed drop
+        Path temp = Files.createTempFile(dataDir.getParent(), "feed", ".tmp");
+        Files.writeString(temp, content);
+        Files.move(temp, dataDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for ingestion");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void start_loadsExistingFilesSoRequestsNeverParse() {
+        assertEquals(List.of(DAY1), productService.getSnapshots().stream().map(CatalogSnapshot::getDate).toList());
+
+        clearInvocations(csvLoader);
+        List<Discount> discounts = discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY1, discountService.getDataDir());
+        assertEquals(1, discounts.size());
+        assertEquals(9.80, productService.getSnapshot(DAY1).getProducts("lidl").get(0).getPrice(), 1e-9);
+        // Neither the ingested file nor the missing previous week file touch the disk
+        verify(csvLoader, never()).loadDiscounts(anyString());
+        verify(csvLoader, never()).loadProducts(anyString());
+    }
+
+    @Test
+    void ingestAll_loadsEveryFeedInOneParallelStage() throws IOException {
+        ingestionService.stop();
+        for (int i = 0; i < 40; i++) {
+            String store = String.format("mega-%02d", i);
+            write(store + "_" + DAY2 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;9.80;RON\n"
+                    + "P002;iaurt;lactate;Zuzu;1;buc;2.10;RON\n");
+            write(store + "_discounts_" + DAY2 + ".csv", DISCOUNT_HEADER + "P001;lapte zuzu;Zuzu;1;l;lactate;2025-05-08;2025-05-14;15\n");
+        }
+        ProductService discovering = new ProductService(csvLoader, List.of(), dataDir.toString(), 4);
+        DiscountService discounts = new DiscountService(csvLoader, discovering, dataDir.toString());
+        CatalogIngestionService ingestion = new CatalogIngestionService(csvLoader, discovering, discounts, false, 50);
+        clearInvocations(csvLoader);
+
+        ingestion.ingestAll(dataDir);
+
+        verify(csvLoader, times(41)).loadProducts(anyString());
+        verify(csvLoader, times(41)).loadDiscounts(anyString());
+        assertEquals(40, discovering.getSnapshot(DAY2).getProductsByStore().size());
+        assertEquals(80, discovering.getSnapshot(DAY2).getProductCount());
+
+        CatalogIngestionReportDTO report = ingestion.getLastReport();
+        assertEquals(4, report.getThreads());
+        assertEquals(82, report.getFileCount());
+        assertEquals(40 * 3 + 2, report.getRowCount());
+        FeedFileLoadStatsDTO slowest = report.getFiles().get(0);
+        assertTrue(slowest.getParseMillis() >= report.getFiles().get(report.getFileCount() - 1).getParseMillis());
+        assertTrue(report.getFiles().stream().anyMatch(file ->
+                file.getFileName().equals("mega-07_discounts_" + DAY2 + ".csv") && file.isDiscounts() && file.getRows() == 1));
+        assertTrue(report.getFiles().stream().filter(file -> file.getRows() > 0).allMatch(file -> file.getRowsPerSecond() > 0));
+
+        // Discounts were in memory before the snapshots were published
+        clearInvocations(csvLoader);
+        assertEquals(1, discounts.loadDiscountsForCurrentAndPreviousWeek(List.of("mega-07"), DAY2, discounts.getDataDir()).size());
+        verify(csvLoader, never()).loadDiscounts(anyString());
+    }
+
+    @Test
+    void ingestAll_restartsFromTheCatalogCacheUntilAFeedChanges() throws Exception {
+        Path cache = dataDir.getParent().resolve("catalog-cache-" + dataDir.getFileName() + ".bin");
+        CatalogIngestionService first = new CatalogIngestionService(csvLoader,
+                new ProductService(csvLoader, List.of(), dataDir.toString(), 2),
+                new DiscountService(csvLoader, productService, dataDir.toString()), false, 50, cache.toString());
+        first.ingestAll(dataDir);
+        assertFalse(first.getLastReport().isFromCache());
+        await(() -> Files.exists(cache));
+        first.stop();
+
+        // Restart: nothing is parsed, the snapshot and discounts come from the mapped image
+        clearInvocations(csvLoader);
+        ProductService restarted = new ProductService(csvLoader, List.of(), dataDir.toString(), 2);
+        DiscountService restartedDiscounts = new DiscountService(csvLoader, restarted, dataDir.toString());
+        CatalogIngestionService second = new CatalogIngestionService(csvLoader, restarted, restartedDiscounts, false, 50, cache.toString());
+        second.ingestAll(dataDir);
+        second.stop();
+        assertTrue(second.getLastReport().isFromCache());
+        verify(csvLoader, never()).loadProducts(anyString());
+        verify(csvLoader, never()).loadDiscounts(anyString());
+        assertEquals(productService.getSnapshot(DAY1).getProductsByStore(), restarted.getSnapshot(DAY1).getProductsByStore());
+        assertEquals(1, restartedDiscounts.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY1, restartedDiscounts.getDataDir()).size());
+
+        // A changed feed makes the image stale: the CSV files are parsed again
+        write("lidl_" + DAY1 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;8.9;RON\n");
+        ProductService changed = new ProductService(csvLoader, List.of(), dataDir.toString(), 2);
+        CatalogIngestionService third = new CatalogIngestionService(csvLoader, changed,
+                new DiscountService(csvLoader, changed, dataDir.toString()), false, 50, cache.toString());
+        third.ingestAll(dataDir);
+        third.stop();
+        assertFalse(third.getLastReport().isFromCache());
+        assertEquals(8.90, changed.getSnapshot(DAY1).getProducts("lidl").get(0).getPrice(), 1e-9);
+    }
+
+    @Test
+    void watcher_publishesNewAndChangedFiles() throws Exception {
+        write("lidl_" + DAY2 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;9.50;RON\n");
+        await(() -> productService.getSnapshots().size() == 2);
+        long version = productService.getSnapshot(DAY2).getVersion();
+
+        // A discount file republishes the snapshots reading it, without re-reading product files
+        clearInvocations(csvLoader);
+        write("lidl_discounts_" + DAY2 + ".csv", DISCOUNT_HEADER + "P001;lapte zuzu;Zuzu;1;l;lactate;2025-05-08;2025-05-14;20\n");
+        await(() -> productService.getSnapshot(DAY2).getVersion() > version);
+        verify(csvLoader, never()).loadProducts(anyString());
+        List<Discount> discounts = discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY2, discountService.getDataDir());
+        assertEquals(2, discounts.size());
+
+        // A corrected product file replaces the snapshot of its date
+        write("lidl_" + DAY1 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;8.90;RON\n");
+        await(() -> productService.getSnapshot(DAY1).getProducts("lidl").get(0).getPrice() == 8.90);
+
+        // Files of unknown stores and unrelated files are ignored
+        write("mega_" + DAY2 + ".csv", PRODUCT_HEADER);
+        write("notes.txt", "x");
+        Thread.sleep(300);
+        assertEquals(2, productService.getSnapshots().size());
+    }
+
+    @Test
+    void watcher_forgetsDeletedDiscountFiles() throws Exception {
+        long version = productService.getSnapshot(DAY1).getVersion();
+        Files.delete(dataDir.resolve("lidl_discounts_" + DAY1 + ".csv"));
+        await(() -> productService.getSnapshot(DAY1).getVersion() > version);
+
+        assertTrue(discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY1, discountService.getDataDir()).isEmpty());
+    }
+
+    @Test
+    void reconcile_forgetsFilesDeletedWhileEventsWereLost() throws IOException {
+        // No watcher: the deletions below are only seen by listing the directory
+        ingestionService.stop();
+        Files.delete(dataDir.resolve("lidl_" + DAY1 + ".csv"));
+        Files.delete(dataDir.resolve("lidl_discounts_" + DAY1 + ".csv"));
+        write("lidl_" + DAY2 + ".csv", PRODUCT_HEADER + "P001;lapte zuzu;lactate;Zuzu;1;l;9.50;RON\n");
+
+        ingestionService.reconcile(dataDir);
+
+        assertEquals(List.of("lidl_" + DAY2 + ".csv"), productService.getProductFileNames());
+        assertTrue(discountService.getDiscountFilePaths().isEmpty());
+        assertEquals(0, productService.getSnapshot(DAY1).getProductCount());
+        assertEquals(9.50, productService.getSnapshot(DAY2).getProducts("lidl").get(0).getPrice(), 1e-9);
+        assertTrue(discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY1, discountService.getDataDir()).isEmpty());
+    }
+
+    @Test
+    void watcher_republishesDatesOverlappingAnOffCadenceDiscountFile() throws Exception {
+        long version = productService.getSnapshot(DAY1).getVersion();
+        clearInvocations(csvLoader);
+        write("lidl_discounts_2025-05-04.csv", DISCOUNT_HEADER + "P001;lapte zuzu;Zuzu;1;l;lactate;2025-05-04;2025-05-10;25\n");
+        await(() -> productService.getSnapshot(DAY1).getVersion() > version);
+
+        assertEquals(List.of(25, 10), discountService.getActiveDiscounts("lidl", LocalDate.of(2025, 5, 5)).stream()
+                .map(Discount::getPercentage).toList());
+        assertEquals(2, discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), DAY1, discountService.getDataDir()).size());
+        verify(csvLoader, never()).loadProducts(anyString());
+    }
+}
@@ -2,19 +2,35 @@ package com.market.pricecomparator.service;
 
 import com.market.pricecomparator.dto.BestDiscountsRequestDTO;
 import com.market.pricecomparator.dto.ProductDiscountDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
 import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.DiscountIndex;
+import com.market.pricecomparator.model.DiscountIntervals;
 import com.market.pricecomparator.model.Product;
 import com.market.pricecomparator.model.TopNOption;
 import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -207,8 +223,8 @@ public class DiscountServiceTest {
 
         List<Product> products = List.of(product1);
 
-        when(productService.loadProductsByStore(date))
-                .thenReturn(Map.of(store, products));
+        when(productService.resolveSnapshot(date))
+                .thenReturn(new CatalogSnapshot(1, date, Map.of(store, products), 0));
 
         Discount discount1 = new Discount();
         discount1.setProductId("P1");
@@ -237,7 +253,7 @@ public class DiscountServiceTest {
         LocalDate date = LocalDate.of(2025, 5, 8);
         String store = "store1";
 
-        when(productService.loadProductsByStore(date)).thenReturn(Map.of());
+        when(productService.resolveSnapshot(date)).thenReturn(new CatalogSnapshot(1, date, Map.of(), 0));
 
         BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
         filter.setTopN(TopNOption.TEN);
@@ -268,7 +284,7 @@ public class DiscountServiceTest {
                 "store2", List.of(product2)
         );
 
-        when(productService.loadProductsByStore(date)).thenReturn(productsByStore);
+        when(productService.resolveSnapshot(date)).thenReturn(new CatalogSnapshot(1, date, productsByStore, 0));
 
         Discount discount1 = new Discount();
         discount1.setProductId("P1");
@@ -303,5 +319,295 @@ public class DiscountServiceTest {
         assertTrue(stores.contains("store2"));
     }
 
+    @Test
+    void testGetTopDiscountsAcrossStores_ranksByPercentageThenSavingAndLimitsTopN() {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+
+        List<Product> products = new ArrayList<>();
+        List<Discount> discounts = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Product product = new Product();
+            product.setProductId("P" + i);
+            product.setProductName("Product" + i);
+            product.setPrice(10 + i % 3);
+            products.add(product);
+
+            Discount discount = new Discount();
+            discount.setProductId("P" + i);
+            discount.setStore("store1");
+            discount.setFromDate(date.minusDays(1));
+            discount.setToDate(date.plusDays(1));
+            discount.setPercentage(i % 4 == 0 ? 40 : i % 7);
+            discounts.add(discount);
+        }
+
+        when(productService.resolveSnapshot(date)).thenReturn(new CatalogSnapshot(1, date, Map.of("store1", products), 0));
+        doReturn(discounts).when(discountService)
+                .loadDiscountsForCurrentAndPreviousWeek(List.of("store1"), date, "src/main/resources/data");
+
+        BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
+        filter.setTopN(TopNOption.FIVE);
+
+        List<ProductDiscountDTO> results = discountService.getTopDiscountsAcrossStores(date, filter);
+
+        // 40% for every 4th product; highest price first, equal savings keep input order
+        assertEquals(List.of("P8", "P20", "P4", "P16", "P28"),
+                results.stream().map(ProductDiscountDTO::getProductId).collect(Collectors.toList()));
+        assertTrue(results.stream().allMatch(dto -> dto.getDiscountPercentage() == 40));
+    }
+
+    @Test
+    void testTopDiscounts_leaderboardBuiltOnSnapshotPublish() {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        ProductService realProductService = new ProductService(csvLoader, List.of("lidl"));
+        DiscountService service = new DiscountService(csvLoader, realProductService);
+
+        Product product = new Product();
+        product.setProductId("P1");
+        product.setProductName("Milk");
+        product.setBrand("BrandA");
+        product.setPrice(2.0);
+
+        Discount discount = new Discount();
+        discount.setProductId("P1");
+        discount.setStore("lidl");
+        discount.setFromDate(date.minusDays(1));
+        discount.setToDate(date.plusDays(1));
+        discount.setPercentage(30);
+
+        when(csvLoader.loadProducts(contains("lidl_" + date))).thenReturn(List.of(product, product));
+        when(csvLoader.loadDiscounts(contains("lidl_discounts_" + date))).thenReturn(List.of(discount));
+
+        // Publishing the snapshot ranks the discounts once
+        realProductService.getSnapshot(date);
+        verify(csvLoader, times(2)).loadDiscounts(anyString());
+
+        BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
+        filter.setTopN(TopNOption.TEN);
+
+        List<ProductDiscountDTO> acrossStores = service.getTopDiscountsAcrossStores(date, filter);
+        List<ProductDiscountDTO> forStore = service.getTopDiscountsForStore(date, "lidl", filter);
+
+        assertEquals(List.of("P1"), acrossStores.stream().map(ProductDiscountDTO::getProductId).collect(Collectors.toList()));
+        assertEquals(acrossStores, forStore);
+        verify(csvLoader, times(2)).loadDiscounts(anyString());
+
+        // A reload publishes a new snapshot and replaces the leaderboard
+        realProductService.reloadSnapshot(date);
+        verify(csvLoader, times(4)).loadDiscounts(anyString());
+    }
+
+    @Test
+    void testTopDiscounts_rankingReadsFilesOutsideTheLeaderboardLock() throws Exception {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        ProductService realProductService = new ProductService(csvLoader, List.of("lidl"));
+        DiscountService service = new DiscountService(csvLoader, realProductService);
+        Product product = new Product();
+        product.setProductId("P1");
+        product.setProductName("Milk");
+        product.setPrice(2.0);
+        when(csvLoader.loadProducts(contains("lidl_" + date))).thenReturn(List.of(product));
+        realProductService.getSnapshot(date);
+
+        // The next ranking blocks in its first discount file read
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(csvLoader.loadDiscounts(anyString())).thenAnswer(invocation -> {
+            if (first.compareAndSet(true, false)) {
+                reading.countDown();
+                release.await(20, TimeUnit.SECONDS);
+            }
+            return List.of(discount("P1", "lidl", date, date, 30));
+        });
+        service.putDiscountFile("other_discounts.csv", List.of());
+
+        BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
+        filter.setTopN(TopNOption.TEN);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<ProductDiscountDTO>> blocked = pool.submit(() -> service.getTopDiscountsAcrossStores(date, filter));
+            assertTrue(reading.await(20, TimeUnit.SECONDS));
+            // Another request of the same date ranks on its own instead of waiting for the file read
+            Future<List<ProductDiscountDTO>> other = pool.submit(() -> service.getTopDiscountsAcrossStores(date, filter));
+            assertFalse(other.get(20, TimeUnit.SECONDS).isEmpty());
+            release.countDown();
+            assertFalse(blocked.get(20, TimeUnit.SECONDS).isEmpty());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testTopDiscounts_dateWithoutPriceFilesIsRankedOncePerPublication(@TempDir Path dataDir) throws IOException {
+        LocalDate published = LocalDate.of(2025, 5, 8);
+        LocalDate weekend = LocalDate.of(2025, 5, 10);
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", published)));
+        ProductService realProductService = new ProductService(csvLoader, List.of("lidl"), dataDir.toString());
+        DiscountService service = new DiscountService(csvLoader, realProductService, dataDir.toString());
+
+        Product product = new Product();
+        product.setProductId("P1");
+        product.setProductName("Milk");
+        product.setBrand("BrandA");
+        product.setPrice(2.0);
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of(product));
+        when(csvLoader.loadDiscounts(contains("lidl_discounts_" + weekend)))
+                .thenReturn(List.of(discount("P1", "lidl", weekend, weekend, 20)));
+        realProductService.preloadSnapshots();
+        verify(csvLoader, times(2)).loadDiscounts(anyString());
 
+        BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
+        filter.setTopN(TopNOption.TEN);
+
+        // Ranked with the prices of the latest publication and the discounts of its own week, once
+        assertEquals(List.of(20), service.getTopDiscountsAcrossStores(weekend, filter).stream()
+                .map(ProductDiscountDTO::getDiscountPercentage).collect(Collectors.toList()));
+        service.getTopDiscountsForStore(weekend, "lidl", filter);
+        verify(csvLoader, times(4)).loadDiscounts(anyString());
+
+        // A new publication of the prices in effect makes the ranking stale
+        realProductService.reloadSnapshot(published);
+        verify(csvLoader, times(6)).loadDiscounts(anyString());
+        service.getTopDiscountsAcrossStores(weekend, filter);
+        verify(csvLoader, times(8)).loadDiscounts(anyString());
+        assertEquals(1, realProductService.getSnapshots().size());
+    }
+
+    @Test
+    void discountIntervals_answerWindowQueriesLikeALinearScan() {
+        LocalDate origin = LocalDate.of(2023, 1, 1);
+        Random random = new Random(7);
+        List<Discount> discounts = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Discount discount = new Discount();
+            discount.setProductId("P" + i);
+            discount.setFromDate(origin.plusDays(random.nextInt(900)));
+            discount.setToDate(discount.getFromDate().plusDays(random.nextInt(i % 50 == 0 ? 400 : 14)));
+            discounts.add(discount);
+        }
+        DiscountIntervals intervals = DiscountIntervals.of(discounts);
+
+        for (int q = 0; q < 200; q++) {
+            LocalDate from = origin.plusDays(random.nextInt(950) - 20);
+            LocalDate to = from.plusDays(random.nextInt(15));
+            assertEquals(discounts.stream()
+                            .filter(d -> !d.getToDate().isBefore(from) && !d.getFromDate().isAfter(to))
+                            .collect(Collectors.toList()),
+                    intervals.overlapping(from, to));
+            assertEquals(discounts.stream().filter(d -> d.isApplicable(from)).collect(Collectors.toList()),
+                    intervals.activeOn(from));
+            assertEquals(discounts.stream()
+                            .filter(d -> !d.getFromDate().isBefore(from) && !d.getFromDate().isAfter(to))
+                            .collect(Collectors.toList()),
+                    intervals.startingBetween(from, to));
+        }
+        assertTrue(DiscountIntervals.empty().activeOn(origin).isEmpty());
+    }
+
+    @Test
+    void testGetNewDiscounts_keepsDiscountsStartedWithinTheLastDays() {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        Product product = new Product();
+        product.setProductId("P1");
+        product.setProductName("Milk");
+        product.setBrand("BrandA");
+        product.setPrice(2.0);
+        when(productService.loadProductsByStore(date)).thenReturn(Map.of("lidl", List.of(product)));
+
+        Discount started = new Discount();
+        started.setProductId("P1");
+        started.setStore("lidl");
+        started.setFromDate(date.minusDays(1));
+        started.setToDate(date.plusDays(6));
+        started.setPercentage(15);
+        Discount older = new Discount();
+        older.setProductId("P1");
+        older.setStore("lidl");
+        older.setFromDate(date.minusDays(6));
+        older.setToDate(date.plusDays(1));
+        older.setPercentage(30);
+        discountService.putDiscountFile("src/main/resources/data/lidl_discounts_2025-05-08.csv", List.of(started));
+        discountService.putDiscountFile("src/main/resources/data/lidl_discounts_2025-05-01.csv", List.of(older));
+        discountService.markDataDirIngested();
+
+        BestDiscountsRequestDTO filter = new BestDiscountsRequestDTO();
+        filter.setTopN(TopNOption.FIVE);
+        filter.setNewWithinDays(2);
+        assertEquals(List.of(15), discountService.getNewDiscounts(date, filter).stream()
+                .map(ProductDiscountDTO::getDiscountPercentage).collect(Collectors.toList()));
+
+        filter.setNewWithinDays(7);
+        assertEquals(List.of(30, 15), discountService.getNewDiscounts(date, filter).stream()
+                .map(ProductDiscountDTO::getDiscountPercentage).collect(Collectors.toList()));
+        verify(csvLoader, never()).loadDiscounts(anyString());
+    }
+
+    @Test
+    void discountCatalog_findsDiscountsOfAnyFileByValidity() {
+        LocalDate date = LocalDate.of(2025, 5, 10);
+        Discount monthly = discount("P1", "lidl", LocalDate.of(2025, 4, 20), LocalDate.of(2025, 5, 20), 10);
+        Discount midweek = discount("P2", "lidl", LocalDate.of(2025, 5, 3), LocalDate.of(2025, 5, 6), 20);
+        Discount expired = discount("P3", "lidl", LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 5), 30);
+        Discount other = discount("P1", "profi", LocalDate.of(2025, 5, 9), LocalDate.of(2025, 5, 11), 5);
+        discountService.putDiscountFile("src/main/resources/data/lidl_discounts_2025-04-20.csv", List.of(monthly, expired));
+        discountService.putDiscountFile("src/main/resources/data/lidl_discounts_2025-05-03.csv", List.of(midweek));
+        discountService.putDiscountFile("src/main/resources/data/profi_discounts_2025-05-09.csv", List.of(other));
+        discountService.markDataDirIngested();
+
+        // Neither file is dated on the query date or a week before it
+        assertEquals(List.of(monthly), discountService.getActiveDiscounts("lidl", date));
+        assertEquals(List.of(monthly, other), discountService.getActiveDiscounts(List.of("lidl", "profi"), date));
+        assertEquals(List.of(midweek, monthly), discountService.loadDiscountsForCurrentAndPreviousWeek(
+                List.of("lidl"), date, "src/main/resources/data"));
+
+        // A replaced file is seen by the next lookup
+        discountService.putDiscountFile("src/main/resources/data/lidl_discounts_2025-05-03.csv",
+                List.of(discount("P2", "lidl", LocalDate.of(2025, 5, 3), LocalDate.of(2025, 5, 12), 25)));
+        assertEquals(2, discountService.getActiveDiscounts("lidl", date).size());
+        discountService.removeDiscountFile("src/main/resources/data/lidl_discounts_2025-04-20.csv");
+        assertEquals(List.of(25), discountService.getActiveDiscounts("lidl", date).stream()
+                .map(Discount::getPercentage).collect(Collectors.toList()));
+
+        // The empty catalog of a store without files is kept until its first file arrives
+        assertTrue(discountService.getActiveDiscounts("kaufland", date).isEmpty());
+        Discount first = discount("P9", "kaufland", date, date, 40);
+        discountService.putDiscountFile("src/main/resources/data/kaufland_discounts_2025-05-10.csv", List.of(first));
+        assertEquals(List.of(first), discountService.getActiveDiscounts("kaufland", date));
+        assertTrue(discountService.getActiveDiscounts("no-such-store", date).isEmpty());
+        verify(csvLoader, never()).loadDiscounts(anyString());
+    }
+
+    @Test
+    void getDiscountIndex_isBuiltOncePerCatalogVersion() {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, date, Map.of("lidl", List.of()), 0);
+        String file = "src/main/resources/data/lidl_discounts_2025-05-08.csv";
+        discountService.putDiscountFile(file, List.of(discount("P1", "lidl", date, date.plusDays(2), 10)));
+        discountService.markDataDirIngested();
+
+        DiscountIndex first = discountService.getDiscountIndex(snapshot, date);
+        assertSame(first, discountService.getDiscountIndex(snapshot, date));
+
+        // A changed discount file bumps the version and the next request builds a new index
+        long version = discountService.getCatalogVersion();
+        discountService.putDiscountFile(file, List.of(discount("P1", "lidl", date, date.plusDays(2), 25)));
+        assertEquals(version + 1, discountService.getCatalogVersion());
+        DiscountIndex rebuilt = discountService.getDiscountIndex(snapshot, date);
+        assertNotSame(first, rebuilt);
+        assertEquals(25, rebuilt.findBestDiscount("lidl", "P1", date).orElseThrow().getPercentage());
+        assertSame(rebuilt, discountService.getDiscountIndex(snapshot, date));
+        verify(csvLoader, never()).loadDiscounts(anyString());
+    }
+
+    private static Discount discount(String productId, String store, LocalDate from, LocalDate to, int percentage) {
+        Discount discount = new Discount();
+        discount.setProductId(productId);
+        discount.setStore(store);
+        discount.setFromDate(from);
+        discount.setToDate(to);
+        discount.setPercentage(percentage);
+        return discount;
+    }
 }
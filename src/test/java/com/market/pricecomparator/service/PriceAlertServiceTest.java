@@ -0,0 +1,219 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.PriceAlertEventDTO;
+import com.market.pricecomparator.dto.PriceAlertSubscriptionDTO;
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PriceAlertServiceTest {
+    private static final LocalDate DAY1 = LocalDate.of(2025, 5, 1);
+    private static final LocalDate DAY2 = LocalDate.of(2025, 5, 2);
+    private static final LocalDate DAY3 = LocalDate.of(2025, 5, 3);
+
+    private CsvLoader csvLoader;
+    private ProductService productService;
+    private PriceAlertService priceAlertService;
+
+    @BeforeEach
+    void setUp() {
+        csvLoader = mock(CsvLoader.class);
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of());
+        when(csvLoader.loadDiscounts(anyString())).thenReturn(List.of());
+
+        productService = new ProductService(csvLoader, List.of("lidl"));
+        priceAlertService = new PriceAlertService(productService, new DiscountService(csvLoader, productService));
+
+        for (LocalDate date : List.of(DAY1, DAY2, DAY3)) {
+            when(csvLoader.loadProducts("src/main/resources/data/lidl_" + date + ".csv"))
+                    .thenReturn(List.of(product(date)));
+        }
+        // 20% off from the second day on
+        for (LocalDate date : List.of(DAY2, DAY3)) {
+            when(csvLoader.loadDiscounts("src/main/resources/data/lidl_discounts_" + date + ".csv"))
+                    .thenReturn(List.of(discount()));
+        }
+    }
+
+    private static Product product(LocalDate date) {
+        Product p = new Product();
+        p.setProductId("P001");
+        p.setProductName("Lapte Zuzu");
+        p.setBrand("Zuzu");
+        p.setStore("lidl");
+        p.setPrice(10.0);
+        p.setDate(date);
+        return p;
+    }
+
+    private static Discount discount() {
+        Discount d = new Discount(DAY2, DAY3.plusDays(5), 20);
+        d.setProductId("P001");
+        d.setStore("lidl");
+        return d;
+    }
+
+    private List<Long> eventSubscriptions(long after) {
+        return priceAlertService.getEvents(after, Optional.empty()).stream()
+                .map(PriceAlertEventDTO::getSubscriptionId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void subscriptionRegistry_dropsEmptyBucketsOnRemove() {
+        PriceAlertSubscriptionRegistry registry = new PriceAlertSubscriptionRegistry();
+        PriceAlertSubscriptionDTO anyBrand = registry.add(new PriceAlertSubscriptionDTO(null, "Lapte", null, null, 9.0));
+        PriceAlertSubscriptionDTO zuzu = registry.add(new PriceAlertSubscriptionDTO(null, "lapte", "Zuzu", "lidl", 9.0));
+
+        assertEquals(2, registry.triggeredBy("lapte", "zuzu", "lidl", 8.0).size());
+        registry.remove(zuzu.getId());
+        assertEquals(List.of(anyBrand), registry.triggeredBy("lapte", "zuzu", "lidl", 8.0));
+        assertTrue(registry.hasSubscriptionsFor("lapte"));
+        registry.remove(anyBrand.getId());
+        assertFalse(registry.hasSubscriptionsFor("lapte"));
+        assertNull(registry.remove(anyBrand.getId()));
+    }
+
+    @Test
+    void subscriptionRegistry_concurrentAddsAndRemovesOfOneKeyLoseNothing() throws Exception {
+        PriceAlertSubscriptionRegistry registry = new PriceAlertSubscriptionRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 50; round++) {
+                // Every thread keeps one subscription and churns another one of the same name, brand and target
+                List<Future<PriceAlertSubscriptionDTO>> kept = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    kept.add(pool.submit(() -> {
+                        for (int i = 0; i < 20; i++) {
+                            registry.remove(registry.add(new PriceAlertSubscriptionDTO(null, "lapte", "zuzu", null, 9.0)).getId());
+                        }
+                        return registry.add(new PriceAlertSubscriptionDTO(null, "lapte", "zuzu", null, 9.0));
+                    }));
+                }
+                List<PriceAlertSubscriptionDTO> expected = new ArrayList<>();
+                for (Future<PriceAlertSubscriptionDTO> future : kept) {
+                    expected.add(future.get());
+                }
+
+                assertEquals(8, registry.size());
+                assertEquals(8, registry.triggeredBy("lapte", "zuzu", "lidl", 9.0).size());
+                assertTrue(registry.triggeredBy("lapte", "zuzu", "lidl", 9.0).containsAll(expected));
+
+                List<Future<?>> removals = new ArrayList<>();
+                for (PriceAlertSubscriptionDTO subscription : expected) {
+                    removals.add(pool.submit(() -> registry.remove(subscription.getId())));
+                }
+                for (Future<?> removal : removals) {
+                    removal.get();
+                }
+                assertFalse(registry.hasSubscriptionsFor("lapte"));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void checkPriceAgainstTarget_blankNameMatchesNothing() {
+        assertEquals(1, priceAlertService.checkPriceAgainstTarget("lapte zuzu", Optional.empty(), Optional.empty(), 100, DAY1).size());
+        assertTrue(priceAlertService.checkPriceAgainstTarget(" ", Optional.empty(), Optional.empty(), 100, DAY1).isEmpty());
+        assertTrue(priceAlertService.checkPriceAgainstTarget(null, Optional.empty(), Optional.of("lidl"), 100, DAY1).isEmpty());
+    }
+
+    @Test
+    void subscriptions_areEvaluatedOnlyWhenTheEffectivePriceChanges() {
+        productService.getSnapshot(DAY1);
+
+        PriceAlertSubscriptionDTO cheap = priceAlertService.subscribe(
+                new PriceAlertSubscriptionDTO(null, "lapte zuzu", null, null, 9.0));
+        PriceAlertSubscriptionDTO otherStore = priceAlertService.subscribe(
+                new PriceAlertSubscriptionDTO(null, "lapte zuzu", "", "profi", 20.0));
+        PriceAlertSubscriptionDTO already = priceAlertService.subscribe(
+                new PriceAlertSubscriptionDTO(null, "Lapte Zuzu", "zuzu", "lidl", 10.0));
+
+        // Only the subscription already satisfied at 10.0 matches on subscribe
+        assertEquals(List.of(already.getId()), eventSubscriptions(0));
+
+        // 20% discount: 8.0 satisfies both lidl subscriptions
+        productService.getSnapshot(DAY2);
+        List<PriceAlertEventDTO> events = priceAlertService.getEvents(1, Optional.empty());
+        assertEquals(List.of(cheap.getId(), already.getId()),
+                events.stream().map(PriceAlertEventDTO::getSubscriptionId).sorted().collect(Collectors.toList()));
+        assertEquals(8.0, events.get(0).getEffectivePrice(), 1e-9);
+        assertEquals(DAY2, events.get(0).getDate());
+
+        // Same effective price the next day, and an older date loaded later, emit nothing
+        productService.getSnapshot(DAY3);
+        productService.getSnapshot(DAY1.minusDays(1));
+        assertTrue(eventSubscriptions(3).isEmpty());
+        assertFalse(eventSubscriptions(0).contains(otherStore.getId()));
+
+        assertTrue(priceAlertService.unsubscribe(cheap.getId()));
+        assertFalse(priceAlertService.unsubscribe(cheap.getId()));
+        assertEquals(List.of(otherStore.getId(), already.getId()),
+                priceAlertService.getSubscriptions().stream().map(PriceAlertSubscriptionDTO::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void subscriptions_ignoreStoresWhoseFileForTheDateHasNotLandedYet(@TempDir Path dataDir) throws IOException {
+        CsvLoader loader = mock(CsvLoader.class);
+        when(loader.loadProducts(anyString())).thenAnswer(invocation -> {
+            FeedFileName feed = FeedFileName.parse(Path.of((String) invocation.getArgument(0)).getFileName().toString());
+            Product p = product(feed.getDate());
+            p.setStore(feed.getStore());
+            p.setPrice(feed.getStore().equals("profi") && feed.getDate().equals(DAY3) ? 8.0 : 10.0);
+            return List.of(p);
+        });
+        for (String store : List.of("lidl", "profi")) {
+            Files.createFile(dataDir.resolve(FeedFileName.productFileName(store, DAY1)));
+        }
+        ProductService listed = new ProductService(loader, List.of("lidl", "profi"), dataDir.toString());
+        PriceAlertService alerts = new PriceAlertService(listed, new DiscountService(loader, listed, dataDir.toString()));
+        listed.preloadSnapshots();
+
+        PriceAlertSubscriptionDTO anyStore = alerts.subscribe(new PriceAlertSubscriptionDTO(null, "lapte zuzu", null, null, 10.0));
+        PriceAlertSubscriptionDTO cheapProfi = alerts.subscribe(new PriceAlertSubscriptionDTO(null, "lapte zuzu", null, "profi", 9.0));
+        assertEquals(2, alerts.getEvents(0, Optional.empty()).size());
+
+        // lidl's file lands first: profi keeps its prices of the first day and nothing changed
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", DAY2)));
+        listed.recordProductFile("lidl", DAY2, true);
+        listed.reloadSnapshot(DAY2);
+        assertTrue(alerts.getEvents(2, Optional.empty()).isEmpty());
+
+        // profi's file lands later with the same price: nothing is reported again
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", DAY2)));
+        listed.recordProductFile("profi", DAY2, true);
+        listed.reloadSnapshot(DAY2);
+        assertTrue(alerts.getEvents(2, Optional.empty()).isEmpty());
+
+        // A price drop is reported once per subscription
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", DAY3)));
+        listed.recordProductFile("profi", DAY3, true);
+        listed.reloadSnapshot(DAY3);
+        List<PriceAlertEventDTO> events = alerts.getEvents(2, Optional.empty());
+        assertEquals(List.of(anyStore.getId(), cheapProfi.getId()),
+                events.stream().map(PriceAlertEventDTO::getSubscriptionId).sorted().collect(Collectors.toList()));
+        assertTrue(events.stream().allMatch(e -> e.getProduct().getStore().equals("profi") && e.getEffectivePrice() == 8.0));
+    }
+}
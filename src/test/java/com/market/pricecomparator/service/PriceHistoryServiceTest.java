@@ -0,0 +1,175 @@
+package com.market.pricecomparator.service;
+
+import com.market.pricecomparator.dto.PricePointDTO;
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.ColumnMemory;
+import com.market.pricecomparator.model.PriceHistoryGranularity;
+import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.util.CsvLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PriceHistoryServiceTest {
+    private static final LocalDate DAY1 = LocalDate.of(2025, 5, 1);
+    private static final LocalDate DAY2 = LocalDate.of(2025, 5, 8);
+
+    private CsvLoader csvLoader;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        csvLoader = mock(CsvLoader.class);
+        productService = new ProductService(csvLoader, List.of("lidl", "profi"));
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of());
+    }
+
+    private static Product product(String name, String brand, String store, double price, LocalDate date) {
+        Product p = new Product();
+        p.setProductId(name + store);
+        p.setProductName(name);
+        p.setBrand(brand);
+        p.setCategory("lactate");
+        p.setStore(store);
+        p.setPrice(price);
+        p.setDate(date);
+        return p;
+    }
+
+    @Test
+    void getPriceHistory_aggregatesPublishedSnapshotsWithoutProbingOtherDays() {
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 10.0, DAY1)));
+        when(csvLoader.loadProducts("src/main/resources/data/profi_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "profi", 12.0, DAY1)));
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-08.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 9.0, DAY2)));
+
+        // One snapshot published before the service exists, one after
+        productService.getSnapshot(DAY1);
+        PriceHistoryService service = new PriceHistoryService(productService);
+        productService.getSnapshot(DAY2);
+        clearInvocations(csvLoader);
+
+        List<PricePointDTO> history = service.getPriceHistory(Optional.of("lapte zuzu"), Optional.empty(),
+                Optional.empty(), Optional.empty(), DAY1.minusYears(1), DAY2.plusYears(1));
+
+        assertEquals(2, history.size());
+        PricePointDTO first = history.get(0);
+        assertEquals(DAY1, first.getDate());
+        assertEquals(11.0, first.getPrice(), 1e-9);
+        assertEquals(2, first.getProductCount());
+        assertEquals(10.0, first.getMinPrice(), 1e-9);
+        assertEquals(12.0, first.getMaxPrice(), 1e-9);
+        assertEquals(DAY2, history.get(1).getDate());
+        assertEquals(1, history.get(1).getProductCount());
+
+        // A two-year range is answered from memory
+        verifyNoInteractions(csvLoader);
+    }
+
+    @Test
+    void getPriceHistory_filtersByStoreAndReplacesReloadedDates() {
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 10.0, DAY1)))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 8.0, DAY1)));
+        when(csvLoader.loadProducts("src/main/resources/data/profi_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "profi", 12.0, DAY1)));
+
+        PriceHistoryService service = new PriceHistoryService(productService);
+        productService.getSnapshot(DAY1);
+        productService.reloadSnapshot(DAY1);
+
+        List<PricePointDTO> lidl = service.getPriceHistory(Optional.empty(), Optional.of("zuzu"),
+                Optional.of("lidl"), Optional.of("lactate"), DAY1, DAY2);
+        assertEquals(1, lidl.size());
+        assertEquals(8.0, lidl.get(0).getPrice(), 1e-9);
+
+        assertTrue(service.getPriceHistory(Optional.empty(), Optional.empty(), Optional.of("mega"),
+                Optional.empty(), DAY1, DAY2).isEmpty());
+    }
+
+    @Test
+    void getPriceHistory_weeklyRollupsCombineDaysPerIsoWeek() {
+        LocalDate monday = LocalDate.of(2025, 5, 5);
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 10.0, DAY1)));
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-05.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 6.0, monday),
+                        product("Iaurt", "Danone", "lidl", 3.0, monday)));
+        when(csvLoader.loadProducts("src/main/resources/data/profi_2025-05-08.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "profi", 12.0, DAY2)));
+
+        PriceHistoryService service = new PriceHistoryService(productService);
+        productService.getSnapshot(DAY1);
+        productService.getSnapshot(monday);
+        productService.getSnapshot(DAY2);
+
+        // 2025-05-01 is a Thursday: its week is only partly in range, the week of 05-05 is whole
+        List<PricePointDTO> weekly = service.getPriceHistory(Optional.empty(), Optional.of("zuzu"), Optional.empty(),
+                Optional.of("lactate"), DAY1, LocalDate.of(2025, 5, 11), PriceHistoryGranularity.WEEK);
+
+        assertEquals(2, weekly.size());
+        assertEquals(LocalDate.of(2025, 4, 28), weekly.get(0).getDate());
+        assertEquals(1, weekly.get(0).getProductCount());
+        assertEquals(monday, weekly.get(1).getDate());
+        assertEquals(2, weekly.get(1).getProductCount());
+        assertEquals(9.0, weekly.get(1).getPrice(), 1e-9);
+        assertEquals(6.0, weekly.get(1).getMinPrice(), 1e-9);
+        assertEquals(12.0, weekly.get(1).getMaxPrice(), 1e-9);
+
+        // Rollups and row scans agree
+        List<PricePointDTO> byName = service.getPriceHistory(Optional.of("lapte zuzu"), Optional.empty(),
+                Optional.empty(), Optional.empty(), DAY1, LocalDate.of(2025, 5, 11), PriceHistoryGranularity.WEEK);
+        assertEquals(weekly, byName);
+
+        List<PricePointDTO> daily = service.getPriceHistory(Optional.empty(), Optional.empty(), Optional.of("lidl"),
+                Optional.empty(), monday, monday);
+        assertEquals(1, daily.size());
+        assertEquals(2, daily.get(0).getProductCount());
+        assertEquals(4.5, daily.get(0).getPrice(), 1e-9);
+    }
+
+    @Test
+    void getPriceHistory_offHeapSeriesAnswersLikeTheHeapOne() {
+        LocalDate monday = LocalDate.of(2025, 5, 5);
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-01.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 10.0, DAY1),
+                        product("Iaurt", "Danone", "lidl", 4.0, DAY1)));
+        when(csvLoader.loadProducts("src/main/resources/data/profi_2025-05-05.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "profi", 6.0, monday),
+                        product("Iaurt", "Danone", "profi", 3.0, monday)));
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-08.csv"))
+                .thenReturn(List.of(product("Lapte Zuzu", "Zuzu", "lidl", 9.0, DAY2)));
+        ProductService offHeap = new ProductService(csvLoader, List.of("lidl", "profi"), ProductService.DEFAULT_DATA_DIR,
+                1, CatalogSnapshot.Storage.COLUMNAR, CatalogSnapshot.Storage.OFF_HEAP, ColumnMemory.direct());
+        PriceHistoryService onHeapService = new PriceHistoryService(productService);
+        PriceHistoryService offHeapService = new PriceHistoryService(offHeap);
+        for (LocalDate date : List.of(DAY1, monday, DAY2)) {
+            productService.getSnapshot(date);
+            offHeap.getSnapshot(date);
+        }
+
+        for (PriceHistoryGranularity granularity : PriceHistoryGranularity.values()) {
+            for (Optional<String> name : List.of(Optional.<String>empty(), Optional.of("lapte zuzu"), Optional.of("chefir"))) {
+                for (Optional<String> store : List.of(Optional.<String>empty(), Optional.of("profi"))) {
+                    List<PricePointDTO> expected = onHeapService.getPriceHistory(name, Optional.empty(), store,
+                            Optional.empty(), DAY1, DAY2.plusDays(7), granularity);
+                    assertEquals(expected, offHeapService.getPriceHistory(name, Optional.empty(), store,
+                            Optional.empty(), DAY1, DAY2.plusDays(7), granularity));
+                }
+            }
+        }
+        assertEquals(4, offHeapService.getPriceHistory(Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.of("lactate"), DAY1, monday, PriceHistoryGranularity.DAY).stream()
+                .mapToInt(PricePointDTO::getProductCount).sum());
+    }
+}
@@ -1,16 +1,34 @@
 package com.market.pricecomparator.service;
 
+import com.market.pricecomparator.model.CatalogSnapshot;
+import com.market.pricecomparator.model.ColumnMemory;
 import com.market.pricecomparator.model.Product;
+import com.market.pricecomparator.model.ProductIndex;
 import com.market.pricecomparator.util.CsvLoader;
+import com.market.pricecomparator.util.FeedFileName;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class ProductServiceTest {
@@ -52,4 +70,363 @@ public class ProductServiceTest {
         verify(csvLoader).loadProducts("src/main/resources/data/profi_2025-05-25.csv");
         verifyNoMoreInteractions(csvLoader);
     }
+
+    @Test
+    void loadProductsByStore_shouldServeRepeatedCallsFromSnapshot() {
+        LocalDate testDate = LocalDate.of(2025, 5, 1);
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of(new Product()));
+
+        Map<String, List<Product>> first = productService.loadProductsByStore(testDate);
+        Map<String, List<Product>> second = productService.loadProductsByStore(testDate);
+
+        assertSame(first, second);
+        verify(csvLoader, times(3)).loadProducts(anyString());
+        assertEquals(1, productService.getSnapshots().size());
+        assertEquals(3, productService.getSnapshot(testDate).getProductCount());
+    }
+
+    @Test
+    void reloadSnapshot_shouldPublishNewVersion() {
+        LocalDate testDate = LocalDate.of(2025, 5, 1);
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of());
+
+        long firstVersion = productService.getSnapshot(testDate).getVersion();
+        long reloadedVersion = productService.reloadSnapshot(testDate).getVersion();
+
+        assertTrue(reloadedVersion > firstVersion);
+        assertEquals(reloadedVersion, productService.getSnapshot(testDate).getVersion());
+        verify(csvLoader, times(6)).loadProducts(anyString());
+    }
+
+    @Test
+    void getSnapshot_shouldIndexProductsByNormalizedKeys() {
+        LocalDate testDate = LocalDate.of(2025, 5, 1);
+        Product milk = new Product("P001", "Lapte Zuzu ", "lactate", "Zuzu", 1, "l", 9.90, "RON", "lidl", testDate);
+        Product yogurt = new Product("P002", "iaurt grecesc", "lactate", "Lidl", 0.4, "kg", 11.50, "RON", "lidl", testDate);
+        Product otherMilk = new Product("P001", "lapte zuzu", "lactate", "ZUZU", 1, "l", 10.10, "RON", "kaufland", testDate);
+
+        when(csvLoader.loadProducts("src/main/resources/data/lidl_2025-05-01.csv")).thenReturn(List.of(milk, yogurt));
+        when(csvLoader.loadProducts("src/main/resources/data/kaufland_2025-05-01.csv")).thenReturn(List.of(otherMilk));
+        when(csvLoader.loadProducts("src/main/resources/data/profi_2025-05-01.csv")).thenReturn(List.of());
+
+        ProductIndex index = productService.getSnapshot(testDate).getProductIndex();
+
+        assertEquals(List.of(milk, otherMilk), index.findByName("lapte zuzu"));
+        assertEquals(List.of(otherMilk), index.find("lapte zuzu", "zuzu", "kaufland", null));
+        assertEquals(List.of(milk, yogurt), index.find(null, null, "lidl", "lactate"));
+        assertTrue(index.findByNameAndBrand("lapte zuzu", "pilos").isEmpty());
+    }
+
+    @Test
+    void preloadSnapshots_discoversStoresFromFileNames(@TempDir Path dataDir) throws IOException {
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        List<String> stores = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            stores.add(String.format("mega-%03d", i));
+        }
+        for (String store : stores) {
+            Files.createFile(dataDir.resolve(FeedFileName.productFileName(store, day1)));
+            Files.createFile(dataDir.resolve(FeedFileName.discountFileName(store, day1)));
+        }
+        // Only two franchises published on the second date
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("mega-007", day2)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day2)));
+        Files.createFile(dataDir.resolve("notes.csv"));
+        when(csvLoader.loadProducts(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            Product p = new Product();
+            p.setProductName("lapte");
+            p.setStore(FeedFileName.parse(Path.of(path).getFileName().toString()).getStore());
+            return List.of(p);
+        });
+
+        ProductService discovering = new ProductService(csvLoader, List.of(), dataDir.toString(), 4);
+        discovering.preloadSnapshots();
+
+        assertTrue(discovering.isDiscoveringStores());
+        assertEquals(301, discovering.getStores().size());
+        CatalogSnapshot first = discovering.getSnapshot(day1);
+        assertEquals(stores, List.copyOf(first.getProductsByStore().keySet()));
+        assertEquals(300, first.getProductIndex().findByName("lapte").size());
+        assertEquals(List.of("lidl", "mega-007"), List.copyOf(discovering.getSnapshot(day2).getProductsByStore().keySet()));
+
+        // Every existing price file read once, no guessed file names probed
+        verify(csvLoader, times(302)).loadProducts(anyString());
+        assertEquals(0, discovering.getSnapshot(LocalDate.of(2025, 5, 15)).getProductCount());
+        verify(csvLoader, times(302)).loadProducts(anyString());
+    }
+
+    @Test
+    void resolveSnapshot_servesTheLatestPublicationOnOrBeforeADate(@TempDir Path dataDir) throws IOException {
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        for (String store : ProductService.DEFAULT_STORES) {
+            Files.createFile(dataDir.resolve(FeedFileName.productFileName(store, day1)));
+        }
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day2)));
+        when(csvLoader.loadProducts(anyString())).thenAnswer(invocation -> {
+            FeedFileName feed = FeedFileName.parse(Path.of((String) invocation.getArgument(0)).getFileName().toString());
+            return List.of(new Product("P1", "lapte", "lactate", "Zuzu", 1, "l", 9.5, "RON",
+                    feed.getStore(), feed.getDate()));
+        });
+        ProductService resolving = new ProductService(csvLoader, ProductService.DEFAULT_STORES, dataDir.toString());
+        resolving.preloadSnapshots();
+        verify(csvLoader, times(4)).loadProducts(anyString());
+
+        // Days between publications are served the snapshot in effect, from memory
+        assertSame(resolving.getSnapshot(day1), resolving.resolveSnapshot(LocalDate.of(2025, 5, 5)));
+        assertSame(resolving.getSnapshot(day1).getProductsByStore(),
+                resolving.loadProductsByStore(LocalDate.of(2025, 5, 6)));
+
+        // Stores without a file on the latest date keep the prices of their own latest file
+        CatalogSnapshot composed = resolving.resolveSnapshot(LocalDate.of(2025, 5, 20));
+        assertSame(composed, resolving.resolveSnapshot(LocalDate.of(2025, 5, 9)));
+        assertEquals(day2, composed.getDate());
+        assertTrue(composed.getVersion() > resolving.getSnapshot(day2).getVersion());
+        assertEquals(ProductService.DEFAULT_STORES, List.copyOf(composed.getProductsByStore().keySet()));
+        assertEquals(day2, composed.getProductsByStore().get("lidl").get(0).getDate());
+        assertEquals(day1, composed.getProductsByStore().get("kaufland").get(0).getDate());
+        assertEquals(day1, composed.getProductsByStore().get("profi").get(0).getDate());
+
+        // A day before the first publication is empty and not published
+        CatalogSnapshot before = resolving.resolveSnapshot(LocalDate.of(2025, 4, 20));
+        assertEquals(0, before.getProductCount());
+        assertEquals(LocalDate.of(2025, 4, 20), before.getDate());
+        assertEquals(2, resolving.getSnapshots().size());
+        verify(csvLoader, times(4)).loadProducts(anyString());
+    }
+
+    @Test
+    void resolveSnapshot_composesTheLatestFileOfEveryDiscoveredStore(@TempDir Path dataDir) throws IOException {
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day1)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", day1)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day2)));
+        when(csvLoader.loadProducts(anyString())).thenAnswer(invocation -> {
+            FeedFileName feed = FeedFileName.parse(Path.of((String) invocation.getArgument(0)).getFileName().toString());
+            return List.of(new Product("P1", "lapte", "lactate", "Zuzu", 1, "l", 9.5, "RON",
+                    feed.getStore(), feed.getDate()));
+        });
+        ProductService discovering = new ProductService(csvLoader, List.of(), dataDir.toString());
+        discovering.preloadSnapshots();
+
+        // profi did not publish on the second date but its prices stay in effect
+        CatalogSnapshot composed = discovering.resolveSnapshot(LocalDate.of(2025, 5, 10));
+        assertEquals(List.of("lidl"), List.copyOf(discovering.getSnapshot(day2).getProductsByStore().keySet()));
+        assertEquals(List.of("lidl", "profi"), List.copyOf(composed.getProductsByStore().keySet()));
+        assertEquals(2, composed.getProductIndex().findByName("lapte").size());
+        assertEquals(2, discovering.getSnapshots().size());
+        // The view shares the rows of the snapshots it is made of
+        assertSame(discovering.getSnapshot(day1).getProducts("profi"), composed.getProducts("profi"));
+        assertSame(discovering.getSnapshot(day2).getProducts("lidl"), composed.getProducts("lidl"));
+
+        // A new file of the store is picked up by the next resolution
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", day2)));
+        discovering.recordProductFile("profi", day2, true);
+        CatalogSnapshot reloaded = discovering.reloadSnapshot(day2);
+        assertSame(reloaded, discovering.resolveSnapshot(LocalDate.of(2025, 5, 10)));
+        assertEquals(day2, reloaded.getProductsByStore().get("profi").get(0).getDate());
+        verify(csvLoader, times(5)).loadProducts(anyString());
+    }
+
+    @Test
+    void resolveSnapshot_versionsAViewByTheRowsItIsMadeOf(@TempDir Path dataDir) throws Exception {
+        LocalDate day0 = LocalDate.of(2025, 4, 24);
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", day0)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day1)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("profi", day1)));
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day2)));
+        when(csvLoader.loadProducts(anyString())).thenAnswer(invocation -> {
+            FeedFileName feed = FeedFileName.parse(Path.of((String) invocation.getArgument(0)).getFileName().toString());
+            return List.of(new Product("P1", "lapte", "lactate", "Zuzu", 1, "l", 9.5, "RON",
+                    feed.getStore(), feed.getDate()));
+        });
+        ProductService discovering = new ProductService(csvLoader, List.of(), dataDir.toString());
+        discovering.preloadSnapshots();
+
+        CatalogSnapshot composed = discovering.resolveSnapshot(day2);
+        assertEquals(day1, composed.getProducts("profi").get(0).getDate());
+        assertTrue(discovering.getSnapshots().stream().noneMatch(s -> s.getVersion() == composed.getVersion()));
+
+        // Publishing a date the view does not read keeps it
+        discovering.republishSnapshot(day0);
+        assertSame(composed, discovering.resolveSnapshot(day2));
+
+        // Once profi's latest file is deleted the view falls back to its older one under a new version
+        Files.delete(dataDir.resolve(FeedFileName.productFileName("profi", day1)));
+        discovering.recordProductFile("profi", day1, false);
+        discovering.reloadSnapshot(day1);
+        CatalogSnapshot fallback = discovering.resolveSnapshot(day2);
+        assertEquals(day0, fallback.getProducts("profi").get(0).getDate());
+        assertTrue(fallback.getVersion() > composed.getVersion());
+
+        // Concurrent requests after a change share one composition
+        discovering.republishSnapshot(day0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CatalogSnapshot>> resolved = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                resolved.add(pool.submit(() -> discovering.resolveSnapshot(day2)));
+            }
+            CatalogSnapshot first = resolved.get(0).get();
+            for (Future<CatalogSnapshot> view : resolved) {
+                assertSame(first, view.get());
+            }
+            assertTrue(first.getVersion() > fallback.getVersion());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void getSnapshot_publishesOnlyDatesWithPriceFiles(@TempDir Path dataDir) throws IOException {
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        for (String store : ProductService.DEFAULT_STORES) {
+            Files.createFile(dataDir.resolve(FeedFileName.productFileName(store, day1)));
+        }
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("lidl", day2)));
+        when(csvLoader.loadProducts(anyString())).thenReturn(List.of(new Product()));
+        ProductService listed = new ProductService(csvLoader, ProductService.DEFAULT_STORES, dataDir.toString());
+        List<CatalogSnapshot> notified = new ArrayList<>();
+        listed.addSnapshotListener(notified::add);
+        listed.preloadSnapshots();
+        verify(csvLoader, times(4)).loadProducts(anyString());
+
+        // A date without files is neither read nor published
+        CatalogSnapshot unseen = listed.getSnapshot(LocalDate.of(2025, 5, 15));
+        assertEquals(0, unseen.getProductCount());
+        assertEquals(ProductService.DEFAULT_STORES, List.copyOf(unseen.getProductsByStore().keySet()));
+        assertEquals(0, listed.reloadSnapshot(LocalDate.of(2025, 5, 16)).getProductCount());
+        assertEquals(2, listed.getSnapshots().size());
+        assertEquals(2, notified.size());
+
+        // Reloading a date reads only the configured stores with a file for it
+        Files.createFile(dataDir.resolve(FeedFileName.productFileName("kaufland", day2)));
+        listed.recordProductFile("kaufland", day2, true);
+        CatalogSnapshot reloaded = listed.reloadSnapshot(day2);
+        assertEquals(2, reloaded.getProductCount());
+        assertEquals(List.of(), reloaded.getProductsByStore().get("profi"));
+        verify(csvLoader, never()).loadProducts(dataDir + "/" + FeedFileName.productFileName("profi", day2));
+        verify(csvLoader, times(6)).loadProducts(anyString());
+
+        // Without a listing, a date whose files hold no rows is returned but not published
+        ProductService unlisted = new ProductService(mock(CsvLoader.class));
+        assertEquals(0, unlisted.getSnapshot(LocalDate.of(2025, 5, 15)).getProductCount());
+        assertTrue(unlisted.getSnapshots().isEmpty());
+    }
+
+    @Test
+    void recordProductFile_ignoresUnconfiguredStores() {
+        LocalDate date = LocalDate.of(2025, 5, 1);
+        assertFalse(productService.isDiscoveringStores());
+        assertFalse(productService.recordProductFile("mega", date, true));
+        assertTrue(productService.recordProductFile("lidl", date, true));
+        assertEquals(List.of("lidl", "kaufland", "profi"), productService.getStores());
+    }
+
+    @Test
+    void feedFileName_followsCsvLoaderConventions() {
+        FeedFileName prices = FeedFileName.parse("lidl-bucuresti-042_2025-05-08.csv");
+        assertEquals("lidl-bucuresti-042", prices.getStore());
+        assertEquals(LocalDate.of(2025, 5, 8), prices.getDate());
+        assertFalse(prices.isDiscounts());
+
+        FeedFileName discounts = FeedFileName.parse("profi_discounts_2025-05-08.csv");
+        assertEquals("profi", discounts.getStore());
+        assertTrue(discounts.isDiscounts());
+        assertEquals("profi_discounts_2025-05-08.csv", discounts.toString());
+
+        assertNull(FeedFileName.parse("ShoppingList1.json"));
+        assertNull(FeedFileName.parse("lidl_2025-02-30.csv"));
+        assertNull(FeedFileName.parse("lidl_2025-05-08.csv.tmp"));
+    }
+
+    @Test
+    void columnarStorage_servesTheSameProductsInLessMemory() {
+        LocalDate date = LocalDate.of(2025, 5, 8);
+        Map<String, List<Product>> loaded = new LinkedHashMap<>();
+        for (String store : List.of("lidl", "kaufland", "profi")) {
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                products.add(new Product("P" + i, "produs " + (i % 50), "lactate", "Brand" + (i % 7),
+                        0.5 + i % 3, i % 2 == 0 ? "kg" : "g", 1.0 + i, "RON", store, date));
+            }
+            loaded.put(store, products);
+        }
+
+        CatalogSnapshot objects = new CatalogSnapshot(1, date, loaded, 0, CatalogSnapshot.Storage.OBJECTS);
+        CatalogSnapshot columnar = new CatalogSnapshot(2, date, loaded, 0, CatalogSnapshot.Storage.COLUMNAR);
+
+        assertEquals(objects.getProductsByStore(), columnar.getProductsByStore());
+        assertEquals(List.copyOf(objects.getProductsByStore().keySet()), List.copyOf(columnar.getProductsByStore().keySet()));
+        assertEquals(objects.getProductIndex().find("produs 7", "brand0", "profi", null),
+                columnar.getProductIndex().find("produs 7", "brand0", "profi", null));
+        assertEquals(objects.getProductIndex().find(null, null, "kaufland", "lactate").size(),
+                columnar.getProductIndex().find(null, null, "kaufland", "lactate").size());
+        assertTrue(columnar.getProductIndex().find("produs 7", "no such brand", null, null).isEmpty());
+        assertEquals(objects.getUnitPriceIndex().find("produs 3", "").get(0).getProduct(),
+                columnar.getUnitPriceIndex().find("produs 3", "").get(0).getProduct());
+
+        // Same rows as objects, one third of their footprint or less
+        assertEquals(objects.getEstimatedBytes(), columnar.getObjectModelBytes());
+        assertTrue(columnar.getBytesPerRow() * 3 < objects.getBytesPerRow(),
+                columnar.getBytesPerRow() + " vs " + objects.getBytesPerRow());
+
+        // Republishing shares the storage and indexes
+        CatalogSnapshot republished = columnar.withVersion(3);
+        assertEquals(3, republished.getVersion());
+        assertSame(columnar.getProductIndex(), republished.getProductIndex());
+        assertSame(columnar.getProductsByStore(), republished.getProductsByStore());
+    }
+
+    @Test
+    void historyStorage_keepsOnlyTheNewestDateOnHeap(@TempDir Path offHeapDir) throws IOException {
+        LocalDate day1 = LocalDate.of(2025, 5, 1);
+        LocalDate day2 = LocalDate.of(2025, 5, 8);
+        LocalDate day0 = LocalDate.of(2025, 4, 24);
+        when(csvLoader.loadProducts(anyString())).thenAnswer(invocation -> {
+            FeedFileName feed = FeedFileName.parse(Path.of((String) invocation.getArgument(0)).getFileName().toString());
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                products.add(new Product("P" + i, "produs " + (i % 20), "lactate", "Brand" + (i % 3), 1,
+                        "kg", i + feed.getDate().getDayOfMonth(), "RON", feed.getStore(), feed.getDate()));
+            }
+            return products;
+        });
+        ProductService history = new ProductService(csvLoader, ProductService.DEFAULT_STORES, ProductService.DEFAULT_DATA_DIR,
+                2, CatalogSnapshot.Storage.COLUMNAR, CatalogSnapshot.Storage.OFF_HEAP, ColumnMemory.mapped(offHeapDir));
+        AtomicInteger notified = new AtomicInteger();
+        history.addSnapshotListener(snapshot -> notified.incrementAndGet());
+
+        CatalogSnapshot current = history.getSnapshot(day1);
+        assertEquals(CatalogSnapshot.Storage.COLUMNAR, current.getStorage());
+        assertEquals(0, current.getOffHeapBytes());
+
+        // A newer date becomes current; the previous one moves off the heap under the same version
+        history.getSnapshot(day2);
+        CatalogSnapshot moved = history.getSnapshot(day1);
+        assertEquals(CatalogSnapshot.Storage.OFF_HEAP, moved.getStorage());
+        assertEquals(current.getVersion(), moved.getVersion());
+        assertTrue(moved.getOffHeapBytes() > 0);
+        assertTrue(moved.getEstimatedBytes() < current.getEstimatedBytes());
+        assertEquals(current.getProductsByStore(), moved.getProductsByStore());
+        assertEquals(current.getProductIndex().find("produs 7", "brand1", "kaufland", null),
+                moved.getProductIndex().find("produs 7", "brand1", "kaufland", null));
+        assertEquals(current.getUnitPriceIndex().find("produs 3", "").get(0).getProduct(),
+                moved.getUnitPriceIndex().find("produs 3", "").get(0).getProduct());
+        assertEquals(CatalogSnapshot.Storage.COLUMNAR, history.getSnapshot(day2).getStorage());
+
+        // An older date is built off the heap directly
+        assertEquals(CatalogSnapshot.Storage.OFF_HEAP, history.getSnapshot(day0).getStorage());
+        assertEquals(3, notified.get());
+        // Mapped files are unlinked once mapped
+        try (var files = Files.list(offHeapDir)) {
+            assertEquals(0, files.count());
+        }
+    }
 }
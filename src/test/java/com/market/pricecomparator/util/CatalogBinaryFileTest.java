@@ -0,0 +1,118 @@
+package com.market.pricecomparator.util;
+
+import com.market.pricecomparator.model.Discount;
+import com.market.pricecomparator.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CatalogBinaryFileTest {
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 8);
+
+    @TempDir
+    Path dir;
+
+    private Path writeSample(String manifest) throws IOException {
+        Product milk = new Product("P001", "lapte zuzu", "lactate", "Zuzu", 1, "l", 9.8, "RON", "lidl", DATE);
+        Product yogurt = new Product("P002", "iaurt grecesc", "lactate", "Zuzu", 0.4, "kg", 11.5, "RON", "lidl", DATE);
+        Discount discount = new Discount(DATE, DATE.plusDays(6), 15);
+        discount.setProductId("P001");
+        discount.setProductName("lapte zuzu");
+        discount.setBrand("Zuzu");
+        discount.setQuantity(1);
+        discount.setUnit("l");
+        discount.setCurrency("lactate");
+        discount.setStore("lidl");
+
+        Path path = dir.resolve("catalog.bin");
+        CatalogBinaryFile.write(path, manifest,
+                Map.of("lidl_2025-05-08.csv", List.of(milk, yogurt)),
+                Map.of("lidl_discounts_2025-05-08.csv", List.of(discount)));
+        return path;
+    }
+
+    @Test
+    void open_readsBackEveryField() throws IOException {
+        Path path = writeSample("lidl_2025-05-08.csv 10 1\n");
+
+        CatalogBinaryFile file = CatalogBinaryFile.open(path, "lidl_2025-05-08.csv 10 1\n");
+
+        assertNotNull(file);
+        assertEquals(2, file.getRowCount("lidl_2025-05-08.csv"));
+        List<Product> products = file.products("lidl_2025-05-08.csv");
+        assertEquals(new Product("P002", "iaurt grecesc", "lactate", "Zuzu", 0.4, "kg", 11.5, "RON", "lidl", DATE), products.get(1));
+        // Repeated values are decoded as one shared instance
+        assertSame(products.get(0).getBrand(), products.get(1).getBrand());
+
+        Discount discount = file.discounts("lidl_discounts_2025-05-08.csv").get(0);
+        assertEquals(15, discount.getPercentage());
+        assertEquals(DATE.plusDays(6), discount.getToDate());
+        assertNull(discount.getDate());
+        assertNull(discount.getCategory());
+        assertEquals("lidl", discount.getStore());
+        assertTrue(file.products("profi_2025-05-08.csv").isEmpty());
+    }
+
+    @Test
+    void open_rejectsStaleOrCorruptFiles() throws IOException {
+        Path path = writeSample("lidl_2025-05-08.csv 10 1\n");
+
+        // A feed file changed size or modification time
+        assertNull(CatalogBinaryFile.open(path, "lidl_2025-05-08.csv 12 2\n"));
+        assertNull(CatalogBinaryFile.open(dir.resolve("missing.bin"), "lidl_2025-05-08.csv 10 1\n"));
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(path, bytes);
+        assertNull(CatalogBinaryFile.open(path, "lidl_2025-05-08.csv 10 1\n"));
+
+        bytes[bytes.length - 3] ^= 1;
+        ByteBuffer.wrap(bytes).putInt(4, CatalogBinaryFile.FORMAT_VERSION + 1);
+        Files.write(path, bytes);
+        assertNull(CatalogBinaryFile.open(path, "lidl_2025-05-08.csv 10 1\n"));
+    }
+
+    @Test
+    void write_streamsAnImageLargerThanItsWriteBuffer() throws IOException {
+        Map<String, List<Product>> products = new LinkedHashMap<>();
+        for (String store : List.of("lidl", "profi", "kaufland")) {
+            List<Product> rows = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                rows.add(new Product("P" + i, "produs " + i % 300, "lactate", "Zuzu", 1, "l", i / 10.0, "RON", store, DATE));
+            }
+            products.put(store + "_2025-05-08.csv", rows);
+        }
+        Discount discount = new Discount(DATE, DATE.plusDays(6), 15);
+        discount.setProductId("P7");
+        discount.setStore("profi");
+        // A manifest spanning several buffers
+        String manifest = "lidl_2025-05-08.csv 10 1\n".repeat(CatalogBinaryFile.WRITE_BUFFER_BYTES / 10);
+
+        Path path = dir.resolve("large.bin");
+        CatalogBinaryFile.write(path, manifest, products, Map.of("profi_discounts_2025-05-08.csv", List.of(discount)));
+        assertTrue(Files.size(path) > 3L * CatalogBinaryFile.WRITE_BUFFER_BYTES);
+
+        CatalogBinaryFile file = CatalogBinaryFile.open(path, manifest);
+        assertNotNull(file);
+        for (Map.Entry<String, List<Product>> feed : products.entrySet()) {
+            assertEquals(feed.getValue(), file.products(feed.getKey()));
+        }
+        assertEquals(15, file.discounts("profi_discounts_2025-05-08.csv").get(0).getPercentage());
+        assertEquals(DATE.plusDays(6), file.discounts("profi_discounts_2025-05-08.csv").get(0).getToDate());
+    }
+}
@@ -4,12 +4,20 @@ import com.market.pricecomparator.model.Discount;
 import com.market.pricecomparator.model.Product;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class CsvLoaderTest {
     private CsvLoader csvLoader;
@@ -50,4 +58,40 @@ public class CsvLoaderTest {
         discounts.forEach(System.out::println);
        */
     }
+
+    @Test
+    void testStreamingModeMatchesLineParser() throws IOException {
+        CsvLoader lineLoader = new CsvLoader(CsvLoader.ParserMode.LINES);
+        CsvLoader streamingLoader = new CsvLoader(CsvLoader.ParserMode.STREAMING);
+
+        try (Stream<Path> files = Files.list(Paths.get("src/main/resources/data"))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".csv")).collect(Collectors.toList())) {
+                String path = file.toString();
+                if (path.contains("_discounts_")) {
+                    assertEquals(lineLoader.loadDiscounts(path), streamingLoader.loadDiscounts(path), path);
+                } else {
+                    assertEquals(lineLoader.loadProducts(path), streamingLoader.loadProducts(path), path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testStreamingModeSkipsMalformedRowsAndSharesStrings(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("lidl_2025-05-01.csv");
+        Files.writeString(file, "product_id;product_name;product_category;brand;package_quantity;package_unit;price;currency\r\n"
+                + "P001;lapte zuzu;lactate;Zuzu;1;l;9.90;RON\r\n"
+                + "P002;iaurt grecesc;lactate\r\n"
+                + "\r\n"
+                + "P003;iaurt grecesc;lactate;Lidl;0.4;kg;abc;RON\r\n"
+                + "P004;ouă mărimea M;ouă;Lidl;10;buc;13.60;RON");
+
+        List<Product> products = csvLoader.loadProducts(file.toString());
+
+        assertEquals(2, products.size());
+        assertEquals(9.90, products.get(0).getPrice());
+        assertEquals("ouă mărimea M", products.get(1).getProductName());
+        assertEquals(LocalDate.of(2025, 5, 1), products.get(1).getDate());
+        assertSame(products.get(0).getCurrency(), products.get(1).getCurrency());
+    }
 }